@@ -1,6 +1,7 @@
 package cool.AST;
 
 import cool.structures.Symbol;
+import cool.structures.TypeSymbol;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
@@ -30,9 +31,20 @@ public abstract class ASTNode {
 
 
     public static abstract class Expression extends ASTNode {
+        // Type computed by the resolution pass, SELF_TYPE included
+        TypeSymbol staticType;
+
         Expression(Token token, ParserRuleContext ctx) {
             super(token, ctx);
         }
+
+        public void setStaticType(TypeSymbol staticType) {
+            this.staticType = staticType;
+        }
+
+        public TypeSymbol getStaticType() {
+            return staticType;
+        }
     }
 
     public static abstract class Feature extends ASTNode {
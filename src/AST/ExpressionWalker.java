@@ -0,0 +1,70 @@
+package cool.AST;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ * Generic traversal of expression trees, for analyses that only care about
+ * a few kinds of nodes and would otherwise need a full visitor.
+ */
+public class ExpressionWalker {
+    // Direct subexpressions of expr, in source order
+    public static List<ASTNode.Expression> children(ASTNode.Expression expr) {
+        List<ASTNode.Expression> children = new ArrayList<>();
+
+        switch (expr) {
+            case ASTNode.PlusNode plus -> children.addAll(List.of(plus.left, plus.right));
+            case ASTNode.MinusNode minus -> children.addAll(List.of(minus.left, minus.right));
+            case ASTNode.MulNode mul -> children.addAll(List.of(mul.left, mul.right));
+            case ASTNode.DivNode div -> children.addAll(List.of(div.left, div.right));
+            case ASTNode.LtNode lt -> children.addAll(List.of(lt.left, lt.right));
+            case ASTNode.LeNode le -> children.addAll(List.of(le.left, le.right));
+            case ASTNode.EqualNode eq -> children.addAll(List.of(eq.left, eq.right));
+            case ASTNode.TildeNode tilde -> children.add(tilde.exp);
+            case ASTNode.NotNode not -> children.add(not.exp);
+            case ASTNode.IsvoidNode isvoid -> children.add(isvoid.exp);
+            case ASTNode.ParenNode paren -> children.add(paren.exp);
+            case ASTNode.AssignNode assign -> children.add(assign.exp);
+            case ASTNode.IfNode ifNode -> children.addAll(List.of(ifNode.condition, ifNode.thenExp, ifNode.elseExp));
+            case ASTNode.WhileNode whileNode -> children.addAll(List.of(whileNode.condition, whileNode.body));
+            case ASTNode.BlockNode block -> children.addAll(block.expressions);
+            case ASTNode.FuncCallNode call -> children.addAll(call.arguments);
+            case ASTNode.FuncCallClassNode call -> {
+                children.add(call.object);
+                children.addAll(call.arguments);
+            }
+            case ASTNode.LetNode let -> {
+                for (ASTNode.LocalVarNode var : let.localVars) {
+                    if (var.initExpr != null) {
+                        children.add(var.initExpr);
+                    }
+                }
+                children.add(let.body);
+            }
+            case ASTNode.CaseNode caseNode -> {
+                children.add(caseNode.condition);
+                for (ASTNode.CaseMethodNode branch : caseNode.cases) {
+                    children.add(branch.cases);
+                }
+            }
+            default -> {}
+        }
+        return children;
+    }
+
+    // Calls action on expr and every expression nested inside it, parents first
+    public static void forEach(ASTNode.Expression expr, Consumer<ASTNode.Expression> action) {
+        if (expr == null) return;
+        action.accept(expr);
+        for (ASTNode.Expression child : children(expr)) {
+            forEach(child, action);
+        }
+    }
+
+    public static int size(ASTNode.Expression expr) {
+        int[] count = {0};
+        forEach(expr, e -> count[0]++);
+        return count[0];
+    }
+}
@@ -1,13 +1,18 @@
 package cool.codegen;
 
 import cool.AST.*;
+import cool.compiler.Options;
+import cool.ir.*;
+import cool.mips.*;
+import cool.opt.MethodCloning;
+import cool.opt.PassManager;
 import cool.structures.*;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroupFile;
 
 import java.util.*;
 
-public class CodeGenVisitor implements ASTVisitor<ST> {
+public class CodeGenVisitor implements ASTVisitor<MipsCode>, ProgramLayout {
     static STGroupFile templates = new STGroupFile("cool/codegen/cool.stg");
 
     private final Map<String, String> string_constants = new LinkedHashMap<>();
@@ -15,6 +20,7 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     private final List<String> class_names = new LinkedList<>();
 
     private final Map<String, List<String>> inheritanceTree = new HashMap<>();
+    private final Map<String, ASTNode.ClassDef> class_defs = new HashMap<>();
 
     private Map<String, Integer> letVariableOffsets = new HashMap<>();
     private Map<String, String> letVariableTypes = new HashMap<>();
@@ -22,6 +28,20 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
 
     ST data_section;
     ST text_section;
+    ST program_st;
+
+    private final LabelTable labels = new LabelTable();
+    private final InstructionSelector selector = new InstructionSelector(labels, this::slot);
+    private final Scheduler scheduler = new Scheduler();
+    private final List<MipsCode> text_functions = new ArrayList<>();
+    // Routines compiled through the optimizer at -O1 and above, by label
+    private final Map<String, MipsCode> optimized_routines = new HashMap<>();
+    // Clones the optimizer made of methods, which no class definition emits
+    private final List<MipsCode> cloned_routines = new ArrayList<>();
+    // Whether any routine calls into PrintRuntime or StringRuntime
+    private boolean uses_print_runtime = false;
+    private boolean uses_string_runtime = false;
+    private boolean uses_int_cache = false;
 
     int labelCounter = 0;
     int stringIndex = 0;
@@ -199,6 +219,14 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
 
         data_section.add("e", ".align  2");
         data_section.add("e", globals);
+
+        if (GenGC.enabled()) {
+            ST collector = templates.getInstanceOf("sequence");
+            for (String line : GenGC.data()) {
+                collector.add("e", line);
+            }
+            data_section.add("e", collector);
+        }
     }
 
     private void addClassTags() {
@@ -227,6 +255,7 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             str_const.add("dispTab", "String_dispTab");
             str_const.add("lengthLabel", len_label);
             str_const.add("value", escapeString(value));
+            str_const.add("gc", GenGC.enabled());
 
             data_section.add("e", str_const);
         }
@@ -242,6 +271,7 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             int_const.add("tag", class_names.indexOf("Int"));
             int_const.add("dispTab", "Int_dispTab");
             int_const.add("value", value);
+            int_const.add("gc", GenGC.enabled());
 
             data_section.add("e", int_const);
         }
@@ -251,6 +281,7 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         bool_const0.add("tag", class_names.indexOf("Bool"));
         bool_const0.add("dispTab", "Bool_dispTab");
         bool_const0.add("value", 0);
+        bool_const0.add("gc", GenGC.enabled());
         data_section.add("e", bool_const0);
 
         ST bool_const1 = templates.getInstanceOf("standardObject");
@@ -258,6 +289,7 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         bool_const1.add("tag", class_names.indexOf("Bool"));
         bool_const1.add("dispTab", "Bool_dispTab");
         bool_const1.add("value", 1);
+        bool_const1.add("gc", GenGC.enabled());
         data_section.add("e", bool_const1);
     }
 
@@ -302,7 +334,11 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             }
 
             LinkedHashMap<String, String> dispatchMap = buildDispatchTableMap(cls);
-            initDispatchTable(class_name, new ArrayList<>(dispatchMap.values()));
+            initDispatchTable(class_name + "_dispTab", new ArrayList<>(dispatchMap.values()));
+            // Rope nodes are Strings with a dispatch table of their own
+            if (class_name.equals("String") && StringRuntime.ropes()) {
+                initDispatchTable(StringRuntime.ROPE_DISPATCH_TABLE, new ArrayList<>(dispatchMap.values()));
+            }
         }
     }
 
@@ -325,8 +361,15 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         }
     }
 
+    private static void eyecatcher(ST object) {
+        if (GenGC.enabled()) {
+            object.add("e", GenGC.EYECATCHER);
+        }
+    }
+
     private void initStringPrototype(int tag) {
         ST string_proto = templates.getInstanceOf("sequence");
+        eyecatcher(string_proto);
         string_proto.add("e", "String_protObj:");
         string_proto.add("e", "    .word   " + tag);
         string_proto.add("e", "    .word   5");
@@ -351,19 +394,20 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         }
 
         if (cls.getName().equals("IO")) {
-            map.put("out_string", "IO.out_string");
+            map.put("out_string", StringRuntime.method("IO.out_string"));
             map.put("out_int", "IO.out_int");
             map.put("in_string", "IO.in_string");
             map.put("in_int", "IO.in_int");
         } else if (cls.getName().equals("String")) {
             map.put("length", "String.length");
-            map.put("concat", "String.concat");
-            map.put("substr", "String.substr");
+            map.put("concat", StringRuntime.method("String.concat"));
+            map.put("substr", StringRuntime.method("String.substr"));
         }
 
         if (cls.functions != null) {
             for (Map.Entry<String, FunctionSymbol> entry : cls.functions.entrySet()) {
-                map.put(entry.getKey(), cls.getName() + "." + entry.getKey());
+                String label = cls.getName() + "." + entry.getKey();
+                map.put(entry.getKey(), Memoization.method(StringRuntime.method(label)));
             }
         }
         return map;
@@ -373,40 +417,51 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(className);
 
         ST proto = templates.getInstanceOf("sequence");
+        eyecatcher(proto);
         proto.add("e", className + "_protObj:");
         proto.add("e", "    .word   " + tag);
         proto.add("e", "    .word   " + size);
         proto.add("e", "    .word   " + className + "_dispTab");
 
         if (cls != null && size > 3) {
-            List<ClassSymbol> hierarchy = new ArrayList<>();
-            ClassSymbol current = cls;
-            while (current != null) {
-                hierarchy.addFirst(current);
-                current = current.getInherited_class();
+            for (String defaultVal : attributeDefaults(cls)) {
+                proto.add("e", "    .word   " + defaultVal);
             }
+        }
 
-            for (ClassSymbol c : hierarchy) {
-                for (Map.Entry<String, Symbol> entry : c.attributes.entrySet()) {
-                    Symbol sym = entry.getValue();
-                    String defaultVal = "0";
-                    if (sym instanceof IdSymbol) {
-                        TypeSymbol type = ((IdSymbol) sym).getType();
-                        if (type != null) {
-                            defaultVal = getDefaultValue(type.getName());
-                        }
+        proto.add("e", "");
+        data_section.add("e", proto);
+    }
+
+    // Initial words of the attributes of cls, in object order
+    private List<String> attributeDefaults(ClassSymbol cls) {
+        List<ClassSymbol> hierarchy = new ArrayList<>();
+        ClassSymbol current = cls;
+        while (current != null) {
+            hierarchy.addFirst(current);
+            current = current.getInherited_class();
+        }
+
+        List<String> defaults = new ArrayList<>();
+        for (ClassSymbol c : hierarchy) {
+            for (Map.Entry<String, Symbol> entry : c.attributes.entrySet()) {
+                Symbol sym = entry.getValue();
+                String defaultVal = "0";
+                if (sym instanceof IdSymbol) {
+                    TypeSymbol type = ((IdSymbol) sym).getType();
+                    if (type != null && !RawAttributes.isRaw(type.getName())) {
+                        defaultVal = getDefaultValue(type.getName());
                     }
-                    proto.add("e", "    .word   " + defaultVal);
                 }
+                defaults.add(defaultVal);
             }
         }
-
-        proto.add("e", "");
-        data_section.add("e", proto);
+        return defaults;
     }
 
     private void initPrototypeWithAttrs(String className, int tag, ST attrs) {
         ST proto = templates.getInstanceOf("sequence");
+        eyecatcher(proto);
         proto.add("e", className + "_protObj:");
         proto.add("e", "    .word   " + tag);
         proto.add("e", "    .word   " + 4);
@@ -415,15 +470,39 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         data_section.add("e", proto);
     }
 
-    private void initDispatchTable(String className, List<String> methods) {
+    private void initDispatchTable(String label, List<String> methods) {
         ST disp = templates.getInstanceOf("sequence");
-        disp.add("e", className + "_dispTab:");
+        disp.add("e", label + ":");
         for (String method : methods) {
             disp.add("e", "    .word   " + method);
         }
         data_section.add("e", disp);
     }
 
+    private void addIntCache() {
+        ST cache = templates.getInstanceOf("sequence");
+        for (String line : IntCache.data(class_names.indexOf("Int"))) {
+            cache.add("e", line);
+        }
+        data_section.add("e", cache);
+    }
+
+    private void addMemoTables() {
+        ST tables = templates.getInstanceOf("sequence");
+        for (String line : Memoization.data()) {
+            tables.add("e", line);
+        }
+        data_section.add("e", tables);
+    }
+
+    private void addPrintBuffer() {
+        ST buffer = templates.getInstanceOf("sequence");
+        for (String line : PrintRuntime.data()) {
+            buffer.add("e", line);
+        }
+        data_section.add("e", buffer);
+    }
+
     private void initHeapStart() {
         ST heap = templates.getInstanceOf("sequence");
         heap.add("e", "    .globl  heap_start");
@@ -442,6 +521,10 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         text_section.add("e", text_header);
     }
 
+    private MipsCode newCode() {
+        return new MipsCode(labels);
+    }
+
     private void generatePredefinedInits() {
         generateInit("Object", null, null);
         generateInit("IO", "Object", null);
@@ -461,17 +544,28 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     private void generateInit(String className, String parent, ASTNode.ClassDef classDef) {
-        ST init = templates.getInstanceOf("sequence");
-        init.add("e", className + "_init:");
-        init.add("e", "    addiu   $sp $sp -12");
-        init.add("e", "    sw      $fp 12($sp)");
-        init.add("e", "    sw      $s0 8($sp)");
-        init.add("e", "    sw      $ra 4($sp)");
-        init.add("e", "    addiu   $fp $sp 4");
-        init.add("e", "    move    $s0 $a0");
+        MipsCode optimized = optimized_routines.get(className + "_init");
+        if (optimized != null) {
+            text_functions.add(optimized);
+            return;
+        }
+        // The builtin classes have nothing to initialize
+        if (Options.optimizationLevel > 0) {
+            text_functions.add(emptyInit(className));
+            return;
+        }
+
+        MipsCode init = newCode();
+        init.label(className + "_init");
+        init.addiu(Register.SP, Register.SP, -12);
+        init.sw(Register.FP, 12, Register.SP);
+        init.sw(Register.S0, 8, Register.SP);
+        init.sw(Register.RA, 4, Register.SP);
+        init.addiu(Register.FP, Register.SP, 4);
+        init.move(Register.S0, Register.A0);
 
         if (parent != null) {
-            init.add("e", "    jal     " + parent + "_init");
+            init.jal(parent + "_init");
         }
 
         if (classDef != null) {
@@ -486,27 +580,31 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             for (ASTNode.Feature feature : classDef.features) {
                 if (feature instanceof ASTNode.AssignFeatures attr) {
                     if (attr.exp != null) {
-                        ST expr_code = attr.exp.accept(this);
-                        init.add("e", expr_code);
-                        init.add("e", "    sw      $a0 " + offset + "($s0)");
+                        init.append(attr.exp.accept(this));
+                        if (RawAttributes.isRaw(attr.type.getToken().getText())) {
+                            RawAttributes.store(init, offset);
+                        } else {
+                            init.sw(Register.A0, offset, Register.S0);
+                            GenGC.assigned(init, Register.S0, offset);
+                        }
                     }
                     offset += 4;
                 }
             }
         }
 
-        init.add("e", "    move    $a0 $s0");
-        init.add("e", "    lw      $fp 12($sp)");
-        init.add("e", "    lw      $s0 8($sp)");
-        init.add("e", "    lw      $ra 4($sp)");
-        init.add("e", "    addiu   $sp $sp 12");
-        init.add("e", "    jr      $ra");
+        init.move(Register.A0, Register.S0);
+        init.lw(Register.FP, 12, Register.SP);
+        init.lw(Register.S0, 8, Register.SP);
+        init.lw(Register.RA, 4, Register.SP);
+        init.addiu(Register.SP, Register.SP, 12);
+        init.jr(Register.RA);
 
-        text_section.add("e", init);
+        text_functions.add(init);
     }
 
     @Override
-    public ST visit(ASTNode.Program program) {
+    public MipsCode visit(ASTNode.Program program) {
         data_section = templates.getInstanceOf("sequenceSpaced");
         text_section = templates.getInstanceOf("sequenceSpaced");
 
@@ -528,18 +626,36 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             inheritanceTree.putIfAbsent(name, new ArrayList<>());
             inheritanceTree.putIfAbsent(parent, new ArrayList<>());
             inheritanceTree.get(parent).add(name);
+            class_defs.put(name, class_def);
         }
 
         class_names.clear();
         dfs("Object");
 
         collectAllConstants(program);
+        // Calls and dispatch tables of the optimized code already go to the memo wrappers
+        if (Memoization.enabled()) {
+            Memoization.analyze(program);
+        }
+        // Optimized code may need new constants, so it is built before the data section
+        if (Options.optimizationLevel > 0) {
+            optimizeProgram(program);
+        }
         addGlobalDirectives();
         addClassTags();
         initStringConstants();
         initIntAndBoolConstants();
+        if (uses_int_cache) {
+            addIntCache();
+        }
+        if (Memoization.used()) {
+            addMemoTables();
+        }
         addClassNameTab();
         initPrototypesAndDispatchTables();
+        if (uses_print_runtime) {
+            addPrintBuffer();
+        }
         initHeapStart();
 
         addTextHeader();
@@ -548,12 +664,134 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         for (ASTNode.ClassDef class_def : program.classes) {
             class_def.accept(this);
         }
+        text_functions.addAll(cloned_routines);
+        if (uses_print_runtime) {
+            text_functions.add(PrintRuntime.generate(labels));
+        }
+        if (Memoization.used()) {
+            text_functions.add(Memoization.generate(labels));
+        }
+        // The String and IO dispatch tables point into the rope routines
+        if (uses_string_runtime || StringRuntime.ropes()) {
+            text_functions.add(StringRuntime.generate(labels));
+        }
+
+        for (MipsCode function : text_functions) {
+            if (Options.scheduleLoads) {
+                function = scheduler.schedule(function);
+            }
+            text_section.add("e", MipsPrinter.print(function));
+        }
+        if (Options.passStats && Memoization.enabled()) {
+            Memoization.printReport(System.err);
+        }
+        if (Options.passStats && InstructionSelector.enabled()) {
+            selector.printReport(System.err);
+        }
+        if (Options.passStats && Options.scheduleLoads) {
+            scheduler.printReport(System.err);
+        }
 
-        ST program_st = templates.getInstanceOf("program");
+        program_st = templates.getInstanceOf("program");
         program_st.add("data", data_section);
         program_st.add("textFuncs", text_section);
 
-        return program_st;
+        return null;
+    }
+
+    // Init routine of a class whose attributes all start as in its prototype
+    private MipsCode emptyInit(String className) {
+        MipsCode init = newCode();
+        init.label(className + "_init");
+        init.jr(Register.RA);
+        return init;
+    }
+
+    // Classes from the oldest user-defined ancestor of className down to it
+    private List<ASTNode.ClassDef> lineage(String className) {
+        LinkedList<ASTNode.ClassDef> lineage = new LinkedList<>();
+        for (ASTNode.ClassDef classDef = class_defs.get(className); classDef != null; ) {
+            lineage.addFirst(classDef);
+            classDef = classDef.inheritsType == null ? null : class_defs.get(classDef.inheritsType.getToken().getText());
+        }
+        return lineage;
+    }
+
+    private void optimizeProgram(ASTNode.Program program) {
+        IRBuilder builder = new IRBuilder(this);
+        builder.setUnrollFactor(Options.optimizationLevel >= 2 ? Options.unrollFactor : 1);
+        PartialEvaluator evaluator = new PartialEvaluator(program);
+        builder.setEvaluator(evaluator);
+
+        Map<String, ASTNode.FunctionsFeatures> methods = new HashMap<>();
+        MethodCloning.Builder clones = (label, method, receiver, formalTypes) -> {
+            ASTNode.FunctionsFeatures body = methods.get(method);
+            ClassSymbol owner = (ClassSymbol) SymbolTable.globals.lookup(method.substring(0, method.indexOf('.')));
+            ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(receiver);
+            return builder.buildClone(label, cls, owner.functions.get(body.id.getToken().getText()), body, formalTypes);
+        };
+        PassManager passes = PassManager.forLevel(Options.optimizationLevel, this, clones);
+
+        List<IRFunction> functions = new ArrayList<>();
+        for (ASTNode.ClassDef class_def : program.classes) {
+            ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(class_def.type.getToken().getText());
+            if (hasInitializers(cls.getName())) {
+                functions.add(builder.buildInit(cls, lineage(cls.getName())));
+            } else {
+                optimized_routines.put(cls.getName() + "_init", emptyInit(cls.getName()));
+            }
+            for (ASTNode.Feature feature : class_def.features) {
+                if (feature instanceof ASTNode.FunctionsFeatures method) {
+                    IRFunction function = builder.buildMethod(cls, method);
+                    methods.put(function.label, method);
+                    functions.add(function);
+                }
+            }
+        }
+
+        int built = functions.size();
+        passes.run(functions);
+        for (int i = 0; i < functions.size(); i++) {
+            IRFunction function = functions.get(i);
+            if (Options.dumpIR) {
+                System.err.println(IRPrinter.print(function));
+            }
+            MipsCode code = IRLowering.lower(function, labels, this);
+            optimized_routines.put(function.label, code);
+            if (i >= built) {
+                cloned_routines.add(code);
+            }
+            uses_print_runtime |= calls(code, PrintRuntime.FLUSH);
+            uses_string_runtime |= calls(code, StringRuntime.CONCAT_N) || calls(code, StringRuntime.SUBSTR);
+            uses_int_cache |= references(code, IntCache.LABEL);
+        }
+
+        if (Options.passStats) {
+            passes.printStatistics(System.err);
+            evaluator.printReport(System.err);
+        }
+    }
+
+    private static boolean calls(MipsCode code, String routine) {
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == Opcode.JAL && code.label(i).equals(routine)) return true;
+        }
+        return false;
+    }
+
+    private static boolean references(MipsCode code, String label) {
+        for (int i = 0; i < code.size(); i++) {
+            if (code.opcode(i) == Opcode.LA && code.label(i).equals(label)) return true;
+        }
+        return false;
+    }
+
+    public String render() {
+        return program_st.render();
+    }
+
+    public List<MipsCode> getTextFunctions() {
+        return text_functions;
     }
 
     private void dfs(String current) {
@@ -567,7 +805,7 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     @Override
-    public ST visit(ASTNode.ClassDef classDef) {
+    public MipsCode visit(ASTNode.ClassDef classDef) {
         currentClass = (ClassSymbol) SymbolTable.globals.lookup(classDef.type.getToken().getText());
         String class_name = classDef.type.getToken().getText();
         String parent = (classDef.inheritsType != null) ? classDef.inheritsType.getToken().getText() : "Object";
@@ -581,105 +819,116 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     @Override
-    public ST visit(ASTNode.FunctionsFeatures functionsFeatures) {
+    public MipsCode visit(ASTNode.FunctionsFeatures functionsFeatures) {
         String class_name = currentClass.getName();
         String method_name = functionsFeatures.id.getToken().getText();
 
+        MipsCode optimized = optimized_routines.get(class_name + "." + method_name);
+        if (optimized != null) {
+            text_functions.add(optimized);
+            return null;
+        }
+
         currentMethod = currentClass.functions.get(method_name);
         int num_formals = currentMethod.getFormals().size();
 
-        ST method = templates.getInstanceOf("sequence");
-        method.add("e", class_name + "." + method_name + ":");
-        method.add("e", "    addiu   $sp $sp -12");
-        method.add("e", "    sw      $fp 12($sp)");
-        method.add("e", "    sw      $s0 8($sp)");
-        method.add("e", "    sw      $ra 4($sp)");
-        method.add("e", "    addiu   $fp $sp 4");
-        method.add("e", "    move    $s0 $a0");
-
-        ST body = functionsFeatures.body.accept(this);
-        method.add("e", body);
-
-        method.add("e", "    lw      $fp 12($sp)");
-        method.add("e", "    lw      $s0 8($sp)");
-        method.add("e", "    lw      $ra 4($sp)");
-        method.add("e", "    addiu   $sp $sp 12");
-        
+        MipsCode method = newCode();
+        method.label(class_name + "." + method_name);
+        method.addiu(Register.SP, Register.SP, -12);
+        method.sw(Register.FP, 12, Register.SP);
+        method.sw(Register.S0, 8, Register.SP);
+        method.sw(Register.RA, 4, Register.SP);
+        method.addiu(Register.FP, Register.SP, 4);
+        method.move(Register.S0, Register.A0);
+
+        method.append(functionsFeatures.body.accept(this));
+
+        method.lw(Register.FP, 12, Register.SP);
+        method.lw(Register.S0, 8, Register.SP);
+        method.lw(Register.RA, 4, Register.SP);
+        method.addiu(Register.SP, Register.SP, 12);
+
         if (num_formals > 0) {
-            method.add("e", "    addiu   $sp $sp " + (num_formals * 4));
+            method.addiu(Register.SP, Register.SP, num_formals * 4);
         }
 
-        method.add("e", "    jr      $ra");
+        method.jr(Register.RA);
 
-        text_section.add("e", method);
+        text_functions.add(method);
         return null;
     }
 
     @Override
-    public ST visit(ASTNode.IntType intLiteral) {
+    public MipsCode visit(ASTNode.IntType intLiteral) {
         int value = Integer.parseInt(intLiteral.getToken().getText());
         String label = int_const.get(value);
-        ST code = templates.getInstanceOf("sequence");
-        code.add("e", "    la      $a0 " + label);
-        return code;
+        return newCode().la(Register.A0, label);
     }
 
     @Override
-    public ST visit(ASTNode.StringType stringType) {
+    public MipsCode visit(ASTNode.StringType stringType) {
         String value = stringType.getToken().getText();
         String label = string_constants.get(value);
-        ST code = templates.getInstanceOf("sequence");
-        code.add("e", "    la      $a0 " + label);
-        return code;
+        return newCode().la(Register.A0, label);
     }
 
     @Override
-    public ST visit(ASTNode.TrueType trueType) {
-        ST code = templates.getInstanceOf("sequence");
-        code.add("e", "    la      $a0 bool_const1");
-        return code;
+    public MipsCode visit(ASTNode.TrueType trueType) {
+        return newCode().la(Register.A0, "bool_const1");
     }
 
     @Override
-    public ST visit(ASTNode.FalseType falseType) {
-        ST code = templates.getInstanceOf("sequence");
-        code.add("e", "    la      $a0 bool_const0");
-        return code;
+    public MipsCode visit(ASTNode.FalseType falseType) {
+        return newCode().la(Register.A0, "bool_const0");
     }
 
     @Override
-    public ST visit(ASTNode.IDtype iDtype) {
+    public MipsCode visit(ASTNode.IDtype iDtype) {
         String var_name = iDtype.getToken().getText();
-        ST code = templates.getInstanceOf("sequence");
+        MipsCode code = newCode();
 
         if (var_name.equals("self")) {
-            code.add("e", "    move    $a0 $s0");
-            return code;
+            return code.move(Register.A0, Register.S0);
         }
 
         // Check let variables first
         if (letVariableOffsets.containsKey(var_name)) {
             int offset = letVariableOffsets.get(var_name);
-            code.add("e", "    lw      $a0 " + offset + "($fp)");
-            return code;
+            return code.lw(Register.A0, offset, Register.FP);
         }
 
         // Check formal parameters
         int formalOffset = findFormalOffset(var_name);
         if (formalOffset >= 0) {
-            code.add("e", "    lw      $a0 " + formalOffset + "($fp)");
-            return code;
+            return code.lw(Register.A0, formalOffset, Register.FP);
         }
 
         // Look up attribute
         int offset = findAttributeOffset(currentClass, var_name);
         if (offset >= 0) {
-            code.add("e", "    lw      $a0 " + offset + "($s0)");
-            return code;
+            String type = attributeType(currentClass, var_name);
+            if (RawAttributes.isRaw(type)) {
+                RawAttributes.load(code, type, offset);
+                return code;
+            }
+            return code.lw(Register.A0, offset, Register.S0);
         }
 
-        code.add("e", "    li      $a0 0");
-        return code;
+        return code.li(Register.A0, 0);
+    }
+
+    // Where name is read from, resolved like visit(IDtype) does
+    private InstructionSelector.Slot slot(String name) {
+        if (letVariableOffsets.containsKey(name)) {
+            return new InstructionSelector.Slot(Register.FP, letVariableOffsets.get(name), false);
+        }
+        int formal_offset = findFormalOffset(name);
+        if (formal_offset >= 0) {
+            return new InstructionSelector.Slot(Register.FP, formal_offset, false);
+        }
+        int offset = findAttributeOffset(currentClass, name);
+        if (offset < 0) return null;
+        return new InstructionSelector.Slot(Register.S0, offset, RawAttributes.isRaw(attributeType(currentClass, name)));
     }
 
     private int findAttributeOffset(ClassSymbol cls, String attrName) {
@@ -769,22 +1018,22 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         return "Object";
     }
 
-    private void addArguments(ST code, List<ASTNode.Expression> arguments) {
+    private void addArguments(MipsCode code, List<ASTNode.Expression> arguments) {
         for (int i = arguments.size() - 1; i >= 0; i--) {
             ASTNode.Expression arg = arguments.get(i);
-            code.add("e", arg.accept(this));
-            code.add("e", "    sw      $a0 0($sp)");
-            code.add("e", "    addiu   $sp $sp -4");
+            code.append(arg.accept(this));
+            code.sw(Register.A0, 0, Register.SP);
+            code.addiu(Register.SP, Register.SP, -4);
         }
     }
 
     @Override
-    public ST visit(ASTNode.FuncCallClassNode funcCallClassNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.FuncCallClassNode funcCallClassNode) {
+        MipsCode code = newCode();
 
         addArguments(code, funcCallClassNode.arguments);
 
-        code.add("e", funcCallClassNode.object.accept(this));
+        code.append(funcCallClassNode.object.accept(this));
 
         int label_id = labelCounter++;
         String full_path = funcCallClassNode.getToken().getInputStream().getSourceName();
@@ -792,11 +1041,11 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         String filename_label = string_constants.get(filename);
         int line = funcCallClassNode.getToken().getLine();
 
-        code.add("e", "    bne     $a0 $zero not_void_" + label_id);
-        code.add("e", "    la      $a0 " + filename_label);
-        code.add("e", "    li      $t1 " + line);
-        code.add("e", "    jal     _dispatch_abort");
-        code.add("e", "not_void_" + label_id + ":");
+        code.branch(Opcode.BNE, Register.A0, Register.ZERO, "not_void_" + label_id);
+        code.la(Register.A0, filename_label);
+        code.li(Register.T1, line);
+        code.jal("_dispatch_abort");
+        code.label("not_void_" + label_id);
 
         String class_name;
         if (funcCallClassNode.atType != null) {
@@ -807,17 +1056,28 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
 
         String method_name = funcCallClassNode.id.getToken().getText();
 
+        // String has no subclasses, so these always reach its own methods
+        if (class_name.equals("String") && method_name.equals("length")) {
+            StringRuntime.length(code);
+            return code;
+        }
+        if (class_name.equals("String") && method_name.equals("substr")) {
+            StringRuntime.substr(code, "substr_range_" + label_id, "substr_end_" + label_id);
+            uses_string_runtime = true;
+            return code;
+        }
+
         if (funcCallClassNode.atType != null) {
-            code.add("e", "    la      $t0 " + class_name + "_dispTab");
+            code.la(Register.T0, class_name + "_dispTab");
             int offset = getDispatchOffset(class_name, method_name);
-            code.add("e", "    lw      $t0 " + offset + "($t0)");
+            code.lw(Register.T0, offset, Register.T0);
         } else {
             int offset = getDispatchOffset(class_name, method_name);
-            code.add("e", "    lw      $t0 8($a0)");
-            code.add("e", "    lw      $t0 " + offset + "($t0)");
+            code.lw(Register.T0, 8, Register.A0);
+            code.lw(Register.T0, offset, Register.T0);
         }
 
-        code.add("e", "    jalr    $t0");
+        code.jalr(Register.T0);
         return code;
     }
 
@@ -835,29 +1095,29 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     @Override
-    public ST visit(ASTNode.FuncCallNode funcCallNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.FuncCallNode funcCallNode) {
+        MipsCode code = newCode();
 
         addArguments(code, funcCallNode.arguments);
-        code.add("e", "    move    $a0 $s0");
+        code.move(Register.A0, Register.S0);
         String method_name = funcCallNode.id.getToken().getText();
         int offset = getDispatchOffset(currentClass.getName(), method_name);
-        code.add("e", "    lw      $t0 8($a0)");
-        code.add("e", "    lw      $t0 " + offset + "($t0)");
-        code.add("e", "    jalr    $t0");
+        code.lw(Register.T0, 8, Register.A0);
+        code.lw(Register.T0, offset, Register.T0);
+        code.jalr(Register.T0);
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.ParenNode parenNode) {
+    public MipsCode visit(ASTNode.ParenNode parenNode) {
         return parenNode.exp.accept(this);
     }
 
     @Override
-    public ST visit(ASTNode.BlockNode blockNode) {
-        ST result = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.BlockNode blockNode) {
+        MipsCode result = newCode();
         for (ASTNode.Expression expr : blockNode.expressions) {
-            result.add("e", expr.accept(this));
+            result.append(expr.accept(this));
         }
         return result;
     }
@@ -878,35 +1138,36 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     @Override
-    public ST visit(ASTNode.AssignNode assignNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.AssignNode assignNode) {
+        MipsCode code = newCode();
         String var_name = assignNode.id.getToken().getText();
 
-        code.add("e", assignNode.exp.accept(this));
+        code.append(assignNode.exp.accept(this));
 
         if (letVariableOffsets.containsKey(var_name)) {
             int offset = letVariableOffsets.get(var_name);
-            code.add("e", "    sw      $a0 " + offset + "($fp)");
-            return code;
+            return code.sw(Register.A0, offset, Register.FP);
         }
 
         int formal_offset = findFormalOffset(var_name);
         if (formal_offset >= 0) {
-            code.add("e", "    sw      $a0 " + formal_offset + "($fp)");
-            return code;
+            return code.sw(Register.A0, formal_offset, Register.FP);
         }
 
         int offset = findAttributeOffset(currentClass, var_name);
-        if (offset >= 0) {
-            code.add("e", "    sw      $a0 " + offset + "($s0)");
+        if (offset >= 0 && RawAttributes.isRaw(attributeType(currentClass, var_name))) {
+            RawAttributes.store(code, offset);
+        } else if (offset >= 0) {
+            code.sw(Register.A0, offset, Register.S0);
+            GenGC.assigned(code, Register.S0, offset);
         }
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.LetNode letNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.LetNode letNode) {
+        MipsCode code = newCode();
 
         int num_vars = letNode.localVars.size();
         int saved_let_offset = currentLetOffset;
@@ -923,30 +1184,30 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             letVariableTypes.put(var_name, type_name);
 
             if (var.initExpr != null) {
-                code.add("e", var.initExpr.accept(this));
+                code.append(var.initExpr.accept(this));
             } else {
                 switch (type_name) {
                     case "Int" -> {
                         addInt(0);
-                        code.add("e", "    la      $a0 " + int_const.get(0));
+                        code.la(Register.A0, int_const.get(0));
                     }
                     case "String" -> {
                         addString("");
-                        code.add("e", "    la      $a0 " + string_constants.get(""));
+                        code.la(Register.A0, string_constants.get(""));
                     }
-                    case "Bool" -> code.add("e", "    la      $a0 bool_const0");
-                    default -> code.add("e", "    li      $a0 0");
+                    case "Bool" -> code.la(Register.A0, "bool_const0");
+                    default -> code.li(Register.A0, 0);
                 }
             }
 
-            code.add("e", "    addiu   $sp $sp -4");
-            code.add("e", "    sw      $a0 " + var_offset + "($fp)");
+            code.addiu(Register.SP, Register.SP, -4);
+            code.sw(Register.A0, var_offset, Register.FP);
         }
 
-        code.add("e", letNode.body.accept(this));
+        code.append(letNode.body.accept(this));
 
         if (num_vars > 0) {
-            code.add("e", "    addiu   $sp $sp " + (num_vars * 4));
+            code.addiu(Register.SP, Register.SP, num_vars * 4);
         }
 
         currentLetOffset = saved_let_offset;
@@ -957,239 +1218,275 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     @Override
-    public ST visit(ASTNode.LocalVarNode localVarNode) {
+    public MipsCode visit(ASTNode.LocalVarNode localVarNode) {
         return null;
     }
 
     @Override
-    public ST visit(ASTNode.NewTypeNode newTypeNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.NewTypeNode newTypeNode) {
+        MipsCode code = newCode();
         String type_name = newTypeNode.type.getToken().getText();
 
         if (type_name.equals("SELF_TYPE")) {
-            code.add("e", "    la      $t0 class_objTab");
-            code.add("e", "    lw      $t1 0($s0)");
-            code.add("e", "    sll     $t1 $t1 3");
-            code.add("e", "    addu    $t0 $t0 $t1");
-            code.add("e", "    lw      $a0 0($t0)");
-            code.add("e", "    jal     Object.copy");
-            code.add("e", "    la      $t0 class_objTab");
-            code.add("e", "    lw      $t1 0($s0)");
-            code.add("e", "    sll     $t1 $t1 3");
-            code.add("e", "    addu    $t0 $t0 $t1");
-            code.add("e", "    lw      $t0 4($t0)");
-            code.add("e", "    jalr    $t0");
+            code.la(Register.T0, "class_objTab");
+            code.lw(Register.T1, 0, Register.S0);
+            code.opImm(Opcode.SLL, Register.T1, Register.T1, 3);
+            code.op(Opcode.ADDU, Register.T0, Register.T0, Register.T1);
+            code.lw(Register.A0, 0, Register.T0);
+            code.jal("Object.copy");
+            GenGC.checkAllocation(code);
+            code.la(Register.T0, "class_objTab");
+            code.lw(Register.T1, 0, Register.S0);
+            code.opImm(Opcode.SLL, Register.T1, Register.T1, 3);
+            code.op(Opcode.ADDU, Register.T0, Register.T0, Register.T1);
+            code.lw(Register.T0, 4, Register.T0);
+            code.jalr(Register.T0);
         } else {
-            code.add("e", "    la      $a0 " + type_name + "_protObj");
-            code.add("e", "    jal     Object.copy");
-            code.add("e", "    jal     " + type_name + "_init");
+            code.la(Register.A0, type_name + "_protObj");
+            code.jal("Object.copy");
+            GenGC.checkAllocation(code);
+            code.jal(type_name + "_init");
         }
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.IfNode ifNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.IfNode ifNode) {
+        MipsCode code = newCode();
 
         int label_id = labelCounter++;
         String else_branch = "else_branch_" + label_id;
         String end_if = "end_if_" + label_id;
 
-        code.add("e", ifNode.condition.accept(this));
-        code.add("e", "    lw      $t0 12($a0)");
-        code.add("e", "    beqz    $t0 " + else_branch);
-        code.add("e", ifNode.thenExp.accept(this));
-        code.add("e", "    b       " + end_if);
-        code.add("e", else_branch + ":");
-        code.add("e", ifNode.elseExp.accept(this));
-        code.add("e", end_if + ":");
+        code.append(ifNode.condition.accept(this));
+        code.lw(Register.T0, 12, Register.A0);
+        code.branchZero(Opcode.BEQZ, Register.T0, else_branch);
+        code.append(ifNode.thenExp.accept(this));
+        code.b(end_if);
+        code.label(else_branch);
+        code.append(ifNode.elseExp.accept(this));
+        code.label(end_if);
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.IsvoidNode isvoidNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.IsvoidNode isvoidNode) {
+        MipsCode code = newCode();
 
-        code.add("e", isvoidNode.exp.accept(this));
+        code.append(isvoidNode.exp.accept(this));
 
         int label_id = labelCounter++;
         String is_void_label = "is_void_" + label_id;
         String end_void_label = "end_void_" + label_id;
 
-        code.add("e", "    beqz    $a0 " + is_void_label);
-        code.add("e", "    la      $a0 bool_const0");
-        code.add("e", "    b       " + end_void_label);
-        code.add("e", is_void_label + ":");
-        code.add("e", "    la      $a0 bool_const1");
-        code.add("e", end_void_label + ":");
+        code.branchZero(Opcode.BEQZ, Register.A0, is_void_label);
+        code.la(Register.A0, "bool_const0");
+        code.b(end_void_label);
+        code.label(is_void_label);
+        code.la(Register.A0, "bool_const1");
+        code.label(end_void_label);
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.NotNode notNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.NotNode notNode) {
+        MipsCode code = newCode();
 
-        code.add("e", notNode.exp.accept(this));
-        code.add("e", "    lw      $t0 12($a0)");
+        code.append(notNode.exp.accept(this));
+        code.lw(Register.T0, 12, Register.A0);
 
         int label_id = labelCounter++;
         String was_true = "was_true_" + label_id;
         String end_not = "end_not_" + label_id;
 
-        code.add("e", "    beqz    $t0 " + was_true);
-        code.add("e", "    la      $a0 bool_const0");
-        code.add("e", "    b       " + end_not);
-        code.add("e", was_true + ":");
-        code.add("e", "    la      $a0 bool_const1");
-        code.add("e", end_not + ":");
+        code.branchZero(Opcode.BEQZ, Register.T0, was_true);
+        code.la(Register.A0, "bool_const0");
+        code.b(end_not);
+        code.label(was_true);
+        code.la(Register.A0, "bool_const1");
+        code.label(end_not);
 
         return code;
     }
 
-    private ST addOperation(ASTNode left, ASTNode right, String instruction) {
-        ST code = templates.getInstanceOf("sequence");
+    // Code for an operator whose operands the selector could tile, or null
+    private MipsCode select(ASTNode.Expression expr) {
+        return InstructionSelector.enabled() ? selector.select(expr) : null;
+    }
+
+    private MipsCode addOperation(ASTNode.Expression node, ASTNode left, ASTNode right, Opcode instruction) {
+        MipsCode selected = select(node);
+        if (selected != null) return selected;
+
+        MipsCode code = newCode();
 
-        code.add("e", left.accept(this));
+        code.append(left.accept(this));
 
-        code.add("e", "    sw      $a0 0($sp)");
-        code.add("e", "    addiu   $sp $sp -4");
+        code.sw(Register.A0, 0, Register.SP);
+        code.addiu(Register.SP, Register.SP, -4);
 
-        code.add("e", right.accept(this));
-        code.add("e", "    jal     Object.copy");
+        code.append(right.accept(this));
+        code.jal("Object.copy");
+        GenGC.checkAllocation(code);
 
-        code.add("e", "    addiu   $sp $sp 4");
-        code.add("e", "    lw      $t1 0($sp)");
+        code.addiu(Register.SP, Register.SP, 4);
+        code.lw(Register.T1, 0, Register.SP);
 
-        code.add("e", "    lw      $t1 12($t1)");
-        code.add("e", "    lw      $t2 12($a0)");
+        code.lw(Register.T1, 12, Register.T1);
+        code.lw(Register.T2, 12, Register.A0);
 
-        code.add("e", String.format("    %s     $t1 $t1 $t2", instruction));
-        code.add("e", "    sw      $t1 12($a0)");
+        code.op(instruction, Register.T1, Register.T1, Register.T2);
+        code.sw(Register.T1, 12, Register.A0);
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.PlusNode plusNode) {
-        return addOperation(plusNode.left, plusNode.right, "add");
+    public MipsCode visit(ASTNode.PlusNode plusNode) {
+        return addOperation(plusNode, plusNode.left, plusNode.right, Opcode.ADD);
     }
 
     @Override
-    public ST visit(ASTNode.MinusNode minusNode) {
-        return addOperation(minusNode.left, minusNode.right, "sub");
+    public MipsCode visit(ASTNode.MinusNode minusNode) {
+        return addOperation(minusNode, minusNode.left, minusNode.right, Opcode.SUB);
     }
 
     @Override
-    public ST visit(ASTNode.MulNode mulNode) {
-        return addOperation(mulNode.left, mulNode.right, "mul");
+    public MipsCode visit(ASTNode.MulNode mulNode) {
+        return addOperation(mulNode, mulNode.left, mulNode.right, Opcode.MUL);
     }
 
     @Override
-    public ST visit(ASTNode.DivNode divNode) {
-        return addOperation(divNode.left, divNode.right, "div");
+    public MipsCode visit(ASTNode.DivNode divNode) {
+        return addOperation(divNode, divNode.left, divNode.right, Opcode.DIV);
     }
 
     @Override
-    public ST visit(ASTNode.TildeNode tildeNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.TildeNode tildeNode) {
+        MipsCode selected = select(tildeNode);
+        if (selected != null) return selected;
+
+        MipsCode code = newCode();
 
-        code.add("e", tildeNode.exp.accept(this));
-        code.add("e", "    jal     Object.copy");
-        code.add("e", "    lw      $t1 12($a0)");
-        code.add("e", "    neg     $t1 $t1");
-        code.add("e", "    sw      $t1 12($a0)");
+        code.append(tildeNode.exp.accept(this));
+        code.jal("Object.copy");
+        GenGC.checkAllocation(code);
+        code.lw(Register.T1, 12, Register.A0);
+        code.neg(Register.T1, Register.T1);
+        code.sw(Register.T1, 12, Register.A0);
 
         return code;
     }
 
-    private ST addComparison(ASTNode left, ASTNode right, String branchOp) {
-        ST code = templates.getInstanceOf("sequence");
+    private MipsCode addComparison(ASTNode.Expression node, ASTNode left, ASTNode right, Opcode branchOp) {
+        MipsCode selected = select(node);
+        if (selected != null) return selected;
 
-        code.add("e", left.accept(this));
-        code.add("e", "    sw      $a0 0($sp)");
-        code.add("e", "    addiu   $sp $sp -4");
-        code.add("e", right.accept(this));
-        code.add("e", "    addiu   $sp $sp 4");
-        code.add("e", "    lw      $t1 0($sp)");
-        code.add("e", "    lw      $t1 12($t1)");
-        code.add("e", "    lw      $t2 12($a0)");
+        MipsCode code = newCode();
+
+        code.append(left.accept(this));
+        code.sw(Register.A0, 0, Register.SP);
+        code.addiu(Register.SP, Register.SP, -4);
+        code.append(right.accept(this));
+        code.addiu(Register.SP, Register.SP, 4);
+        code.lw(Register.T1, 0, Register.SP);
+        code.lw(Register.T1, 12, Register.T1);
+        code.lw(Register.T2, 12, Register.A0);
 
         int labelId = labelCounter++;
         String trueLabel = "comp_true_" + labelId;
         String endLabel = "comp_end_" + labelId;
 
-        code.add("e", String.format("    %s     $t1 $t2 %s", branchOp, trueLabel));
-        code.add("e", "    la      $a0 bool_const0");
-        code.add("e", "    b       " + endLabel);
-        code.add("e", trueLabel + ":");
-        code.add("e", "    la      $a0 bool_const1");
-        code.add("e", endLabel + ":");
+        code.branch(branchOp, Register.T1, Register.T2, trueLabel);
+        code.la(Register.A0, "bool_const0");
+        code.b(endLabel);
+        code.label(trueLabel);
+        code.la(Register.A0, "bool_const1");
+        code.label(endLabel);
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.LtNode ltNode) {
-        return addComparison(ltNode.left, ltNode.right, "blt");
+    public MipsCode visit(ASTNode.LtNode ltNode) {
+        return addComparison(ltNode, ltNode.left, ltNode.right, Opcode.BLT);
     }
 
     @Override
-    public ST visit(ASTNode.LeNode leNode) {
-        return addComparison(leNode.left, leNode.right, "ble");
+    public MipsCode visit(ASTNode.LeNode leNode) {
+        return addComparison(leNode, leNode.left, leNode.right, Opcode.BLE);
     }
 
     @Override
-    public ST visit(ASTNode.EqualNode equalNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.EqualNode equalNode) {
+        MipsCode selected = select(equalNode);
+        if (selected != null) return selected;
+
+        MipsCode code = newCode();
 
-        code.add("e", equalNode.left.accept(this));
-        code.add("e", "    sw      $a0 0($sp)");
-        code.add("e", "    addiu   $sp $sp -4");
+        code.append(equalNode.left.accept(this));
+        code.sw(Register.A0, 0, Register.SP);
+        code.addiu(Register.SP, Register.SP, -4);
 
-        code.add("e", equalNode.right.accept(this));
-        code.add("e", "    move    $t2 $a0");
+        code.append(equalNode.right.accept(this));
+        code.move(Register.T2, Register.A0);
 
-        code.add("e", "    addiu   $sp $sp 4");
-        code.add("e", "    lw      $t1 0($sp)");
+        code.addiu(Register.SP, Register.SP, 4);
+        code.lw(Register.T1, 0, Register.SP);
 
         int label_id = labelCounter++;
         String end_label = "eq_end_" + label_id;
 
-        code.add("e", "    la      $a0 bool_const1");
-        code.add("e", "    la      $a1 bool_const0");
-        code.add("e", "    beq     $t1 $t2 " + end_label);
-        code.add("e", "    jal     equality_test");
-        code.add("e", end_label + ":");
+        // Both sides have the same basic type or neither has one, and basic values are never void
+        String type = equalNode.left.getStaticType() == null ? null : equalNode.left.getStaticType().getName();
+        if ("Int".equals(type) || "Bool".equals(type)) {
+            code.lw(Register.T1, 12, Register.T1);
+            code.lw(Register.T2, 12, Register.T2);
+            code.la(Register.A0, "bool_const1");
+            code.branch(Opcode.BEQ, Register.T1, Register.T2, end_label);
+            code.la(Register.A0, "bool_const0");
+            code.label(end_label);
+            return code;
+        }
+
+        code.la(Register.A0, "bool_const1");
+        code.la(Register.A1, "bool_const0");
+        code.branch(Opcode.BEQ, Register.T1, Register.T2, end_label);
+        if ("String".equals(type)) {
+            StringRuntime.compareLengths(code, end_label);
+        }
+        code.jal(StringRuntime.equalityTest());
+        code.label(end_label);
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.WhileNode whileNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.WhileNode whileNode) {
+        MipsCode code = newCode();
 
         int label_id = labelCounter++;
         String loop_label = "while_loop_" + label_id;
         String end_label = "while_end_" + label_id;
 
-        code.add("e", loop_label + ":");
-        code.add("e", whileNode.condition.accept(this));
-        code.add("e", "    lw      $t0 12($a0)");
-        code.add("e", "    beqz    $t0 " + end_label);
-        code.add("e", whileNode.body.accept(this));
-        code.add("e", "    b       " + loop_label);
-        code.add("e", end_label + ":");
-        code.add("e", "    li      $a0 0");
+        code.label(loop_label);
+        code.append(whileNode.condition.accept(this));
+        code.lw(Register.T0, 12, Register.A0);
+        code.branchZero(Opcode.BEQZ, Register.T0, end_label);
+        code.append(whileNode.body.accept(this));
+        code.b(loop_label);
+        code.label(end_label);
+        code.li(Register.A0, 0);
 
         return code;
     }
 
     @Override
-    public ST visit(ASTNode.CaseNode caseNode) {
-        ST code = templates.getInstanceOf("sequence");
+    public MipsCode visit(ASTNode.CaseNode caseNode) {
+        MipsCode code = newCode();
 
         int label_id = labelCounter++;
         String end_label = "case_end_" + label_id;
@@ -1199,16 +1496,16 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
         String filename_label = string_constants.get(filename);
         int line = caseNode.getToken().getLine();
 
-        code.add("e", caseNode.condition.accept(this));
-        code.add("e", "    bne     $a0 $zero case_not_void_" + label_id);
-        code.add("e", "    la      $a0 " + filename_label);
-        code.add("e", "    li      $t1 " + line);
-        code.add("e", "    jal     _case_abort2");
-        code.add("e", "case_not_void_" + label_id + ":");
+        code.append(caseNode.condition.accept(this));
+        code.branch(Opcode.BNE, Register.A0, Register.ZERO, "case_not_void_" + label_id);
+        code.la(Register.A0, filename_label);
+        code.li(Register.T1, line);
+        code.jal("_case_abort2");
+        code.label("case_not_void_" + label_id);
 
-        code.add("e", "    sw      $a0 0($sp)");
-        code.add("e", "    addiu   $sp $sp -4");
-        code.add("e", "    lw      $t0 0($a0)");
+        code.sw(Register.A0, 0, Register.SP);
+        code.addiu(Register.SP, Register.SP, -4);
+        code.lw(Register.T0, 0, Register.A0);
 
         List<ASTNode.CaseMethodNode> sorted_branches = new ArrayList<>(caseNode.cases);
         sorted_branches.sort((a, b) -> {
@@ -1226,12 +1523,12 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             String branch_label = "case_branch_" + label_id + "_" + branch_num;
             String next_label = "case_next_" + label_id + "_" + branch_num;
 
-            code.add("e", "    li      $t1 " + branch_tag);
-            code.add("e", "    blt     $t0 $t1 " + next_label);
-            code.add("e", "    li      $t1 " + max_child_tag);
-            code.add("e", "    bgt     $t0 $t1 " + next_label);
+            code.li(Register.T1, branch_tag);
+            code.branch(Opcode.BLT, Register.T0, Register.T1, next_label);
+            code.li(Register.T1, max_child_tag);
+            code.branch(Opcode.BGT, Register.T0, Register.T1, next_label);
 
-            code.add("e", branch_label + ":");
+            code.label(branch_label);
 
             int saved_let_offset = currentLetOffset;
             Map<String, Integer> saved_offsets = new HashMap<>(letVariableOffsets);
@@ -1243,33 +1540,130 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
             letVariableOffsets.put(var_name, var_offset);
             letVariableTypes.put(var_name, branch_type);
 
-            code.add("e", "    addiu   $sp $sp 4");
-            code.add("e", "    lw      $a0 0($sp)");
-            code.add("e", "    addiu   $sp $sp -4");
-            code.add("e", "    sw      $a0 " + var_offset + "($fp)");
+            code.addiu(Register.SP, Register.SP, 4);
+            code.lw(Register.A0, 0, Register.SP);
+            code.addiu(Register.SP, Register.SP, -4);
+            code.sw(Register.A0, var_offset, Register.FP);
 
-            code.add("e", branch.cases.accept(this));
+            code.append(branch.cases.accept(this));
 
-            code.add("e", "    addiu   $sp $sp 4");
+            code.addiu(Register.SP, Register.SP, 4);
 
             currentLetOffset = saved_let_offset;
             letVariableOffsets = saved_offsets;
             letVariableTypes = saved_types;
 
-            code.add("e", "    b       " + end_label);
-            code.add("e", next_label + ":");
+            code.b(end_label);
+            code.label(next_label);
             branch_num++;
         }
 
-        code.add("e", "    addiu   $sp $sp 4");
-        code.add("e", "    lw      $a0 0($sp)");
-        code.add("e", "    jal     _case_abort");
+        code.addiu(Register.SP, Register.SP, 4);
+        code.lw(Register.A0, 0, Register.SP);
+        code.jal("_case_abort");
 
-        code.add("e", end_label + ":");
+        code.label(end_label);
 
         return code;
     }
 
+    @Override
+    public int dispatchOffset(String className, String methodName) {
+        return getDispatchOffset(className, methodName);
+    }
+
+    @Override
+    public String methodLabel(String className, String methodName) {
+        ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(className);
+        return buildDispatchTableMap(cls).get(methodName);
+    }
+
+    @Override
+    public String uniqueMethodLabel(String className, String methodName) {
+        int tag = classTag(className);
+        if (tag < 0) return null;
+
+        String label = methodLabel(className, methodName);
+        for (int sub = tag + 1; sub <= maxDescendantTag(className); sub++) {
+            if (!Objects.equals(label, methodLabel(class_names.get(sub), methodName))) return null;
+        }
+        return label;
+    }
+
+    @Override
+    public int attributeOffset(String className, String attrName) {
+        ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(className);
+        return cls == null ? -1 : findAttributeOffset(cls, attrName);
+    }
+
+    @Override
+    public IRInstr.Kind attributeKind(String className, String attrName) {
+        String type = attributeType((ClassSymbol) SymbolTable.globals.lookup(className), attrName);
+        if (!RawAttributes.isRaw(type)) return IRInstr.Kind.REF;
+        return type.equals("Int") ? IRInstr.Kind.INT : IRInstr.Kind.BOOL;
+    }
+
+    private String attributeType(ClassSymbol cls, String attrName) {
+        for (ClassSymbol c = cls; c != null; c = c.getInherited_class()) {
+            if (c.attributes.get(attrName) instanceof IdSymbol attr && attr.getType() != null) {
+                return attr.getType().getName();
+            }
+        }
+        return "Object";
+    }
+
+    @Override
+    public int objectSize(String className) {
+        return 3 + countAllAttributes((ClassSymbol) SymbolTable.globals.lookup(className));
+    }
+
+    @Override
+    public String prototypeWord(String className, int offset) {
+        ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(className);
+        List<String> defaults = attributeDefaults(cls);
+        int index = offset / 4 - 3;
+        return index >= 0 && index < defaults.size() ? defaults.get(index) : null;
+    }
+
+    @Override
+    public boolean hasInitializers(String className) {
+        for (ASTNode.ClassDef classDef : lineage(className)) {
+            for (ASTNode.Feature feature : classDef.features) {
+                if (feature instanceof ASTNode.AssignFeatures attr && attr.exp != null) return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int classTag(String className) {
+        return class_names.indexOf(className);
+    }
+
+    @Override
+    public int maxDescendantTag(String className) {
+        return getMaxChildTag(className);
+    }
+
+    @Override
+    public String stringConstant(String value) {
+        addString(value);
+        return string_constants.get(value);
+    }
+
+    @Override
+    public String intConstant(int value) {
+        return addInt(value);
+    }
+
+    @Override
+    public String stringValue(String label) {
+        for (Map.Entry<String, String> entry : string_constants.entrySet()) {
+            if (entry.getValue().equals(label)) return entry.getKey();
+        }
+        return null;
+    }
+
     private int getMaxChildTag(String className) {
         int tag = class_names.indexOf(className);
         List<String> children = inheritanceTree.get(className);
@@ -1285,27 +1679,27 @@ public class CodeGenVisitor implements ASTVisitor<ST> {
     }
 
     @Override
-    public ST visit(ASTNode.AssignFeatures assignFeatures) {
+    public MipsCode visit(ASTNode.AssignFeatures assignFeatures) {
         return null;
     }
 
     @Override
-    public ST visit(ASTNode.Formal formal) {
+    public MipsCode visit(ASTNode.Formal formal) {
         return null;
     }
 
     @Override
-    public ST visit(ASTNode.IDNode idNode) {
+    public MipsCode visit(ASTNode.IDNode idNode) {
         return null;
     }
 
     @Override
-    public ST visit(ASTNode.TypeNode typeNode) {
+    public MipsCode visit(ASTNode.TypeNode typeNode) {
         return null;
     }
 
     @Override
-    public ST visit(ASTNode.CaseMethodNode caseMethodNode) {
+    public MipsCode visit(ASTNode.CaseMethodNode caseMethodNode) {
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package cool.codegen;
+
+import cool.compiler.Options;
+import cool.mips.MipsCode;
+import cool.mips.Register;
+
+import java.util.List;
+
+/*
+ * What the runtime's generational collector needs from generated code in
+ * -gc mode. The _MemMgr words select the collector, every object in the
+ * data section or allocated by the compiler's own routines is preceded by
+ * the -1 eyecatcher the collector looks for, each new object is handed to
+ * _gc_check, and every attribute store is followed by the _GenGC_Assign
+ * write barrier with the address of the attribute in $a1.
+ *
+ * The collector scans the stack between $sp and the stack end it records
+ * in _GenGC_Init, so frames must not hold stale pointers: optimized
+ * routines clear their slots on entry. Nor may they hold an unboxed Int
+ * that looks like one, which the collector would rewrite or abort on, so
+ * such values are kept as odd words, which it skips.
+ */
+public class GenGC {
+    public static final String EYECATCHER = "    .word   -1";
+
+    public static boolean enabled() {
+        return Options.garbageCollection;
+    }
+
+    // Bytes in front of each object for its eyecatcher
+    public static int header() {
+        return enabled() ? 4 : 0;
+    }
+
+    public static List<String> data() {
+        return List.of(
+                "    .globl  _MemMgr_INITIALIZER",
+                "_MemMgr_INITIALIZER:",
+                "    .word   _GenGC_Init",
+                "    .globl  _MemMgr_COLLECTOR",
+                "_MemMgr_COLLECTOR:",
+                "    .word   _GenGC_Collect",
+                "    .globl  _MemMgr_TEST",
+                "_MemMgr_TEST:",
+                "    .word   0");
+    }
+
+    // After an allocation leaving the new object in $a0
+    public static void checkAllocation(MipsCode code) {
+        if (!enabled()) return;
+        code.move(Register.A1, Register.A0);
+        code.jal("_gc_check");
+    }
+
+    // After a store of a pointer to offset(base)
+    public static void assigned(MipsCode code, Register base, int offset) {
+        if (!enabled()) return;
+        code.addiu(Register.A1, base, offset);
+        code.jal("_GenGC_Assign");
+    }
+}
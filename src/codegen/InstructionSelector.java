@@ -0,0 +1,406 @@
+package cool.codegen;
+
+import cool.AST.ASTNode;
+import cool.compiler.Options;
+import cool.mips.LabelTable;
+import cool.mips.MipsCode;
+import cool.mips.Opcode;
+import cool.mips.Register;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * With -tile, unoptimized code does not build Int arithmetic and
+ * comparisons one node at a time when every operand is an Int constant or
+ * variable. Instead it covers the expression tree with MIPS instruction
+ * patterns. The per-node code takes every operand through $a0 and the
+ * stack and makes a new Int for every intermediate result. A tiled tree
+ * keeps its intermediate values in temporaries and boxes only the result.
+ *
+ * The tree is first rewritten into operators close to the machine. A
+ * variable becomes the load of field 12 of the object that a frame or
+ * self slot points to; a raw attribute is the load of the slot itself.
+ * Each pattern derives a nonterminal from one operator whose operands
+ * are nonterminals, at a cost in cycles. The nonterminals are a value in
+ * a register, a 16-bit immediate, and a memory operand based on $fp, $s0
+ * or a register. The patterns cover addi and slti immediates, sll for
+ * products by powers of two, and $zero, $fp and $s0 used as operands
+ * directly.
+ *
+ * The cheapest derivation of each nonterminal at every node is found
+ * bottom up, as in a bottom-up rewrite system. The tiles of the cheapest
+ * register derivation of the root are then emitted top down, starting
+ * with the operand that needs more temporaries.
+ *
+ * A tree with a call, an assignment or anything else with effects or
+ * control flow keeps the per-node code. That code still offers each of
+ * its operands to the selector on its own.
+ */
+public class InstructionSelector {
+    private static final Register[] TEMPS = {
+            Register.T0, Register.T1, Register.T2, Register.T3, Register.T4,
+            Register.T5, Register.T6, Register.T7, Register.T8, Register.T9};
+    private static final int INFINITE = Integer.MAX_VALUE / 4;
+
+    // Where the code generator keeps a variable: the word at offset(base),
+    // pointing to an Int object or, for a raw attribute, holding the value
+    public static class Slot {
+        final Register base;
+        final int offset;
+        final boolean raw;
+
+        public Slot(Register base, int offset, boolean raw) {
+            this.base = base;
+            this.offset = offset;
+            this.raw = raw;
+        }
+    }
+
+    public interface Variables {
+        // Slot of an Int variable in scope, or null
+        Slot locate(String name);
+    }
+
+    private enum Op { CONST, FRAME, SELF, FIELD, LOAD, ADD, SUB, MUL, DIV, NEG, LT, LE, EQ }
+
+    private enum Nt { REG, IMM, MEM }
+
+    // Patterns: nonterminal <- op(operand nonterminals), cost, and whether one-tile-per-node code has it
+    private enum Rule {
+        IMM(Nt.IMM, Op.CONST, 0, false, null),
+        ZERO(Nt.REG, Op.CONST, 0, false, null),
+        LI(Nt.REG, Op.CONST, 1, true, Opcode.LI),
+        FRAME_SLOT(Nt.MEM, Op.FRAME, 0, true, null),
+        SELF_SLOT(Nt.MEM, Op.SELF, 0, true, null),
+        FIELD(Nt.MEM, Op.FIELD, 0, true, null, Nt.REG),
+        LW(Nt.REG, Op.LOAD, 1, true, Opcode.LW, Nt.MEM),
+        ADD(Nt.REG, Op.ADD, 1, true, Opcode.ADD, Nt.REG, Nt.REG),
+        // addi, unlike addiu, traps on overflow as add does
+        ADDI(Nt.REG, Op.ADD, 1, false, Opcode.ADDI, Nt.REG, Nt.IMM),
+        ADDI_LEFT(Nt.REG, Op.ADD, 1, false, Opcode.ADDI, Nt.IMM, Nt.REG),
+        SUB(Nt.REG, Op.SUB, 1, true, Opcode.SUB, Nt.REG, Nt.REG),
+        SUBI(Nt.REG, Op.SUB, 1, false, Opcode.ADDI, Nt.REG, Nt.IMM),
+        NEG(Nt.REG, Op.NEG, 1, true, Opcode.NEG, Nt.REG),
+        MUL(Nt.REG, Op.MUL, 12, true, Opcode.MUL, Nt.REG, Nt.REG),
+        SLL(Nt.REG, Op.MUL, 1, false, Opcode.SLL, Nt.REG, Nt.IMM),
+        SLL_LEFT(Nt.REG, Op.MUL, 1, false, Opcode.SLL, Nt.IMM, Nt.REG),
+        DIV(Nt.REG, Op.DIV, 35, true, Opcode.DIV, Nt.REG, Nt.REG),
+        SLT(Nt.REG, Op.LT, 1, true, Opcode.SLT, Nt.REG, Nt.REG),
+        SLTI(Nt.REG, Op.LT, 1, false, Opcode.SLTI, Nt.REG, Nt.IMM),
+        // sle and seq are two instructions each on the machine
+        SLE(Nt.REG, Op.LE, 2, true, Opcode.SLE, Nt.REG, Nt.REG),
+        SLTI_LE(Nt.REG, Op.LE, 1, false, Opcode.SLTI, Nt.REG, Nt.IMM),
+        SEQ(Nt.REG, Op.EQ, 2, true, Opcode.SEQ, Nt.REG, Nt.REG);
+
+        final Nt nt;
+        final Op op;
+        final int cost;
+        final boolean basic;
+        final Opcode opcode;
+        final Nt[] kids;
+
+        Rule(Nt nt, Op op, int cost, boolean basic, Opcode opcode, Nt... kids) {
+            this.nt = nt;
+            this.op = op;
+            this.cost = cost;
+            this.basic = basic;
+            this.opcode = opcode;
+            this.kids = kids;
+        }
+    }
+
+    private static class Node {
+        final Op op;
+        final Node[] kids;
+        // Constant value, or the offset of a slot or field
+        final int value;
+        final int[] cost = new int[Nt.values().length];
+        final Rule[] rule = new Rule[Nt.values().length];
+
+        Node(Op op, int value, Node... kids) {
+            this.op = op;
+            this.value = value;
+            this.kids = kids;
+        }
+    }
+
+    private final LabelTable labels;
+    private final Variables variables;
+    private final Deque<Register> free = new ArrayDeque<>();
+
+    private int trees = 0;
+    private int operators = 0;
+    private int too_large = 0;
+    private int cost = 0;
+    private int basic_cost = 0;
+    private int unboxed = 0;
+    private final Map<String, Integer> tiles = new TreeMap<>();
+
+    public InstructionSelector(LabelTable labels, Variables variables) {
+        this.labels = labels;
+        this.variables = variables;
+    }
+
+    public static boolean enabled() {
+        return Options.tileExpressions;
+    }
+
+    // Code leaving expr in $a0 as a new Int or a Bool constant, or null when expr keeps the per-node code
+    public MipsCode select(ASTNode.Expression expr) {
+        Node root = build(expr);
+        if (root == null) return null;
+
+        label(root, true);
+        int basic = root.cost[Nt.REG.ordinal()];
+        label(root, false);
+        if (need(root, Nt.REG) > TEMPS.length) {
+            too_large++;
+            return null;
+        }
+        trees++;
+        cost += root.cost[Nt.REG.ordinal()];
+        basic_cost += basic;
+        boolean comparison = !isArithmetic(root.op);
+        int boxes = arithmetic(root);
+        operators += boxes + (comparison ? 1 : 0);
+        unboxed += comparison ? boxes : boxes - 1;
+
+        MipsCode code = new MipsCode(labels);
+        free.clear();
+        free.addAll(Arrays.asList(TEMPS));
+        if (comparison) {
+            boxBool(code, reg(code, root));
+        } else {
+            // Operands are only read, so the new Int can come first and the temporaries need not survive a call
+            code.la(Register.A0, "Int_protObj");
+            code.jal("Object.copy");
+            GenGC.checkAllocation(code);
+            code.sw(reg(code, root), 12, Register.A0);
+        }
+        return code;
+    }
+
+    private Node build(ASTNode.Expression expr) {
+        return switch (expr) {
+            case ASTNode.ParenNode paren -> build(paren.exp);
+            case ASTNode.IntType literal -> new Node(Op.CONST, Integer.parseInt(literal.getToken().getText()));
+            case ASTNode.IDtype id -> variable(id);
+            case ASTNode.PlusNode plus -> binary(Op.ADD, plus.left, plus.right);
+            case ASTNode.MinusNode minus -> binary(Op.SUB, minus.left, minus.right);
+            case ASTNode.MulNode mul -> binary(Op.MUL, mul.left, mul.right);
+            case ASTNode.DivNode div -> binary(Op.DIV, div.left, div.right);
+            case ASTNode.TildeNode tilde -> {
+                Node operand = build(tilde.exp);
+                yield operand == null ? null : new Node(Op.NEG, 0, operand);
+            }
+            case ASTNode.LtNode lt -> binary(Op.LT, lt.left, lt.right);
+            case ASTNode.LeNode le -> binary(Op.LE, le.left, le.right);
+            case ASTNode.EqualNode eq -> isInt(eq.left) ? binary(Op.EQ, eq.left, eq.right) : null;
+            default -> null;
+        };
+    }
+
+    private static boolean isArithmetic(Op op) {
+        return op == Op.ADD || op == Op.SUB || op == Op.MUL || op == Op.DIV || op == Op.NEG;
+    }
+
+    // Arithmetic operators in the tree, each of which the per-node code gives a new Int
+    private static int arithmetic(Node node) {
+        int count = isArithmetic(node.op) ? 1 : 0;
+        for (Node kid : node.kids) {
+            count += arithmetic(kid);
+        }
+        return count;
+    }
+
+    private static boolean isInt(ASTNode.Expression expr) {
+        return expr.getStaticType() != null && expr.getStaticType().getName().equals("Int");
+    }
+
+    private Node binary(Op op, ASTNode.Expression left, ASTNode.Expression right) {
+        Node l = build(left);
+        Node r = l == null ? null : build(right);
+        return r == null ? null : new Node(op, 0, l, r);
+    }
+
+    private Node variable(ASTNode.IDtype id) {
+        String name = id.getToken().getText();
+        if (name.equals("self") || !isInt(id)) return null;
+        Slot slot = variables.locate(name);
+        if (slot == null) return null;
+
+        Node address = new Node(slot.base == Register.FP ? Op.FRAME : Op.SELF, slot.offset);
+        if (slot.raw) return new Node(Op.LOAD, 0, address);
+        return new Node(Op.LOAD, 0, new Node(Op.FIELD, 12, new Node(Op.LOAD, 0, address)));
+    }
+
+    private static boolean fitsImmediate(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    // Conditions a pattern puts on its constants beyond their being immediates
+    private static boolean applies(Rule rule, Node node) {
+        return switch (rule) {
+            case IMM -> fitsImmediate(node.value);
+            case ZERO -> node.value == 0;
+            case SUBI -> node.kids[1].value != Short.MIN_VALUE;
+            case SLL -> isPowerOfTwo(node.kids[1].value);
+            case SLL_LEFT -> isPowerOfTwo(node.kids[0].value);
+            case SLTI_LE -> node.kids[1].value != Short.MAX_VALUE;
+            default -> true;
+        };
+    }
+
+    private static boolean isPowerOfTwo(int value) {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+
+    // Cheapest derivation of each nonterminal at every node, from the leaves up
+    private static void label(Node node, boolean basic) {
+        for (Node kid : node.kids) {
+            label(kid, basic);
+        }
+        Arrays.fill(node.cost, INFINITE);
+        Arrays.fill(node.rule, null);
+        for (Rule rule : Rule.values()) {
+            if (rule.op != node.op || (basic && !rule.basic) || !applies(rule, node)) continue;
+            int cost = rule.cost;
+            for (int i = 0; i < rule.kids.length; i++) {
+                cost += node.kids[i].cost[rule.kids[i].ordinal()];
+            }
+            if (cost < node.cost[rule.nt.ordinal()]) {
+                node.cost[rule.nt.ordinal()] = cost;
+                node.rule[rule.nt.ordinal()] = rule;
+            }
+        }
+    }
+
+    // Temporaries the derivation of nt at node holds at once
+    private static int need(Node node, Nt nt) {
+        Rule rule = node.rule[nt.ordinal()];
+        List<Integer> kids = new ArrayList<>();
+        for (int i = 0; i < rule.kids.length; i++) {
+            if (rule.kids[i] != Nt.IMM) {
+                kids.add(need(node.kids[i], rule.kids[i]));
+            }
+        }
+        int most = 0;
+        if (kids.size() == 1) {
+            most = kids.getFirst();
+        } else if (kids.size() == 2) {
+            // The operand needing more goes first, then one register holds it
+            int first = kids.get(0);
+            int second = kids.get(1);
+            most = first == second ? first + 1 : Math.max(first, second);
+        }
+        return rule.nt == Nt.REG && rule != Rule.ZERO ? Math.max(most, 1) : most;
+    }
+
+    private Register allocate() {
+        return free.pop();
+    }
+
+    private void release(Register reg) {
+        if (reg != Register.ZERO && reg != Register.FP && reg != Register.S0) {
+            free.push(reg);
+        }
+    }
+
+    private void tile(Rule rule) {
+        if (rule.opcode != null) {
+            tiles.merge(rule.opcode.getMnemonic(), 1, Integer::sum);
+        }
+    }
+
+    // Base register of the memory operand at node; the offset is node.value
+    private Register mem(MipsCode code, Node node) {
+        return switch (node.rule[Nt.MEM.ordinal()]) {
+            case FRAME_SLOT -> Register.FP;
+            case SELF_SLOT -> Register.S0;
+            default -> reg(code, node.kids[0]);
+        };
+    }
+
+    private Register reg(MipsCode code, Node node) {
+        Rule rule = node.rule[Nt.REG.ordinal()];
+        if (rule == Rule.ZERO) return Register.ZERO;
+        tile(rule);
+        if (rule == Rule.LI) {
+            Register dest = allocate();
+            code.li(dest, node.value);
+            return dest;
+        }
+        if (rule == Rule.LW) {
+            Register base = mem(code, node.kids[0]);
+            release(base);
+            Register dest = allocate();
+            code.lw(dest, node.kids[0].value, base);
+            return dest;
+        }
+        if (rule == Rule.NEG) {
+            Register operand = reg(code, node.kids[0]);
+            release(operand);
+            Register dest = allocate();
+            code.neg(dest, operand);
+            return dest;
+        }
+
+        // Register and immediate operands
+        if (rule.kids[0] == Nt.IMM || rule.kids[1] == Nt.IMM) {
+            boolean left = rule.kids[0] == Nt.IMM;
+            int imm = node.kids[left ? 0 : 1].value;
+            Register operand = reg(code, node.kids[left ? 1 : 0]);
+            release(operand);
+            Register dest = allocate();
+            switch (rule) {
+                case SUBI -> imm = -imm;
+                case SLL, SLL_LEFT -> imm = Integer.numberOfTrailingZeros(imm);
+                case SLTI_LE -> imm = imm + 1;
+                default -> { }
+            }
+            code.opImm(rule.opcode, dest, operand, imm);
+            return dest;
+        }
+
+        Register first;
+        Register second;
+        if (need(node.kids[1], Nt.REG) > need(node.kids[0], Nt.REG)) {
+            second = reg(code, node.kids[1]);
+            first = reg(code, node.kids[0]);
+        } else {
+            first = reg(code, node.kids[0]);
+            second = reg(code, node.kids[1]);
+        }
+        release(first);
+        release(second);
+        Register dest = allocate();
+        code.op(rule.opcode, dest, first, second);
+        return dest;
+    }
+
+    // $a0 = bool_const0 or bool_const1 for the 0 or 1 in cond; bool_const1 is laid out right after bool_const0
+    private void boxBool(MipsCode code, Register cond) {
+        if (GenGC.header() == 0) {
+            code.opImm(Opcode.SLL, cond, cond, 4);
+        } else {
+            // 20 = 16 + 4
+            Register scaled = cond == Register.T0 ? Register.T1 : Register.T0;
+            code.opImm(Opcode.SLL, scaled, cond, 2);
+            code.opImm(Opcode.SLL, cond, cond, 4);
+            code.op(Opcode.ADDU, cond, cond, scaled);
+        }
+        code.la(Register.A0, "bool_const0");
+        code.op(Opcode.ADDU, Register.A0, Register.A0, cond);
+    }
+
+    public void printReport(PrintStream out) {
+        if (trees + too_large == 0) return;
+        StringJoiner used = new StringJoiner(", ");
+        tiles.forEach((mnemonic, uses) -> used.add(mnemonic + " " + uses));
+        out.println("instruction selection: " + trees + " trees of " + operators + " operators tiled, cost " + cost
+                + " cycles against " + basic_cost + " with one tile per node, " + unboxed
+                + " intermediate Ints not allocated, " + too_large + " trees left to per-node code");
+        out.println("tiles: " + used);
+    }
+}
@@ -0,0 +1,51 @@
+package cool.codegen;
+
+import cool.compiler.Options;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Preallocated Int objects for the values from Options.intCacheLow to
+ * Options.intCacheHigh, laid out back to back from _int_cache like
+ * int_const objects. Optimized code boxes a result in that range by
+ * pointing into the table instead of copying Int_protObj. Ints are
+ * immutable, so sharing one object between all its users is safe.
+ */
+public class IntCache {
+    public static final String LABEL = "_int_cache";
+
+    public static boolean enabled() {
+        return Options.optimizationLevel > 0 && Options.intCacheLow <= Options.intCacheHigh;
+    }
+
+    public static int low() {
+        return Options.intCacheLow;
+    }
+
+    public static int size() {
+        return Options.intCacheHigh - Options.intCacheLow + 1;
+    }
+
+    // Bytes from one cached object to the next, with its eyecatcher in -gc mode
+    public static int stride() {
+        return 16 + GenGC.header();
+    }
+
+    public static List<String> data(int intTag) {
+        List<String> lines = new ArrayList<>();
+        for (int value = Options.intCacheLow; value <= Options.intCacheHigh; value++) {
+            if (GenGC.enabled()) {
+                lines.add(GenGC.EYECATCHER);
+            }
+            if (value == Options.intCacheLow) {
+                lines.add(LABEL + ":");
+            }
+            lines.add("    .word " + intTag);
+            lines.add("    .word 4");
+            lines.add("    .word Int_dispTab");
+            lines.add("    .word " + value);
+        }
+        return lines;
+    }
+}
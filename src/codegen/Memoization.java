@@ -0,0 +1,305 @@
+package cool.codegen;
+
+import cool.AST.ASTNode;
+import cool.AST.ExpressionWalker;
+import cool.compiler.Options;
+import cool.mips.LabelTable;
+import cool.mips.MipsCode;
+import cool.mips.Opcode;
+import cool.mips.Register;
+import cool.structures.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * With -memo, pure recursive methods remember their results.
+ *
+ * A method is pure when its result depends on nothing but its arguments
+ * and computing it changes nothing: it takes one to MAX_FORMALS Ints,
+ * Bools and Strings, returns one of those, and its body only reads its
+ * formals and locals, news nothing but Ints, Bools and Strings, calls
+ * String's length, concat and substr, and calls pure methods on self that
+ * no subclass overrides. Self, attributes and IO are all out of reach.
+ * Purity is found starting from the guess that every such method is pure
+ * and dropping methods until none calls a dropped one. Of the pure
+ * methods, those that can reach themselves are memoized.
+ *
+ * Dispatch tables and direct calls go to a wrapper, _memo_ followed by
+ * the method's label, that looks the arguments up in the method's table
+ * of ENTRIES entries: the result, then the value of each Int and Bool
+ * and the address of each String. Strings never change and never move,
+ * so the same address always holds the same characters. A hit returns the
+ * stored result; a miss calls the method and stores the result over
+ * whatever the entry held, so a table never grows.
+ *
+ * The collector neither sees the tables nor updates them when objects
+ * move, so -gc turns memoization off.
+ */
+public class Memoization {
+    public static final int ENTRIES = 256;
+    private static final int MAX_FORMALS = 3;
+    private static final Set<String> VALUE_TYPES = Set.of("Int", "Bool", "String");
+    private static final Set<String> STRING_METHODS = Set.of("length", "concat", "substr");
+
+    // Formal types of each memoized method, by label
+    private static final Map<String, List<String>> memoized = new LinkedHashMap<>();
+    private static final List<ClassSymbol> classes = new ArrayList<>();
+    private static final Set<FunctionSymbol> pure = new HashSet<>();
+    private static int candidates = 0;
+
+    public static boolean enabled() {
+        return Options.memoize && !GenGC.enabled();
+    }
+
+    public static boolean used() {
+        return !memoized.isEmpty();
+    }
+
+    // Replaces a method label in dispatch tables and calls by its wrapper
+    public static String method(String label) {
+        return memoized.containsKey(label) ? "_memo_" + label : label;
+    }
+
+    private static String table(String label) {
+        return "_memoTab_" + label;
+    }
+
+    public static void analyze(ASTNode.Program program) {
+        Map<FunctionSymbol, ASTNode.FunctionsFeatures> bodies = new LinkedHashMap<>();
+        for (ASTNode.ClassDef classDef : program.classes) {
+            ClassSymbol cls = (ClassSymbol) SymbolTable.globals.lookup(classDef.type.getToken().getText());
+            classes.add(cls);
+            for (ASTNode.Feature feature : classDef.features) {
+                if (feature instanceof ASTNode.FunctionsFeatures method) {
+                    FunctionSymbol function = cls.functions.get(method.id.getToken().getText());
+                    if (function != null && hasValueSignature(function)) {
+                        bodies.put(function, method);
+                    }
+                }
+            }
+        }
+        candidates = bodies.size();
+
+        pure.addAll(bodies.keySet());
+        Map<FunctionSymbol, Set<FunctionSymbol>> callees = new HashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (FunctionSymbol function : new ArrayList<>(pure)) {
+                Set<FunctionSymbol> called = new HashSet<>();
+                Set<String> locals = new HashSet<>(function.getFormals().keySet());
+                if (isPure(bodies.get(function).body, function.getOwnedClass(), locals, called)) {
+                    callees.put(function, called);
+                } else {
+                    pure.remove(function);
+                    changed = true;
+                }
+            }
+        }
+
+        for (FunctionSymbol function : bodies.keySet()) {
+            if (!pure.contains(function) || !reaches(function, function, callees)) continue;
+            function.setMemoized(true);
+            List<String> types = new ArrayList<>();
+            for (Symbol formal : function.getFormals().values()) {
+                types.add(((IdSymbol) formal).getType().getName());
+            }
+            memoized.put(function.getOwnedClass().getName() + "." + function.getName(), types);
+        }
+    }
+
+    private static boolean hasValueSignature(FunctionSymbol function) {
+        TypeSymbol type = function.getType();
+        if (type == null || !VALUE_TYPES.contains(type.getName())) return false;
+
+        Map<String, Symbol> formals = function.getFormals();
+        if (formals.isEmpty() || formals.size() > MAX_FORMALS) return false;
+        for (Symbol formal : formals.values()) {
+            TypeSymbol formal_type = ((IdSymbol) formal).getType();
+            if (formal_type == null || !VALUE_TYPES.contains(formal_type.getName())) return false;
+        }
+        return true;
+    }
+
+    // Whether from can call to through pure methods
+    private static boolean reaches(FunctionSymbol from, FunctionSymbol to, Map<FunctionSymbol, Set<FunctionSymbol>> callees) {
+        Set<FunctionSymbol> visited = new HashSet<>();
+        Deque<FunctionSymbol> work = new ArrayDeque<>(callees.get(from));
+        while (!work.isEmpty()) {
+            FunctionSymbol function = work.poll();
+            if (function == to) return true;
+            if (visited.add(function)) {
+                work.addAll(callees.getOrDefault(function, Set.of()));
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPure(ASTNode.Expression expr, ClassSymbol owner, Set<String> locals, Set<FunctionSymbol> called) {
+        switch (expr) {
+            case ASTNode.IDtype id -> {
+                return locals.contains(id.getToken().getText());
+            }
+            case ASTNode.NewTypeNode newNode -> {
+                return VALUE_TYPES.contains(newNode.type.getToken().getText());
+            }
+            case ASTNode.AssignNode assign -> {
+                if (!locals.contains(assign.id.getToken().getText())) return false;
+            }
+            case ASTNode.FuncCallNode call -> {
+                FunctionSymbol target = target(owner, call.id.getToken().getText());
+                if (target == null || !pure.contains(target)) return false;
+                called.add(target);
+            }
+            case ASTNode.FuncCallClassNode call -> {
+                TypeSymbol type = call.object.getStaticType();
+                if (type == null || !type.getName().equals("String")
+                        || !STRING_METHODS.contains(call.id.getToken().getText())) return false;
+            }
+            case ASTNode.LetNode let -> {
+                Set<String> scope = new HashSet<>(locals);
+                for (ASTNode.LocalVarNode var : let.localVars) {
+                    if (var.initExpr != null && !isPure(var.initExpr, owner, scope, called)) return false;
+                    scope.add(var.id.getToken().getText());
+                }
+                return isPure(let.body, owner, scope, called);
+            }
+            case ASTNode.CaseNode caseNode -> {
+                if (!isPure(caseNode.condition, owner, locals, called)) return false;
+                for (ASTNode.CaseMethodNode branch : caseNode.cases) {
+                    Set<String> scope = new HashSet<>(locals);
+                    scope.add(branch.id.getToken().getText());
+                    if (!isPure(branch.cases, owner, scope, called)) return false;
+                }
+                return true;
+            }
+            default -> {
+            }
+        }
+        for (ASTNode.Expression child : ExpressionWalker.children(expr)) {
+            if (!isPure(child, owner, locals, called)) return false;
+        }
+        return true;
+    }
+
+    private static FunctionSymbol lookupFunction(ClassSymbol cls, String name) {
+        for (ClassSymbol c = cls; c != null; c = c.getInherited_class()) {
+            FunctionSymbol function = c.functions.get(name);
+            if (function != null) return function;
+        }
+        return null;
+    }
+
+    // Method a call on self in owner reaches, or null when a subclass may override it
+    private static FunctionSymbol target(ClassSymbol owner, String name) {
+        FunctionSymbol target = lookupFunction(owner, name);
+        for (ClassSymbol cls : classes) {
+            if (isSubclass(cls, owner) && lookupFunction(cls, name) != target) return null;
+        }
+        return target;
+    }
+
+    private static boolean isSubclass(ClassSymbol cls, ClassSymbol ancestor) {
+        for (ClassSymbol c = cls; c != null; c = c.getInherited_class()) {
+            if (c == ancestor) return true;
+        }
+        return false;
+    }
+
+    // Words of a table entry: the result and one key per formal, rounded up to a power of two
+    private static int entryWords(List<String> types) {
+        return Integer.highestOneBit(types.size()) * 2;
+    }
+
+    public static List<String> data() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : memoized.entrySet()) {
+            lines.add("    .align  2");
+            lines.add(table(entry.getKey()) + ":");
+            lines.add("    .space  " + ENTRIES * entryWords(entry.getValue()) * 4);
+        }
+        return lines;
+    }
+
+    public static MipsCode generate(LabelTable labels) {
+        MipsCode code = new MipsCode(labels);
+        for (Map.Entry<String, List<String>> entry : memoized.entrySet()) {
+            wrapper(code, entry.getKey(), entry.getValue());
+        }
+        return code;
+    }
+
+    // Loads the key of the formal at offset from base into $t1
+    private static void key(MipsCode code, String type, int offset, Register base) {
+        code.lw(Register.T1, offset, base);
+        if (!type.equals("String")) {
+            code.lw(Register.T1, 12, Register.T1);
+        }
+    }
+
+    private static void wrapper(MipsCode code, String label, List<String> types) {
+        String wrapper = method(label);
+        String miss = wrapper + "_miss";
+        int formals = types.size();
+
+        // The arguments are still pushed, formal i at 4 + 4 * i($sp); $a0 holds self
+        code.label(wrapper);
+        for (int i = 0; i < formals; i++) {
+            key(code, types.get(i), 4 + 4 * i, Register.SP);
+            if (i == 0) {
+                code.move(Register.T2, Register.T1);
+            } else {
+                code.opImm(Opcode.SLL, Register.T3, Register.T2, 5);
+                code.op(Opcode.SUBU, Register.T2, Register.T3, Register.T2);
+                code.op(Opcode.ADDU, Register.T2, Register.T2, Register.T1);
+            }
+        }
+        // Strings are word aligned, so the low bits alone would crowd a few entries
+        code.opImm(Opcode.SRL, Register.T3, Register.T2, 8);
+        code.op(Opcode.XOR, Register.T2, Register.T2, Register.T3);
+        code.opImm(Opcode.ANDI, Register.T2, Register.T2, ENTRIES - 1);
+        code.opImm(Opcode.SLL, Register.T2, Register.T2, Integer.numberOfTrailingZeros(entryWords(types) * 4));
+        code.la(Register.T3, table(label));
+        code.op(Opcode.ADDU, Register.T3, Register.T3, Register.T2);
+
+        // An empty entry has no result, and no result of these types is void
+        code.lw(Register.T0, 0, Register.T3);
+        code.branchZero(Opcode.BEQZ, Register.T0, miss);
+        for (int i = 0; i < formals; i++) {
+            key(code, types.get(i), 4 + 4 * i, Register.SP);
+            code.lw(Register.T2, 4 + 4 * i, Register.T3);
+            code.branch(Opcode.BNE, Register.T1, Register.T2, miss);
+        }
+        code.move(Register.A0, Register.T0);
+        code.addiu(Register.SP, Register.SP, 4 * formals);
+        code.jr(Register.RA);
+
+        // Frame: 4 = entry, 8 = $ra; the arguments are pushed again for the method to pop
+        code.label(miss);
+        code.addiu(Register.SP, Register.SP, -8 - 4 * formals);
+        code.sw(Register.RA, 8 + 4 * formals, Register.SP);
+        code.sw(Register.T3, 4 + 4 * formals, Register.SP);
+        for (int i = 0; i < formals; i++) {
+            code.lw(Register.T1, 12 + 4 * formals + 4 * i, Register.SP);
+            code.sw(Register.T1, 4 + 4 * i, Register.SP);
+        }
+        code.jal(label);
+
+        code.lw(Register.T3, 4, Register.SP);
+        code.sw(Register.A0, 0, Register.T3);
+        for (int i = 0; i < formals; i++) {
+            key(code, types.get(i), 12 + 4 * i, Register.SP);
+            code.sw(Register.T1, 4 + 4 * i, Register.T3);
+        }
+        code.lw(Register.RA, 8, Register.SP);
+        code.addiu(Register.SP, Register.SP, 8 + 4 * formals);
+        code.jr(Register.RA);
+    }
+
+    public static void printReport(PrintStream out) {
+        if (candidates == 0) return;
+        out.println("memoization: " + pure.size() + " of " + candidates + " methods over Ints, Bools and Strings pure, "
+                + memoized.size() + " memoized with " + ENTRIES + "-entry tables");
+    }
+}
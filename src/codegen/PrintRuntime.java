@@ -0,0 +1,150 @@
+package cool.codegen;
+
+import cool.mips.LabelTable;
+import cool.mips.MipsCode;
+import cool.mips.Opcode;
+import cool.mips.Register;
+
+import java.util.List;
+
+/*
+ * Buffered output routines used by coalesced out_string/out_int chains.
+ * _print_string and _print_int append the String or Int object in $a0 to
+ * a buffer in the data section, and _print_flush writes the buffer with a
+ * single print_string syscall. Every chain ends with a flush, so nothing
+ * is left in the buffer when other code prints or the program exits.
+ *
+ * The routines are leaves: they only touch $a0, $v0 and $t0-$t7.
+ */
+public class PrintRuntime {
+    public static final String PRINT_STRING = "_print_string";
+    public static final String PRINT_INT = "_print_int";
+    public static final String FLUSH = "_print_flush";
+
+    private static final int BUFFER_SIZE = 256;
+    // "-2147483648"
+    private static final int MAX_INT_LENGTH = 11;
+
+    public static List<String> data() {
+        return List.of(
+                "_print_pointer:",
+                "    .word   _print_buffer",
+                "_print_buffer:",
+                "    .space  " + BUFFER_SIZE,
+                // Room for the terminating zero when the buffer is full
+                "_print_buffer_end:",
+                "    .space  4",
+                "_print_digits:",
+                "    .space  " + (MAX_INT_LENGTH + 1),
+                "_print_digits_end:",
+                "    .space  4");
+    }
+
+    public static MipsCode generate(LabelTable labels) {
+        MipsCode code = new MipsCode(labels);
+        printString(code);
+        printInt(code);
+        flush(code);
+        return code;
+    }
+
+    // Writes the buffer up to the pointer in $t2 and resets $t2 to its start
+    private static void writeBuffer(MipsCode code) {
+        code.sb(Register.ZERO, 0, Register.T2);
+        code.la(Register.A0, "_print_buffer");
+        code.li(Register.V0, 4);
+        code.syscall();
+        code.la(Register.T2, "_print_buffer");
+    }
+
+    // $t1 = address of the pointer, $t2 = pointer, $t3 = free bytes
+    private static void loadPointer(MipsCode code) {
+        code.la(Register.T1, "_print_pointer");
+        code.lw(Register.T2, 0, Register.T1);
+        code.la(Register.T3, "_print_buffer_end");
+        code.op(Opcode.SUBU, Register.T3, Register.T3, Register.T2);
+    }
+
+    // Copies the bytes from $t3 up to $t4 to the pointer in $t2
+    private static void copyBytes(MipsCode code, String loop, String done) {
+        code.label(loop);
+        code.branch(Opcode.BEQ, Register.T3, Register.T4, done);
+        code.lbu(Register.T5, 0, Register.T3);
+        code.sb(Register.T5, 0, Register.T2);
+        code.addiu(Register.T3, Register.T3, 1);
+        code.addiu(Register.T2, Register.T2, 1);
+        code.b(loop);
+        code.label(done);
+        code.sw(Register.T2, 0, Register.T1);
+        code.jr(Register.RA);
+    }
+
+    private static void printString(MipsCode code) {
+        code.label(PRINT_STRING);
+        code.lw(Register.T0, 12, Register.A0);
+        code.lw(Register.T0, 12, Register.T0);
+        loadPointer(code);
+        code.branch(Opcode.BLE, Register.T0, Register.T3, "_print_string_fits");
+
+        // Too long for what is left: flush, then print the string on its own
+        code.move(Register.T6, Register.A0);
+        writeBuffer(code);
+        code.sw(Register.T2, 0, Register.T1);
+        code.addiu(Register.A0, Register.T6, 16);
+        code.li(Register.V0, 4);
+        code.syscall();
+        code.jr(Register.RA);
+
+        code.label("_print_string_fits");
+        code.addiu(Register.T3, Register.A0, 16);
+        code.op(Opcode.ADDU, Register.T4, Register.T3, Register.T0);
+        copyBytes(code, "_print_string_copy", "_print_string_done");
+    }
+
+    private static void printInt(MipsCode code) {
+        code.label(PRINT_INT);
+        code.lw(Register.T0, 12, Register.A0);
+        loadPointer(code);
+        code.li(Register.T4, MAX_INT_LENGTH);
+        code.branch(Opcode.BGE, Register.T3, Register.T4, "_print_int_digits");
+        writeBuffer(code);
+
+        // Digits are produced last to first; remainders of negative values are negative
+        code.label("_print_int_digits");
+        code.la(Register.T3, "_print_digits_end");
+        code.move(Register.T4, Register.T0);
+        code.li(Register.T6, 10);
+        code.label("_print_int_next");
+        // One division per digit, the remainder is n - 10 * (n / 10)
+        code.op(Opcode.DIV, Register.T7, Register.T4, Register.T6);
+        code.opImm(Opcode.SLL, Register.T5, Register.T7, 3);
+        code.op(Opcode.SUBU, Register.T4, Register.T4, Register.T5);
+        code.opImm(Opcode.SLL, Register.T5, Register.T7, 1);
+        code.op(Opcode.SUBU, Register.T5, Register.T4, Register.T5);
+        code.branch(Opcode.BGE, Register.T5, Register.ZERO, "_print_int_positive");
+        code.neg(Register.T5, Register.T5);
+        code.label("_print_int_positive");
+        code.addiu(Register.T5, Register.T5, '0');
+        code.addiu(Register.T3, Register.T3, -1);
+        code.sb(Register.T5, 0, Register.T3);
+        code.move(Register.T4, Register.T7);
+        code.branchZero(Opcode.BNEZ, Register.T4, "_print_int_next");
+        code.branch(Opcode.BGE, Register.T0, Register.ZERO, "_print_int_copy_start");
+        code.li(Register.T5, '-');
+        code.addiu(Register.T3, Register.T3, -1);
+        code.sb(Register.T5, 0, Register.T3);
+        code.label("_print_int_copy_start");
+        code.la(Register.T4, "_print_digits_end");
+
+        copyBytes(code, "_print_int_copy", "_print_int_done");
+    }
+
+    private static void flush(MipsCode code) {
+        code.label(FLUSH);
+        code.la(Register.T1, "_print_pointer");
+        code.lw(Register.T2, 0, Register.T1);
+        writeBuffer(code);
+        code.sw(Register.T2, 0, Register.T1);
+        code.jr(Register.RA);
+    }
+}
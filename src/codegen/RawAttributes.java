@@ -0,0 +1,53 @@
+package cool.codegen;
+
+import cool.compiler.Options;
+import cool.mips.MipsCode;
+import cool.mips.Opcode;
+import cool.mips.Register;
+
+/*
+ * With -raw-attrs, Int and Bool attributes hold their value as a plain
+ * word instead of a pointer to an Int or Bool object, and prototypes
+ * start them at 0 and false. Object.copy copies those words like any
+ * other, and = compares objects of other classes by address, so neither
+ * has to change.
+ *
+ * Unoptimized code keeps every value in $a0 boxed: it boxes an attribute
+ * when reading it and unboxes the value it stores. The optimizer reads
+ * and writes the words directly and boxes only what reaches an Object,
+ * since an unbox of a box cancels out.
+ *
+ * The collector would take the words for pointers, so -gc turns the
+ * layout off.
+ */
+public class RawAttributes {
+    public static boolean enabled() {
+        return Options.rawAttributes && !GenGC.enabled();
+    }
+
+    public static boolean isRaw(String type) {
+        return enabled() && (type.equals("Int") || type.equals("Bool"));
+    }
+
+    // Reads the attribute of self at offset into $a0 as an object of type
+    public static void load(MipsCode code, String type, int offset) {
+        if (type.equals("Int")) {
+            code.la(Register.A0, "Int_protObj");
+            code.jal("Object.copy");
+            code.lw(Register.T1, offset, Register.S0);
+            code.sw(Register.T1, 12, Register.A0);
+            return;
+        }
+        // bool_const1 is laid out right after bool_const0
+        code.lw(Register.T1, offset, Register.S0);
+        code.opImm(Opcode.SLL, Register.T1, Register.T1, 4);
+        code.la(Register.A0, "bool_const0");
+        code.op(Opcode.ADDU, Register.A0, Register.A0, Register.T1);
+    }
+
+    // Stores the value of the Int or Bool in $a0 into the attribute of self at offset
+    public static void store(MipsCode code, int offset) {
+        code.lw(Register.T1, 12, Register.A0);
+        code.sw(Register.T1, offset, Register.S0);
+    }
+}
@@ -0,0 +1,483 @@
+package cool.codegen;
+
+import cool.compiler.Options;
+import cool.mips.LabelTable;
+import cool.mips.MipsCode;
+import cool.mips.Opcode;
+import cool.mips.Register;
+
+/*
+ * String helpers emitted next to the generated code.
+ *
+ * _concat_n joins the String in $a0 with the $a1 Strings pushed on the
+ * stack, first one on top, the way a method pops its arguments. It adds up
+ * the lengths first and makes a single _MemMgr_Alloc call for the result
+ * and its length Int, laid out as in String.concat.
+ *
+ * _substr copies a substring like String.substr, taking the same
+ * arguments, but leaves the bounds check to its callers: substr emits it
+ * inline and only calls String.substr, which aborts, when it fails.
+ *
+ * compareLengths is emitted inline by = on Strings, so equality_test only
+ * runs for Strings of the same length.
+ *
+ * With -ropes, concat makes a rope node instead of copying its operands
+ * once the result is ROPE_MIN characters or longer. A node is a String
+ * of 7 words: the usual tag, size, dispatch table and length Int, then
+ * its left and right Strings and the flat copy, made when first needed.
+ * Only its dispatch table, _rope_dispTab, tells it apart from a literal,
+ * so type_name, case, length and copy treat it as any other String.
+ *
+ * Everything that reads characters flattens its Strings first through
+ * _rope_flatten: the String dispatch tables send concat and substr to
+ * wrappers, IO's sends out_string to one, = calls _rope_equal instead
+ * of equality_test, and the inline substr and buffered prints flatten
+ * their operand. Flattening walks down the left spine of a node in a
+ * loop and recurses only into right children, so Strings built by
+ * appending in a loop flatten without deep recursion.
+ *
+ * The collector takes everything after a String's length for characters,
+ * so it would neither trace nor move the pointers in a node, and -gc
+ * turns ropes off.
+ */
+public class StringRuntime {
+    public static final String CONCAT_N = "_concat_n";
+    public static final String SUBSTR = "_substr";
+
+    public static final String ROPE_DISPATCH_TABLE = "_rope_dispTab";
+    public static final String ROPE_CONCAT = "_rope_concat";
+    public static final String ROPE_SUBSTR = "_rope_substr";
+    public static final String ROPE_OUT_STRING = "_rope_out_string";
+    public static final String ROPE_FLATTEN = "_rope_flatten";
+    private static final String ROPE_EQUAL = "_rope_equal";
+    // Shorter results are copied as usual
+    private static final int ROPE_MIN = 32;
+
+    public static boolean ropes() {
+        return Options.ropeStrings && !GenGC.enabled();
+    }
+
+    // Routine = calls when the addresses differ
+    public static String equalityTest() {
+        return ropes() ? ROPE_EQUAL : "equality_test";
+    }
+
+    // Replaces the String or IO method label in a dispatch table when ropes need a wrapper
+    public static String method(String label) {
+        if (!ropes()) return label;
+        return switch (label) {
+            case "String.concat" -> ROPE_CONCAT;
+            case "String.substr" -> ROPE_SUBSTR;
+            case "IO.out_string" -> ROPE_OUT_STRING;
+            default -> label;
+        };
+    }
+
+    public static MipsCode generate(LabelTable labels) {
+        MipsCode code = new MipsCode(labels);
+        concatN(code);
+        substrCopy(code);
+        if (ropes()) {
+            ropeConcat(code);
+            ropeSubstr(code);
+            ropeOutString(code);
+            ropeEqual(code);
+            ropeFlatten(code);
+            ropeCopy(code);
+        }
+        return code;
+    }
+
+    // Replaces a rope in $a0 by its flat copy
+    public static void flatten(MipsCode code) {
+        if (ropes()) {
+            code.jal(ROPE_FLATTEN);
+        }
+    }
+
+    // String.length of the non-void String in $a0, which already holds it as an Int
+    public static void length(MipsCode code) {
+        code.lw(Register.A0, 12, Register.A0);
+    }
+
+    // String.substr of the non-void String in $a0, with its arguments pushed
+    public static void substr(MipsCode code, String outOfRange, String done) {
+        flatten(code);
+        code.lw(Register.T1, 4, Register.SP);
+        code.lw(Register.T1, 12, Register.T1);
+        code.lw(Register.T2, 8, Register.SP);
+        code.lw(Register.T2, 12, Register.T2);
+        code.lw(Register.T3, 12, Register.A0);
+        code.lw(Register.T3, 12, Register.T3);
+        code.branchZero(Opcode.BLTZ, Register.T1, outOfRange);
+        code.branchZero(Opcode.BLTZ, Register.T2, outOfRange);
+        // start + length may overflow, length - start cannot
+        code.op(Opcode.SUBU, Register.T3, Register.T3, Register.T1);
+        code.branch(Opcode.BGT, Register.T2, Register.T3, outOfRange);
+        code.jal(SUBSTR);
+        code.b(done);
+        code.label(outOfRange);
+        code.jal("String.substr");
+        code.label(done);
+        GenGC.checkAllocation(code);
+    }
+
+    // Branches to differ with bool_const0 in $a0 when the Strings in $t1 and $t2 differ in length
+    public static void compareLengths(MipsCode code, String differ) {
+        code.lw(Register.T3, 12, Register.T1);
+        code.lw(Register.T3, 12, Register.T3);
+        code.lw(Register.T4, 12, Register.T2);
+        code.lw(Register.T4, 12, Register.T4);
+        code.move(Register.A0, Register.A1);
+        code.branch(Opcode.BNE, Register.T3, Register.T4, differ);
+        code.la(Register.A0, "bool_const1");
+    }
+
+    // Copies the characters of the String in $t4 to $t3, advancing $t3
+    private static void copyChars(MipsCode code) {
+        code.lw(Register.T5, 12, Register.T4);
+        code.lw(Register.T5, 12, Register.T5);
+        code.addiu(Register.T6, Register.T4, 16);
+        code.op(Opcode.ADDU, Register.T5, Register.T6, Register.T5);
+        code.label("_concat_n_copy");
+        code.branch(Opcode.BEQ, Register.T6, Register.T5, "_concat_n_copied");
+        code.lbu(Register.T7, 0, Register.T6);
+        code.sb(Register.T7, 0, Register.T3);
+        code.addiu(Register.T6, Register.T6, 1);
+        code.addiu(Register.T3, Register.T3, 1);
+        code.b("_concat_n_copy");
+        code.label("_concat_n_copied");
+    }
+
+    // Copies the tag, size and dispatch table words of prototype into the object at reg
+    private static void copyHeader(MipsCode code, String prototype, Register reg) {
+        code.la(Register.T0, prototype);
+        for (int offset = 0; offset < 12; offset += 4) {
+            code.lw(Register.T1, offset, Register.T0);
+            code.sw(Register.T1, offset, reg);
+        }
+    }
+
+    // Allocates a String of the length in $t2 with its length Int, leaving it in $v0
+    private static void allocString(MipsCode code) {
+        int header = GenGC.header();
+        code.addiu(Register.A0, Register.T2, 36 + 2 * header);
+        code.opImm(Opcode.SRL, Register.A0, Register.A0, 2);
+        code.opImm(Opcode.SLL, Register.A0, Register.A0, 2);
+        code.jal("_MemMgr_Alloc");
+
+        if (header > 0) {
+            code.li(Register.T1, -1);
+            code.sw(Register.T1, 0, Register.A0);
+            code.sw(Register.T1, 16 + header, Register.A0);
+            code.addiu(Register.A0, Register.A0, header);
+        }
+        copyHeader(code, "Int_protObj", Register.A0);
+        code.lw(Register.T2, 16, Register.SP);
+        code.sw(Register.T2, 12, Register.A0);
+
+        code.addiu(Register.V0, Register.A0, 16 + header);
+        copyHeader(code, "String_protObj", Register.V0);
+        code.addiu(Register.T1, Register.T2, 4);
+        code.opImm(Opcode.SRL, Register.T1, Register.T1, 2);
+        code.addiu(Register.T1, Register.T1, 4);
+        code.sw(Register.T1, 4, Register.V0);
+        code.sw(Register.A0, 12, Register.V0);
+    }
+
+    private static void concatN(MipsCode code) {
+        // Frame: 4 = $ra, 8 = first String, 12 = count, 16 = total length; pushed Strings from 20
+        code.label(CONCAT_N);
+        code.addiu(Register.SP, Register.SP, -16);
+        code.sw(Register.RA, 4, Register.SP);
+        code.sw(Register.A0, 8, Register.SP);
+        code.sw(Register.A1, 12, Register.SP);
+
+        code.lw(Register.T0, 12, Register.A0);
+        code.lw(Register.T0, 12, Register.T0);
+        code.addiu(Register.T1, Register.SP, 20);
+        code.opImm(Opcode.SLL, Register.T2, Register.A1, 2);
+        code.op(Opcode.ADDU, Register.T2, Register.T1, Register.T2);
+        code.label("_concat_n_sum");
+        code.branch(Opcode.BEQ, Register.T1, Register.T2, "_concat_n_alloc");
+        code.lw(Register.T3, 0, Register.T1);
+        code.lw(Register.T3, 12, Register.T3);
+        code.lw(Register.T3, 12, Register.T3);
+        code.op(Opcode.ADDU, Register.T0, Register.T0, Register.T3);
+        code.addiu(Register.T1, Register.T1, 4);
+        code.b("_concat_n_sum");
+
+        // 16 bytes of Int, 16 of String header, then the characters and their terminator,
+        // each object after an eyecatcher in -gc mode
+        code.label("_concat_n_alloc");
+        code.sw(Register.T0, 16, Register.SP);
+        code.move(Register.T2, Register.T0);
+        allocString(code);
+
+        code.addiu(Register.T3, Register.V0, 16);
+        code.lw(Register.T4, 8, Register.SP);
+        code.addiu(Register.T8, Register.SP, 20);
+        code.lw(Register.T9, 12, Register.SP);
+        code.opImm(Opcode.SLL, Register.T9, Register.T9, 2);
+        code.op(Opcode.ADDU, Register.T9, Register.T8, Register.T9);
+        code.label("_concat_n_next");
+        copyChars(code);
+        code.branch(Opcode.BEQ, Register.T8, Register.T9, "_concat_n_done");
+        code.lw(Register.T4, 0, Register.T8);
+        code.addiu(Register.T8, Register.T8, 4);
+        code.b("_concat_n_next");
+
+        code.label("_concat_n_done");
+        code.sb(Register.ZERO, 0, Register.T3);
+        code.move(Register.A0, Register.V0);
+        code.lw(Register.RA, 4, Register.SP);
+        code.lw(Register.T0, 12, Register.SP);
+        code.opImm(Opcode.SLL, Register.T0, Register.T0, 2);
+        code.addiu(Register.SP, Register.SP, 16);
+        code.op(Opcode.ADDU, Register.SP, Register.SP, Register.T0);
+        code.jr(Register.RA);
+    }
+
+    private static void substrCopy(MipsCode code) {
+        // Frame: 4 = $ra, 8 = String, 12 = unused, 16 = length; start at 20 and length at 24, as pushed
+        code.label(SUBSTR);
+        code.addiu(Register.SP, Register.SP, -16);
+        code.sw(Register.RA, 4, Register.SP);
+        code.sw(Register.A0, 8, Register.SP);
+        // The collector scans the frame while allocString allocates
+        code.sw(Register.ZERO, 12, Register.SP);
+        code.lw(Register.T2, 24, Register.SP);
+        code.lw(Register.T2, 12, Register.T2);
+        code.sw(Register.T2, 16, Register.SP);
+        allocString(code);
+
+        code.addiu(Register.T3, Register.V0, 16);
+        code.lw(Register.T4, 8, Register.SP);
+        code.lw(Register.T5, 20, Register.SP);
+        code.lw(Register.T5, 12, Register.T5);
+        code.addiu(Register.T6, Register.T4, 16);
+        code.op(Opcode.ADDU, Register.T6, Register.T6, Register.T5);
+        code.op(Opcode.ADDU, Register.T5, Register.T6, Register.T2);
+        code.label("_substr_copy");
+        code.branch(Opcode.BEQ, Register.T6, Register.T5, "_substr_copied");
+        code.lbu(Register.T7, 0, Register.T6);
+        code.sb(Register.T7, 0, Register.T3);
+        code.addiu(Register.T6, Register.T6, 1);
+        code.addiu(Register.T3, Register.T3, 1);
+        code.b("_substr_copy");
+        code.label("_substr_copied");
+        code.sb(Register.ZERO, 0, Register.T3);
+
+        code.move(Register.A0, Register.V0);
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 24);
+        code.jr(Register.RA);
+    }
+
+    // Pushes the word at offset from $sp, as an argument of the next call
+    private static void push(MipsCode code, int offset) {
+        code.lw(Register.T0, offset, Register.SP);
+        code.sw(Register.T0, 0, Register.SP);
+        code.addiu(Register.SP, Register.SP, -4);
+    }
+
+    private static void ropeConcat(MipsCode code) {
+        // Frame: 4 = $ra, 8 = self, 12 = total length; the argument at 16
+        int header = GenGC.header();
+        code.label(ROPE_CONCAT);
+        code.addiu(Register.SP, Register.SP, -12);
+        code.sw(Register.RA, 4, Register.SP);
+        code.sw(Register.A0, 8, Register.SP);
+        code.lw(Register.T0, 16, Register.SP);
+        code.lw(Register.T1, 12, Register.T0);
+        code.lw(Register.T1, 12, Register.T1);
+        code.lw(Register.T2, 12, Register.A0);
+        code.lw(Register.T2, 12, Register.T2);
+        code.branchZero(Opcode.BEQZ, Register.T1, "_rope_concat_done");
+        code.move(Register.A0, Register.T0);
+        code.branchZero(Opcode.BEQZ, Register.T2, "_rope_concat_done");
+        code.op(Opcode.ADDU, Register.T0, Register.T1, Register.T2);
+        code.sw(Register.T0, 12, Register.SP);
+        code.li(Register.T1, ROPE_MIN);
+        code.branch(Opcode.BLT, Register.T0, Register.T1, "_rope_concat_flat");
+
+        // The length Int and the node, each after an eyecatcher in -gc mode
+        code.li(Register.A0, 16 + 28 + 2 * header);
+        code.jal("_MemMgr_Alloc");
+        if (header > 0) {
+            code.li(Register.T1, -1);
+            code.sw(Register.T1, 0, Register.A0);
+            code.sw(Register.T1, 16 + header, Register.A0);
+            code.addiu(Register.A0, Register.A0, header);
+        }
+        copyHeader(code, "Int_protObj", Register.A0);
+        code.lw(Register.T1, 12, Register.SP);
+        code.sw(Register.T1, 12, Register.A0);
+
+        code.addiu(Register.V0, Register.A0, 16 + header);
+        code.la(Register.T0, "String_protObj");
+        code.lw(Register.T1, 0, Register.T0);
+        code.sw(Register.T1, 0, Register.V0);
+        code.li(Register.T1, 7);
+        code.sw(Register.T1, 4, Register.V0);
+        code.la(Register.T1, ROPE_DISPATCH_TABLE);
+        code.sw(Register.T1, 8, Register.V0);
+        code.sw(Register.A0, 12, Register.V0);
+        code.lw(Register.T1, 8, Register.SP);
+        code.sw(Register.T1, 16, Register.V0);
+        code.lw(Register.T1, 16, Register.SP);
+        code.sw(Register.T1, 20, Register.V0);
+        code.sw(Register.ZERO, 24, Register.V0);
+        code.move(Register.A0, Register.V0);
+        code.b("_rope_concat_done");
+
+        // Both operands are flat when the result is short
+        code.label("_rope_concat_flat");
+        push(code, 16);
+        code.lw(Register.A0, 12, Register.SP);
+        code.jal("String.concat");
+
+        code.label("_rope_concat_done");
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 16);
+        code.jr(Register.RA);
+    }
+
+    private static void ropeSubstr(MipsCode code) {
+        // Frame: 4 = $ra; start at 8 and length at 12, as pushed
+        code.label(ROPE_SUBSTR);
+        code.addiu(Register.SP, Register.SP, -4);
+        code.sw(Register.RA, 4, Register.SP);
+        code.jal(ROPE_FLATTEN);
+        push(code, 12);
+        push(code, 12);
+        code.jal("String.substr");
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 12);
+        code.jr(Register.RA);
+    }
+
+    private static void ropeOutString(MipsCode code) {
+        // Frame: 4 = $ra, 8 = self; the String at 12
+        code.label(ROPE_OUT_STRING);
+        code.addiu(Register.SP, Register.SP, -8);
+        code.sw(Register.RA, 4, Register.SP);
+        code.sw(Register.A0, 8, Register.SP);
+        code.lw(Register.A0, 12, Register.SP);
+        code.jal(ROPE_FLATTEN);
+        code.sw(Register.A0, 0, Register.SP);
+        code.addiu(Register.SP, Register.SP, -4);
+        code.lw(Register.A0, 12, Register.SP);
+        code.jal("IO.out_string");
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 12);
+        code.jr(Register.RA);
+    }
+
+    // equality_test on the flat copies of $t1 and $t2
+    private static void ropeEqual(MipsCode code) {
+        // Frame: 4 = $ra, 8 = $a0, 12 = $a1, 16 = $t2, 20 = flat $t1
+        code.label(ROPE_EQUAL);
+        code.addiu(Register.SP, Register.SP, -20);
+        code.sw(Register.RA, 4, Register.SP);
+        code.sw(Register.A0, 8, Register.SP);
+        code.sw(Register.A1, 12, Register.SP);
+        code.sw(Register.T2, 16, Register.SP);
+        code.move(Register.A0, Register.T1);
+        code.jal(ROPE_FLATTEN);
+        code.sw(Register.A0, 20, Register.SP);
+        code.lw(Register.A0, 16, Register.SP);
+        code.jal(ROPE_FLATTEN);
+        code.move(Register.T2, Register.A0);
+        code.lw(Register.T1, 20, Register.SP);
+        code.lw(Register.A0, 8, Register.SP);
+        code.lw(Register.A1, 12, Register.SP);
+        code.jal("equality_test");
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 20);
+        code.jr(Register.RA);
+    }
+
+    private static void ropeFlatten(MipsCode code) {
+        code.label(ROPE_FLATTEN);
+        code.branchZero(Opcode.BEQZ, Register.A0, "_rope_flatten_flat");
+        code.lw(Register.T0, 8, Register.A0);
+        code.la(Register.T1, ROPE_DISPATCH_TABLE);
+        code.branch(Opcode.BNE, Register.T0, Register.T1, "_rope_flatten_flat");
+        code.lw(Register.T0, 24, Register.A0);
+        code.branchZero(Opcode.BEQZ, Register.T0, "_rope_flatten_build");
+        code.move(Register.A0, Register.T0);
+        code.label("_rope_flatten_flat");
+        code.jr(Register.RA);
+
+        // Frame: 4 = $ra, 8 = node, 12 = flat copy, 16 = length
+        code.label("_rope_flatten_build");
+        code.addiu(Register.SP, Register.SP, -16);
+        code.sw(Register.RA, 4, Register.SP);
+        code.sw(Register.A0, 8, Register.SP);
+        code.lw(Register.T2, 12, Register.A0);
+        code.lw(Register.T2, 12, Register.T2);
+        code.sw(Register.T2, 16, Register.SP);
+        allocString(code);
+        code.sw(Register.V0, 12, Register.SP);
+
+        // Characters are copied from the last one back
+        code.addiu(Register.T3, Register.V0, 16);
+        code.lw(Register.T2, 16, Register.SP);
+        code.op(Opcode.ADDU, Register.T3, Register.T3, Register.T2);
+        code.sb(Register.ZERO, 0, Register.T3);
+        code.lw(Register.A0, 8, Register.SP);
+        code.jal("_rope_copy");
+
+        code.lw(Register.T0, 8, Register.SP);
+        code.lw(Register.A0, 12, Register.SP);
+        code.sw(Register.A0, 24, Register.T0);
+        GenGC.assigned(code, Register.T0, 24);
+        code.lw(Register.A0, 12, Register.SP);
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 16);
+        code.jr(Register.RA);
+    }
+
+    // Copies the characters of the String in $a0 to the bytes before $t3, moving $t3 back
+    private static void ropeCopy(MipsCode code) {
+        // Frame: 4 = $ra, 8 = node
+        code.label("_rope_copy");
+        code.addiu(Register.SP, Register.SP, -8);
+        code.sw(Register.RA, 4, Register.SP);
+        code.label("_rope_copy_node");
+        code.lw(Register.T0, 8, Register.A0);
+        code.la(Register.T1, ROPE_DISPATCH_TABLE);
+        code.branch(Opcode.BNE, Register.T0, Register.T1, "_rope_copy_flat");
+        code.lw(Register.T0, 24, Register.A0);
+        code.branchZero(Opcode.BEQZ, Register.T0, "_rope_copy_split");
+        code.move(Register.A0, Register.T0);
+        code.b("_rope_copy_flat");
+
+        // The right part goes last, so it is copied first; the left one is looped on
+        code.label("_rope_copy_split");
+        code.sw(Register.A0, 8, Register.SP);
+        code.lw(Register.A0, 20, Register.A0);
+        code.jal("_rope_copy");
+        code.lw(Register.A0, 8, Register.SP);
+        code.lw(Register.A0, 16, Register.A0);
+        code.b("_rope_copy_node");
+
+        code.label("_rope_copy_flat");
+        code.lw(Register.T5, 12, Register.A0);
+        code.lw(Register.T5, 12, Register.T5);
+        code.addiu(Register.T6, Register.A0, 16);
+        code.op(Opcode.ADDU, Register.T5, Register.T6, Register.T5);
+        code.label("_rope_copy_char");
+        code.branch(Opcode.BEQ, Register.T5, Register.T6, "_rope_copy_done");
+        code.addiu(Register.T5, Register.T5, -1);
+        code.addiu(Register.T3, Register.T3, -1);
+        code.lbu(Register.T7, 0, Register.T5);
+        code.sb(Register.T7, 0, Register.T3);
+        code.b("_rope_copy_char");
+        code.label("_rope_copy_done");
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 8);
+        code.jr(Register.RA);
+    }
+}
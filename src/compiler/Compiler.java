@@ -19,7 +19,11 @@ public class Compiler {
     public static ParseTreeProperty<String> fileNames = new ParseTreeProperty<>();
 
     public static void main(String[] args) throws IOException {
-        if (args.length == 0) {
+        var files = Options.parse(args);
+        if (files == null) {
+            return;
+        }
+        if (files.isEmpty()) {
             System.err.println("No file(s) given");
             return;
         }
@@ -34,7 +38,7 @@ public class Compiler {
         
         // Parse each input file and build one big parse tree out of
         // individual parse trees.
-        for (var fileName : args) {
+        for (var fileName : files) {
             var input = CharStreams.fromFileName(fileName);
             
             // Lexer
@@ -127,8 +131,8 @@ public class Compiler {
         }
 
         var asmGenVisitor = new CodeGenVisitor();
-        var t = ast.accept(asmGenVisitor);
-        System.out.println(t.render());
+        ast.accept(asmGenVisitor);
+        System.out.println(asmGenVisitor.render());
 
 
     }
@@ -0,0 +1,102 @@
+package cool.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Command line switches. Arguments not starting with '-' are input files.
+public class Options {
+    // -O0 keeps the direct code generator, -O1 and -O2 go through the optimizer
+    public static int optimizationLevel = 0;
+    // -pass-stats: per-pass time and instruction counts on stderr
+    public static boolean passStats = false;
+    // -dump-ir: optimized IR of every routine on stderr
+    public static boolean dumpIR = false;
+    // -unroll=<n>: body copies per trip of unrolled counted loops at -O2, 1 disables unrolling
+    public static int unrollFactor = 4;
+    // -gc: emit what the runtime's generational collector needs
+    public static boolean garbageCollection = false;
+    // -ropes: concat builds rope nodes, flattened when the characters are needed
+    public static boolean ropeStrings = false;
+    // -raw-attrs: Int and Bool attributes hold plain words instead of pointers to objects
+    public static boolean rawAttributes = false;
+    // -memo: pure recursive methods keep their results in bounded tables
+    public static boolean memoize = false;
+    // -tile: unoptimized code tiles Int arithmetic and comparisons over variables into register code
+    public static boolean tileExpressions = false;
+    // -schedule: reorder each basic block so loaded registers are not read by the next instruction
+    public static boolean scheduleLoads = false;
+    // -int-cache=<low>:<high> or -int-cache=off: Ints preallocated for optimized code to share
+    public static int intCacheLow = -128;
+    public static int intCacheHigh = 1023;
+
+    // Returns the input files, or null after reporting a bad switch.
+    public static List<String> parse(String[] args) {
+        List<String> files = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("-")) {
+                files.add(arg);
+                continue;
+            }
+
+            if (arg.startsWith("-unroll=")) {
+                try {
+                    unrollFactor = Integer.parseInt(arg.substring("-unroll=".length()));
+                } catch (NumberFormatException e) {
+                    unrollFactor = 0;
+                }
+                if (unrollFactor < 1) {
+                    System.err.println("Bad unroll factor in " + arg);
+                    return null;
+                }
+                continue;
+            }
+
+            if (arg.startsWith("-int-cache=")) {
+                if (!parseIntCache(arg.substring("-int-cache=".length()))) {
+                    System.err.println("Bad Int cache range in " + arg);
+                    return null;
+                }
+                continue;
+            }
+
+            switch (arg) {
+                case "-O0" -> optimizationLevel = 0;
+                case "-O1" -> optimizationLevel = 1;
+                case "-O2" -> optimizationLevel = 2;
+                case "-pass-stats" -> passStats = true;
+                case "-dump-ir" -> dumpIR = true;
+                case "-gc" -> garbageCollection = true;
+                case "-raw-attrs" -> rawAttributes = true;
+                case "-ropes" -> ropeStrings = true;
+                case "-memo" -> memoize = true;
+                case "-tile" -> tileExpressions = true;
+                case "-schedule" -> scheduleLoads = true;
+                default -> {
+                    System.err.println("Unknown option " + arg);
+                    return null;
+                }
+            }
+        }
+
+        return files;
+    }
+
+    // The range has to fit the immediates of the boxing code
+    private static boolean parseIntCache(String range) {
+        if (range.equals("off")) {
+            intCacheLow = 0;
+            intCacheHigh = -1;
+            return true;
+        }
+        String[] bounds = range.split(":");
+        if (bounds.length != 2) return false;
+        try {
+            intCacheLow = Integer.parseInt(bounds[0]);
+            intCacheHigh = Integer.parseInt(bounds[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return intCacheLow <= intCacheHigh && intCacheLow >= -32767 && intCacheHigh <= 32767;
+    }
+}
@@ -0,0 +1,107 @@
+package cool.ir;
+
+import cool.AST.*;
+
+import java.util.function.Predicate;
+
+/*
+ * A while loop of the shape
+ *
+ *     while i < n loop { ...; i <- i + c; } pool
+ *
+ * where i is a local, n is a local or an integer literal, c is a positive
+ * literal, and nothing but the last expression of the body assigns i or n.
+ * Such a loop runs ceil((n - i) / c) times, which lets IRBuilder unroll it.
+ */
+public class CountedLoop {
+    // Bodies are never copied more than this many AST nodes in total
+    public static final int MAX_UNROLLED_SIZE = 400;
+
+    public final String variable;
+    public final ASTNode.Expression bound;
+    public final int step;
+    public final int size;
+
+    private CountedLoop(String variable, ASTNode.Expression bound, int step, int size) {
+        this.variable = variable;
+        this.bound = bound;
+        this.step = step;
+        this.size = size;
+    }
+
+    private static ASTNode.Expression strip(ASTNode.Expression expr) {
+        while (expr instanceof ASTNode.ParenNode paren) {
+            expr = paren.exp;
+        }
+        return expr;
+    }
+
+    private static String nameOf(ASTNode.Expression expr) {
+        return strip(expr) instanceof ASTNode.IDtype id ? id.getToken().getText() : null;
+    }
+
+    private static Integer literalOf(ASTNode.Expression expr) {
+        return strip(expr) instanceof ASTNode.IntType literal ? Integer.parseInt(literal.getToken().getText()) : null;
+    }
+
+    public static CountedLoop match(ASTNode.WhileNode whileNode, Predicate<String> isLocal) {
+        if (!(strip(whileNode.condition) instanceof ASTNode.LtNode lt)) return null;
+        if (!(whileNode.body instanceof ASTNode.BlockNode block)) return null;
+
+        String variable = nameOf(lt.left);
+        if (variable == null || !isLocal.test(variable)) return null;
+
+        ASTNode.Expression bound = strip(lt.right);
+        String bound_name = nameOf(bound);
+        if (bound_name != null && (bound_name.equals(variable) || !isLocal.test(bound_name))) return null;
+        if (bound_name == null && literalOf(bound) == null) return null;
+
+        // The increment closes the body
+        if (!(block.expressions.getLast() instanceof ASTNode.AssignNode increment)) return null;
+        if (!increment.id.getToken().getText().equals(variable)) return null;
+        if (!(strip(increment.exp) instanceof ASTNode.PlusNode plus)) return null;
+
+        Integer step = null;
+        if (variable.equals(nameOf(plus.left))) {
+            step = literalOf(plus.right);
+        } else if (variable.equals(nameOf(plus.right))) {
+            step = literalOf(plus.left);
+        }
+        if (step == null || step <= 0) return null;
+
+        boolean[] clobbered = {false};
+        for (ASTNode.Expression expr : block.expressions) {
+            ExpressionWalker.forEach(expr, e -> {
+                if (e != increment && e instanceof ASTNode.AssignNode assign) {
+                    clobbered[0] |= binds(assign.id.getToken().getText(), variable, bound_name);
+                } else if (e instanceof ASTNode.LetNode let) {
+                    for (ASTNode.LocalVarNode var : let.localVars) {
+                        clobbered[0] |= binds(var.id.getToken().getText(), variable, bound_name);
+                    }
+                } else if (e instanceof ASTNode.CaseNode caseNode) {
+                    for (ASTNode.CaseMethodNode branch : caseNode.cases) {
+                        clobbered[0] |= binds(branch.id.getToken().getText(), variable, bound_name);
+                    }
+                }
+            });
+        }
+        if (clobbered[0]) return null;
+
+        return new CountedLoop(variable, bound, step, ExpressionWalker.size(block));
+    }
+
+    private static boolean binds(String name, String variable, String bound) {
+        return name.equals(variable) || name.equals(bound);
+    }
+
+    // Literal value of the bound, or null when it is a variable
+    public Integer literalBound() {
+        return literalOf(bound);
+    }
+
+    // Number of trips from a known start towards a known bound
+    public long tripCount(int start, int limit) {
+        if (start >= limit) return 0;
+        return ((long) limit - start + step - 1) / step;
+    }
+}
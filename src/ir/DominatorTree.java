@@ -0,0 +1,80 @@
+package cool.ir;
+
+import java.util.*;
+
+/*
+ * Dominators of the reachable blocks of a function, computed with the
+ * iterative algorithm of Cooper, Harvey and Kennedy.
+ */
+public class DominatorTree {
+    private final List<IRBlock> order;
+    private final Map<IRBlock, Integer> rpo_index = new HashMap<>();
+    private final Map<IRBlock, IRBlock> idom = new HashMap<>();
+    private final Map<IRBlock, List<IRBlock>> children = new HashMap<>();
+
+    public DominatorTree(IRFunction function) {
+        order = function.reversePostorder();
+        for (int i = 0; i < order.size(); i++) {
+            rpo_index.put(order.get(i), i);
+        }
+
+        IRBlock entry = function.entry;
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IRBlock block : order) {
+                if (block == entry) continue;
+                IRBlock new_idom = null;
+                for (IRBlock pred : block.preds) {
+                    if (!idom.containsKey(pred)) continue;
+                    new_idom = new_idom == null ? pred : intersect(pred, new_idom);
+                }
+                if (new_idom != null && idom.get(block) != new_idom) {
+                    idom.put(block, new_idom);
+                    changed = true;
+                }
+            }
+        }
+
+        for (IRBlock block : order) {
+            children.put(block, new ArrayList<>());
+        }
+        for (IRBlock block : order) {
+            if (block != entry) {
+                children.get(idom.get(block)).add(block);
+            }
+        }
+    }
+
+    private IRBlock intersect(IRBlock a, IRBlock b) {
+        while (a != b) {
+            while (rpo_index.get(a) > rpo_index.get(b)) a = idom.get(a);
+            while (rpo_index.get(b) > rpo_index.get(a)) b = idom.get(b);
+        }
+        return a;
+    }
+
+    // Reachable blocks in reverse postorder, dominators before the blocks they dominate
+    public List<IRBlock> getOrder() {
+        return order;
+    }
+
+    // Immediate dominator, or null for the entry
+    public IRBlock getIdom(IRBlock block) {
+        IRBlock dom = idom.get(block);
+        return dom == block ? null : dom;
+    }
+
+    public List<IRBlock> getChildren(IRBlock block) {
+        return children.getOrDefault(block, List.of());
+    }
+
+    public boolean dominates(IRBlock a, IRBlock b) {
+        while (b != null) {
+            if (a == b) return true;
+            b = getIdom(b);
+        }
+        return false;
+    }
+}
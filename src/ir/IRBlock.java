@@ -0,0 +1,87 @@
+package cool.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IRBlock {
+    public final int id;
+    public final IRFunction function;
+    public final List<IRInstr> instrs = new ArrayList<>();
+    // Phi operands are kept in the same order as this list
+    public final List<IRBlock> preds = new ArrayList<>();
+    // Loop nesting depth in the source, used to weigh costs
+    public int loopDepth;
+
+    IRBlock(int id, IRFunction function) {
+        this.id = id;
+        this.function = function;
+    }
+
+    public IRInstr getTerminator() {
+        if (instrs.isEmpty()) return null;
+        IRInstr last = instrs.getLast();
+        return last.op.isTerminator() ? last : null;
+    }
+
+    public List<IRBlock> getSuccessors() {
+        IRInstr term = getTerminator();
+        return term == null ? List.of() : term.targets;
+    }
+
+    public List<IRInstr> getPhis() {
+        List<IRInstr> phis = new ArrayList<>();
+        for (IRInstr instr : instrs) {
+            if (instr.op != IROp.PHI) break;
+            phis.add(instr);
+        }
+        return phis;
+    }
+
+    public void add(IRInstr instr) {
+        instr.block = this;
+        instrs.add(instr);
+    }
+
+    // Inserts before the terminator, or at the end of an open block.
+    public void addBeforeTerminator(IRInstr instr) {
+        instr.block = this;
+        if (getTerminator() != null) {
+            instrs.add(instrs.size() - 1, instr);
+        } else {
+            instrs.add(instr);
+        }
+    }
+
+    public void insertBefore(IRInstr position, IRInstr instr) {
+        instr.block = this;
+        instrs.add(instrs.indexOf(position), instr);
+    }
+
+    public void addPhi(IRInstr phi) {
+        phi.block = this;
+        int index = 0;
+        while (index < instrs.size() && instrs.get(index).op == IROp.PHI) {
+            index++;
+        }
+        instrs.add(index, phi);
+    }
+
+    // Drops the edge from pred along with the matching phi operands.
+    public void removePredecessor(IRBlock pred) {
+        int index = preds.indexOf(pred);
+        if (index < 0) return;
+        preds.remove(index);
+        for (IRInstr phi : getPhis()) {
+            phi.args.remove(index);
+        }
+    }
+
+    public String label() {
+        return function.label + "_bb" + id;
+    }
+
+    @Override
+    public String toString() {
+        return "bb" + id;
+    }
+}
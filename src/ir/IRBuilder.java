@@ -0,0 +1,826 @@
+package cool.ir;
+
+import cool.AST.*;
+import cool.structures.*;
+
+import java.util.*;
+
+/*
+ * Lowers the typed AST of one method or init routine into SSA form.
+ * Locals and formals become SSA values as they are read, following
+ * Braun et al.'s on-the-fly construction; attributes stay in memory.
+ * Expressions are evaluated in the same order as the direct code
+ * generator, so side effects happen in the same sequence.
+ */
+public class IRBuilder implements ASTVisitor<IRInstr> {
+    private static final int MAX_FULL_UNROLL_TRIPS = 16;
+
+    private final ProgramLayout layout;
+
+    private ClassSymbol currentClass;
+    private IRFunction function;
+    private IRBlock current;
+
+    // Local variable keys currently in scope, by name
+    private Map<String, Object> scope = new HashMap<>();
+    private final Map<Object, String> variableTypes = new HashMap<>();
+    private final Map<Object, Map<IRBlock, IRInstr>> currentDef = new HashMap<>();
+    private final Map<IRBlock, Map<Object, IRInstr>> incompletePhis = new HashMap<>();
+    private final Set<IRBlock> sealed = new HashSet<>();
+    private int loopDepth = 0;
+
+    // Copies of a counted loop body per trip of the unrolled loop; 1 turns unrolling off
+    private int unrollFactor = 1;
+
+    // Precomputes pure calls in attribute initializers when set
+    private PartialEvaluator evaluator;
+    private boolean inInitializer = false;
+
+    public IRBuilder(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    public void setUnrollFactor(int unrollFactor) {
+        this.unrollFactor = unrollFactor;
+    }
+
+    public void setEvaluator(PartialEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    private void start(String label, ClassSymbol cls, int numFormals) {
+        currentClass = cls;
+        function = new IRFunction(label, cls.getName(), numFormals);
+        scope = new HashMap<>();
+        variableTypes.clear();
+        currentDef.clear();
+        incompletePhis.clear();
+        sealed.clear();
+        loopDepth = 0;
+
+        current = function.newBlock();
+        function.entry = current;
+        sealed.add(current);
+    }
+
+    public IRFunction buildMethod(ClassSymbol cls, ASTNode.FunctionsFeatures method) {
+        FunctionSymbol symbol = cls.functions.get(method.id.getToken().getText());
+        return buildClone(cls.getName() + "." + symbol.getName(), cls, symbol, method, new String[symbol.getFormals().size()]);
+    }
+
+    /*
+     * Builds method, defined by symbol's class, as if cls inherited it and
+     * declared formal i with type formalTypes[i] where that is not null.
+     * SELF_TYPE then stands for cls, which may be a subclass of the owner.
+     */
+    public IRFunction buildClone(String label, ClassSymbol cls, FunctionSymbol symbol,
+                                 ASTNode.FunctionsFeatures method, String[] formalTypes) {
+        Map<String, Symbol> formals = symbol.getFormals();
+        start(label, cls, formals.size());
+
+        int index = 0;
+        for (Symbol formal : formals.values()) {
+            // Assignments to the formal may still store any value of its declared type
+            String declared = typeName(((IdSymbol) formal).getType());
+            IRInstr param = emit(IROp.PARAM, IRInstr.Kind.REF);
+            param.type = formalTypes[index] != null ? formalTypes[index] : declared;
+            param.imm = index++;
+            declare(formal.getName(), declared, param);
+        }
+
+        IRInstr result = method.body.accept(this);
+        emit(IROp.RETURN, IRInstr.Kind.NONE, result);
+        return function;
+    }
+
+    /*
+     * Builds the init routine of cls with the initializers of all its
+     * classes inlined, lineage listing them from the oldest ancestor down,
+     * instead of calling the parent's init. Initializers of an ancestor are
+     * built as if written in cls, which is what self is while they run.
+     */
+    public IRFunction buildInit(ClassSymbol cls, List<ASTNode.ClassDef> lineage) {
+        start(cls.getName() + "_init", cls, 0);
+
+        for (ASTNode.ClassDef classDef : lineage) {
+            for (ASTNode.Feature feature : classDef.features) {
+                if (feature instanceof ASTNode.AssignFeatures attr && attr.exp != null) {
+                    inInitializer = true;
+                    IRInstr value = attr.exp.accept(this);
+                    inInitializer = false;
+                    storeAttribute(attr.id.getToken().getText(), value);
+                }
+            }
+        }
+
+        emit(IROp.RETURN, IRInstr.Kind.NONE, self());
+        return function;
+    }
+
+    private IRInstr emit(IROp op, IRInstr.Kind kind, IRInstr... args) {
+        IRInstr instr = new IRInstr(op, kind, args);
+        current.add(instr);
+        return instr;
+    }
+
+    private String typeName(TypeSymbol type) {
+        if (type == null) return "Object";
+        if (type.getName().equals("SELF_TYPE")) return currentClass.getName();
+        return type.getName();
+    }
+
+    private String typeOf(ASTNode.Expression expr) {
+        return typeName(expr.getStaticType());
+    }
+
+    private IRInstr self() {
+        IRInstr self = emit(IROp.SELF, IRInstr.Kind.REF);
+        self.type = currentClass.getName();
+        return self;
+    }
+
+    private IRInstr global(String label, String type, int value) {
+        IRInstr global = emit(IROp.GLOBAL, IRInstr.Kind.REF);
+        global.label = label;
+        global.type = type;
+        global.imm = value;
+        return global;
+    }
+
+    private IRInstr intObject(int value) {
+        return global(layout.intConstant(value), "Int", value);
+    }
+
+    private IRInstr boolObject(boolean value) {
+        return global(value ? "bool_const1" : "bool_const0", "Bool", value ? 1 : 0);
+    }
+
+    private IRInstr constant(IRInstr.Kind kind, int value) {
+        IRInstr instr = emit(IROp.CONST, kind);
+        instr.imm = value;
+        return instr;
+    }
+
+    private IRInstr boxInt(IRInstr value) {
+        IRInstr box = emit(IROp.BOX_INT, IRInstr.Kind.REF, value);
+        box.type = "Int";
+        return box;
+    }
+
+    private IRInstr boxBool(IRInstr value) {
+        IRInstr box = emit(IROp.BOX_BOOL, IRInstr.Kind.REF, value);
+        box.type = "Bool";
+        return box;
+    }
+
+    private String fileLabel(ASTNode node) {
+        String full_path = node.getToken().getInputStream().getSourceName();
+        return layout.stringConstant(new java.io.File(full_path).getName());
+    }
+
+    // Control flow
+
+    private void addEdge(IRBlock from, IRBlock to) {
+        to.preds.add(from);
+    }
+
+    private void jump(IRBlock target) {
+        IRInstr jump = emit(IROp.JUMP, IRInstr.Kind.NONE);
+        jump.targets.add(target);
+        addEdge(current, target);
+    }
+
+    private void branch(IRInstr condition, IRBlock thenBlock, IRBlock elseBlock) {
+        IRInstr branch = emit(IROp.BRANCH, IRInstr.Kind.NONE, condition);
+        branch.targets.add(thenBlock);
+        branch.targets.add(elseBlock);
+        addEdge(current, thenBlock);
+        addEdge(current, elseBlock);
+    }
+
+    private IRBlock newBlock() {
+        IRBlock block = function.newBlock();
+        block.loopDepth = loopDepth;
+        return block;
+    }
+
+    // SSA construction
+
+    private void declare(String name, String type, IRInstr value) {
+        Object key = new Object();
+        scope.put(name, key);
+        variableTypes.put(key, type);
+        writeVariable(key, current, value);
+    }
+
+    private void writeVariable(Object var, IRBlock block, IRInstr value) {
+        currentDef.computeIfAbsent(var, k -> new HashMap<>()).put(block, value);
+    }
+
+    private IRInstr readVariable(Object var, IRBlock block) {
+        Map<IRBlock, IRInstr> defs = currentDef.get(var);
+        if (defs != null && defs.containsKey(block)) {
+            return defs.get(block);
+        }
+
+        IRInstr value;
+        if (!sealed.contains(block)) {
+            value = newPhi(var, block);
+            incompletePhis.computeIfAbsent(block, k -> new LinkedHashMap<>()).put(var, value);
+        } else if (block.preds.size() == 1) {
+            value = readVariable(var, block.preds.getFirst());
+        } else if (block.preds.isEmpty()) {
+            value = new IRInstr(IROp.VOID, IRInstr.Kind.REF);
+            block.addPhi(value);
+        } else {
+            value = newPhi(var, block);
+            writeVariable(var, block, value);
+            addPhiOperands(var, value);
+        }
+        writeVariable(var, block, value);
+        return value;
+    }
+
+    private IRInstr newPhi(Object var, IRBlock block) {
+        IRInstr phi = new IRInstr(IROp.PHI, IRInstr.Kind.REF);
+        phi.type = variableTypes.get(var);
+        block.addPhi(phi);
+        return phi;
+    }
+
+    private void addPhiOperands(Object var, IRInstr phi) {
+        for (IRBlock pred : phi.block.preds) {
+            phi.args.add(readVariable(var, pred));
+        }
+    }
+
+    private void seal(IRBlock block) {
+        Map<Object, IRInstr> pending = incompletePhis.remove(block);
+        sealed.add(block);
+        if (pending != null) {
+            for (Map.Entry<Object, IRInstr> entry : pending.entrySet()) {
+                addPhiOperands(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private IRInstr join(IRBlock block, List<IRInstr> values, String type) {
+        IRInstr phi = new IRInstr(IROp.PHI, IRInstr.Kind.REF);
+        phi.args.addAll(values);
+        phi.type = type;
+        block.addPhi(phi);
+        return phi;
+    }
+
+    // Expressions
+
+    @Override
+    public IRInstr visit(ASTNode.IntType intLiteral) {
+        return intObject(Integer.parseInt(intLiteral.getToken().getText()));
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.StringType stringType) {
+        return global(layout.stringConstant(stringType.getToken().getText()), "String", 0);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.TrueType trueType) {
+        return boolObject(true);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.FalseType falseType) {
+        return boolObject(false);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.IDtype iDtype) {
+        String name = iDtype.getToken().getText();
+
+        if (name.equals("self")) {
+            return self();
+        }
+
+        Object var = scope.get(name);
+        if (var != null) {
+            return readVariable(var, current);
+        }
+
+        int offset = layout.attributeOffset(currentClass.getName(), name);
+        IRInstr.Kind kind = layout.attributeKind(currentClass.getName(), name);
+        if (offset >= 0 && kind != IRInstr.Kind.REF) {
+            IRInstr load = emit(IROp.GET_ATTR, kind, self());
+            load.imm = offset;
+            return kind == IRInstr.Kind.INT ? boxInt(load) : boxBool(load);
+        }
+        if (offset >= 0) {
+            IRInstr load = emit(IROp.GET_ATTR, IRInstr.Kind.REF, self());
+            load.imm = offset;
+            load.type = typeOf(iDtype);
+            return load;
+        }
+
+        return emit(IROp.VOID, IRInstr.Kind.REF);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.AssignNode assignNode) {
+        String name = assignNode.id.getToken().getText();
+        IRInstr value = assignNode.exp.accept(this);
+
+        Object var = scope.get(name);
+        if (var != null) {
+            IRInstr copy = emit(IROp.COPY, IRInstr.Kind.REF, value);
+            copy.type = value.type;
+            writeVariable(var, current, copy);
+            return copy;
+        }
+
+        storeAttribute(name, value);
+        return value;
+    }
+
+    // Raw attributes get the value inside the Int or Bool
+    private void storeAttribute(String name, IRInstr value) {
+        int offset = layout.attributeOffset(currentClass.getName(), name);
+        if (offset < 0) return;
+        IRInstr.Kind kind = layout.attributeKind(currentClass.getName(), name);
+        if (kind != IRInstr.Kind.REF) {
+            value = emit(kind == IRInstr.Kind.INT ? IROp.UNBOX_INT : IROp.UNBOX_BOOL, kind, value);
+        }
+        IRInstr store = emit(IROp.SET_ATTR, IRInstr.Kind.NONE, self(), value);
+        store.imm = offset;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.LetNode letNode) {
+        Map<String, Object> saved_scope = new HashMap<>(scope);
+
+        for (ASTNode.LocalVarNode var : letNode.localVars) {
+            String var_name = var.id.getToken().getText();
+            String type_name = var.type.getToken().getText();
+
+            IRInstr value;
+            if (var.initExpr != null) {
+                value = var.initExpr.accept(this);
+            } else {
+                value = switch (type_name) {
+                    case "Int" -> intObject(0);
+                    case "String" -> global(layout.stringConstant(""), "String", 0);
+                    case "Bool" -> boolObject(false);
+                    default -> emit(IROp.VOID, IRInstr.Kind.REF);
+                };
+            }
+
+            IRInstr copy = emit(IROp.COPY, IRInstr.Kind.REF, value);
+            copy.type = type_name.equals("SELF_TYPE") ? currentClass.getName() : type_name;
+            declare(var_name, copy.type, copy);
+        }
+
+        IRInstr result = letNode.body.accept(this);
+        scope = saved_scope;
+        return result;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.BlockNode blockNode) {
+        IRInstr result = null;
+        for (ASTNode.Expression expr : blockNode.expressions) {
+            result = expr.accept(this);
+        }
+        return result;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.ParenNode parenNode) {
+        return parenNode.exp.accept(this);
+    }
+
+    private IRInstr arithmetic(ASTNode.Expression left, ASTNode.Expression right, IROp op) {
+        IRInstr a = left.accept(this);
+        IRInstr b = right.accept(this);
+        IRInstr ua = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, a);
+        IRInstr ub = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, b);
+        return boxInt(emit(op, IRInstr.Kind.INT, ua, ub));
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.PlusNode plusNode) {
+        return arithmetic(plusNode.left, plusNode.right, IROp.ADD);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.MinusNode minusNode) {
+        return arithmetic(minusNode.left, minusNode.right, IROp.SUB);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.MulNode mulNode) {
+        return arithmetic(mulNode.left, mulNode.right, IROp.MUL);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.DivNode divNode) {
+        return arithmetic(divNode.left, divNode.right, IROp.DIV);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.TildeNode tildeNode) {
+        IRInstr value = tildeNode.exp.accept(this);
+        IRInstr raw = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, value);
+        return boxInt(emit(IROp.NEG, IRInstr.Kind.INT, raw));
+    }
+
+    private IRInstr comparison(ASTNode.Expression left, ASTNode.Expression right, IROp op) {
+        IRInstr a = left.accept(this);
+        IRInstr b = right.accept(this);
+        IRInstr ua = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, a);
+        IRInstr ub = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, b);
+        return boxBool(emit(op, IRInstr.Kind.BOOL, ua, ub));
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.LtNode ltNode) {
+        return comparison(ltNode.left, ltNode.right, IROp.LT);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.LeNode leNode) {
+        return comparison(leNode.left, leNode.right, IROp.LE);
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.EqualNode equalNode) {
+        IRInstr a = equalNode.left.accept(this);
+        IRInstr b = equalNode.right.accept(this);
+
+        // Ints and Bools are equal when their values are, and are never void
+        String type = typeOf(equalNode.left);
+        if ((type.equals("Int") || type.equals("Bool")) && type.equals(typeOf(equalNode.right))) {
+            IROp unbox = type.equals("Int") ? IROp.UNBOX_INT : IROp.UNBOX_BOOL;
+            IRInstr.Kind kind = type.equals("Int") ? IRInstr.Kind.INT : IRInstr.Kind.BOOL;
+            IRInstr ua = emit(unbox, kind, a);
+            IRInstr ub = emit(unbox, kind, b);
+            return boxBool(emit(IROp.EQ, IRInstr.Kind.BOOL, ua, ub));
+        }
+
+        IRInstr equals = emit(IROp.EQUALS, IRInstr.Kind.REF, a, b);
+        equals.type = "Bool";
+        return equals;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.NotNode notNode) {
+        IRInstr value = notNode.exp.accept(this);
+        IRInstr raw = emit(IROp.UNBOX_BOOL, IRInstr.Kind.BOOL, value);
+        return boxBool(emit(IROp.NOT, IRInstr.Kind.BOOL, raw));
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.IsvoidNode isvoidNode) {
+        IRInstr value = isvoidNode.exp.accept(this);
+        return boxBool(emit(IROp.IS_VOID, IRInstr.Kind.BOOL, value));
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.NewTypeNode newTypeNode) {
+        String type_name = newTypeNode.type.getToken().getText();
+
+        if (type_name.equals("SELF_TYPE")) {
+            IRInstr alloc = emit(IROp.NEW_SELF, IRInstr.Kind.REF);
+            alloc.type = currentClass.getName();
+            return alloc;
+        }
+
+        IRInstr alloc = emit(IROp.NEW, IRInstr.Kind.REF);
+        alloc.label = type_name;
+        alloc.type = type_name;
+        alloc.imm = layout.hasInitializers(type_name) ? 1 : 0;
+        return alloc;
+    }
+
+    // Arguments are evaluated last to first, as the direct code generator pushes them.
+    private IRInstr[] evaluateArguments(List<ASTNode.Expression> arguments) {
+        IRInstr[] values = new IRInstr[arguments.size()];
+        for (int i = arguments.size() - 1; i >= 0; i--) {
+            values[i] = arguments.get(i).accept(this);
+        }
+        return values;
+    }
+
+    private IRInstr call(IROp op, IRInstr receiver, IRInstr[] arguments) {
+        IRInstr call = emit(op, IRInstr.Kind.REF, receiver);
+        call.args.addAll(List.of(arguments));
+        return call;
+    }
+
+    // Constant object for a call the evaluator could run at compile time, or null
+    private IRInstr precomputed(ASTNode.Expression call) {
+        if (evaluator == null || !inInitializer) return null;
+
+        return switch (evaluator.evaluateCall(currentClass.getName(), call)) {
+            case Integer value -> intObject(value);
+            case Boolean value -> boolObject(value);
+            case String value -> global(layout.stringConstant(value), "String", 0);
+            case null, default -> null;
+        };
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.FuncCallNode funcCallNode) {
+        IRInstr folded = precomputed(funcCallNode);
+        if (folded != null) return folded;
+
+        String method_name = funcCallNode.id.getToken().getText();
+        IRInstr[] arguments = evaluateArguments(funcCallNode.arguments);
+
+        IRInstr call = call(IROp.DISPATCH, self(), arguments);
+        call.label = method_name;
+        call.imm = layout.dispatchOffset(currentClass.getName(), method_name);
+        call.type = typeOf(funcCallNode);
+        return call;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.FuncCallClassNode funcCallClassNode) {
+        IRInstr folded = precomputed(funcCallClassNode);
+        if (folded != null) return folded;
+
+        String method_name = funcCallClassNode.id.getToken().getText();
+        IRInstr[] arguments = evaluateArguments(funcCallClassNode.arguments);
+        IRInstr receiver = funcCallClassNode.object.accept(this);
+
+        IRInstr check = emit(IROp.CHECK_DISPATCH_VOID, IRInstr.Kind.NONE, receiver);
+        check.label = fileLabel(funcCallClassNode);
+        check.imm = funcCallClassNode.getToken().getLine();
+
+        IRInstr call;
+        if (funcCallClassNode.atType != null) {
+            String class_name = funcCallClassNode.atType.getToken().getText();
+            call = call(IROp.STATIC_DISPATCH, receiver, arguments);
+            call.label = layout.methodLabel(class_name, method_name);
+        } else {
+            call = call(IROp.DISPATCH, receiver, arguments);
+            call.label = method_name;
+            call.imm = layout.dispatchOffset(typeOf(funcCallClassNode.object), method_name);
+        }
+        call.type = typeOf(funcCallClassNode);
+        return call;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.IfNode ifNode) {
+        IRInstr condition = ifNode.condition.accept(this);
+        IRInstr raw = emit(IROp.UNBOX_BOOL, IRInstr.Kind.BOOL, condition);
+
+        IRBlock then_block = newBlock();
+        IRBlock else_block = newBlock();
+        IRBlock end_block = newBlock();
+        branch(raw, then_block, else_block);
+        seal(then_block);
+        seal(else_block);
+
+        current = then_block;
+        IRInstr then_value = ifNode.thenExp.accept(this);
+        jump(end_block);
+
+        current = else_block;
+        IRInstr else_value = ifNode.elseExp.accept(this);
+        jump(end_block);
+
+        seal(end_block);
+        current = end_block;
+        return join(end_block, List.of(then_value, else_value), typeOf(ifNode));
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.WhileNode whileNode) {
+        CountedLoop counted = unrollFactor > 1 ? CountedLoop.match(whileNode, scope::containsKey) : null;
+
+        // Only innermost loops are unrolled, so that nested copies cannot multiply
+        boolean innermost = counted != null;
+        if (innermost) {
+            boolean[] nested = {false};
+            ExpressionWalker.forEach(whileNode.body, e -> nested[0] |= e instanceof ASTNode.WhileNode);
+            innermost = !nested[0];
+        }
+
+        if (innermost && unrollCompletely(whileNode, counted)) {
+            return emit(IROp.VOID, IRInstr.Kind.REF);
+        }
+        if (innermost && counted.size * unrollFactor <= CountedLoop.MAX_UNROLLED_SIZE) {
+            unroll(whileNode, counted);
+        }
+        return loop(whileNode);
+    }
+
+    private IRInstr loop(ASTNode.WhileNode whileNode) {
+        IRBlock header = newBlock();
+        jump(header);
+        current = header;
+
+        loopDepth++;
+        IRBlock body = newBlock();
+        loopDepth--;
+        IRBlock exit = newBlock();
+        header.loopDepth = body.loopDepth;
+
+        IRInstr condition = whileNode.condition.accept(this);
+        IRInstr raw = emit(IROp.UNBOX_BOOL, IRInstr.Kind.BOOL, condition);
+        branch(raw, body, exit);
+        seal(body);
+
+        loopDepth++;
+        current = body;
+        whileNode.body.accept(this);
+        jump(header);
+        loopDepth--;
+
+        seal(header);
+        seal(exit);
+        current = exit;
+        return emit(IROp.VOID, IRInstr.Kind.REF);
+    }
+
+    // Int literal a local currently holds, looking through copies
+    private Integer knownInt(String name) {
+        IRInstr value = readVariable(scope.get(name), current);
+        while (value.op == IROp.COPY) {
+            value = value.arg(0);
+        }
+        return value.op == IROp.GLOBAL && "Int".equals(value.type) ? value.imm : null;
+    }
+
+    // Loops with a small trip count known here are replaced by that many copies of the body
+    private boolean unrollCompletely(ASTNode.WhileNode whileNode, CountedLoop counted) {
+        Integer start = knownInt(counted.variable);
+        Integer limit = counted.literalBound();
+        if (limit == null && counted.bound instanceof ASTNode.IDtype id) {
+            limit = knownInt(id.getToken().getText());
+        }
+        if (start == null || limit == null) return false;
+
+        long trips = counted.tripCount(start, limit);
+        if (trips > MAX_FULL_UNROLL_TRIPS || trips * counted.size > CountedLoop.MAX_UNROLLED_SIZE) return false;
+
+        for (long trip = 0; trip < trips; trip++) {
+            whileNode.body.accept(this);
+        }
+        return true;
+    }
+
+    /*
+     * Emits a loop running unrollFactor copies of the body per test of
+     * i < n - (unrollFactor - 1) * c. Every copy then runs with i < n as the
+     * original would have checked, and the leftover trips fall through to
+     * the original loop, emitted next as the remainder. When n is so close
+     * to the minimum Int that the subtraction would wrap, the unrolled loop
+     * is skipped altogether.
+     */
+    private void unroll(ASTNode.WhileNode whileNode, CountedLoop counted) {
+        long span = (long) (unrollFactor - 1) * counted.step;
+        if (span > Integer.MAX_VALUE) return;
+
+        IRInstr bound = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, counted.bound.accept(this));
+        IRInstr in_range = emit(IROp.LE, IRInstr.Kind.BOOL,
+                constant(IRInstr.Kind.INT, Integer.MIN_VALUE + (int) span), bound);
+        IRInstr limit = emit(IROp.SUBU, IRInstr.Kind.INT, bound, constant(IRInstr.Kind.INT, (int) span));
+
+        IRBlock entry = newBlock();
+        IRBlock remainder = newBlock();
+        branch(in_range, entry, remainder);
+        seal(entry);
+
+        current = entry;
+        loopDepth++;
+        IRBlock header = newBlock();
+        IRBlock body = newBlock();
+        loopDepth--;
+        IRBlock exit = newBlock();
+        jump(header);
+
+        current = header;
+        IRInstr variable = readVariable(scope.get(counted.variable), current);
+        IRInstr raw = emit(IROp.UNBOX_INT, IRInstr.Kind.INT, variable);
+        branch(emit(IROp.LT, IRInstr.Kind.BOOL, raw, limit), body, exit);
+        seal(body);
+        seal(exit);
+
+        loopDepth++;
+        current = body;
+        for (int copy = 0; copy < unrollFactor; copy++) {
+            whileNode.body.accept(this);
+        }
+        jump(header);
+        loopDepth--;
+        seal(header);
+
+        current = exit;
+        jump(remainder);
+        seal(remainder);
+        current = remainder;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.CaseNode caseNode) {
+        IRInstr value = caseNode.condition.accept(this);
+
+        IRInstr check = emit(IROp.CHECK_CASE_VOID, IRInstr.Kind.NONE, value);
+        check.label = fileLabel(caseNode);
+        check.imm = caseNode.getToken().getLine();
+
+        IRInstr tag = emit(IROp.TAG, IRInstr.Kind.INT, value);
+
+        List<ASTNode.CaseMethodNode> sorted_branches = new ArrayList<>(caseNode.cases);
+        sorted_branches.sort((a, b) -> {
+            int tag_a = layout.classTag(a.type.getToken().getText());
+            int tag_b = layout.classTag(b.type.getToken().getText());
+            return tag_b - tag_a;
+        });
+
+        IRBlock end_block = newBlock();
+        List<IRInstr> results = new ArrayList<>();
+
+        for (ASTNode.CaseMethodNode branch : sorted_branches) {
+            String branch_type = branch.type.getToken().getText();
+            int low = layout.classTag(branch_type);
+            int high = layout.maxDescendantTag(branch_type);
+
+            IRBlock upper_check = newBlock();
+            IRBlock body = newBlock();
+            IRBlock next = newBlock();
+
+            branch(emit(IROp.LT, IRInstr.Kind.BOOL, tag, constant(IRInstr.Kind.INT, low)), next, upper_check);
+            seal(upper_check);
+            current = upper_check;
+            branch(emit(IROp.LT, IRInstr.Kind.BOOL, constant(IRInstr.Kind.INT, high), tag), next, body);
+            seal(body);
+            seal(next);
+
+            current = body;
+            Map<String, Object> saved_scope = new HashMap<>(scope);
+            IRInstr bound = emit(IROp.COPY, IRInstr.Kind.REF, value);
+            bound.type = branch_type;
+            declare(branch.id.getToken().getText(), branch_type, bound);
+            results.add(branch.cases.accept(this));
+            scope = saved_scope;
+            jump(end_block);
+
+            current = next;
+        }
+
+        emit(IROp.CASE_ABORT, IRInstr.Kind.NONE, value);
+
+        seal(end_block);
+        current = end_block;
+        return join(end_block, results, typeOf(caseNode));
+    }
+
+    // Nodes that never appear in expression position
+
+    @Override
+    public IRInstr visit(ASTNode.Program program) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.ClassDef classDef) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.FunctionsFeatures functionsFeatures) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.AssignFeatures assignFeatures) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.Formal formal) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.IDNode idNode) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.TypeNode typeNode) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.LocalVarNode localVarNode) {
+        return null;
+    }
+
+    @Override
+    public IRInstr visit(ASTNode.CaseMethodNode caseMethodNode) {
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+package cool.ir;
+
+import java.util.*;
+
+public class IRFunction {
+    // Routine label: Class.method or Class_init
+    public final String label;
+    public final String className;
+    // Formals the routine pops; interprocedural passes may drop some
+    public int numFormals;
+    // Set on clones made for one receiver class or argument types: exact classes of self and each formal
+    public String exactSelf;
+    public String[] exactFormals;
+    public final List<IRBlock> blocks = new ArrayList<>();
+    public IRBlock entry;
+    private int next_block = 0;
+
+    public IRFunction(String label, String className, int numFormals) {
+        this.label = label;
+        this.className = className;
+        this.numFormals = numFormals;
+    }
+
+    public IRBlock newBlock() {
+        IRBlock block = new IRBlock(next_block++, this);
+        blocks.add(block);
+        return block;
+    }
+
+    public int instructionCount() {
+        int count = 0;
+        for (IRBlock block : blocks) {
+            count += block.instrs.size();
+        }
+        return count;
+    }
+
+    // Blocks reachable from the entry, in reverse postorder.
+    public List<IRBlock> reversePostorder() {
+        List<IRBlock> order = new ArrayList<>();
+        Set<IRBlock> visited = new HashSet<>();
+        postorder(entry, visited, order);
+        Collections.reverse(order);
+        return order;
+    }
+
+    private void postorder(IRBlock block, Set<IRBlock> visited, List<IRBlock> order) {
+        Deque<IRBlock> stack = new ArrayDeque<>();
+        Deque<Iterator<IRBlock>> iters = new ArrayDeque<>();
+        visited.add(block);
+        stack.push(block);
+        iters.push(block.getSuccessors().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<IRBlock> it = iters.peek();
+            if (it.hasNext()) {
+                IRBlock succ = it.next();
+                if (visited.add(succ)) {
+                    stack.push(succ);
+                    iters.push(succ.getSuccessors().iterator());
+                }
+            } else {
+                order.add(stack.pop());
+                iters.pop();
+            }
+        }
+    }
+
+    // Removes blocks that can no longer be reached from the entry.
+    public boolean removeUnreachableBlocks() {
+        Set<IRBlock> reachable = new HashSet<>(reversePostorder());
+        boolean changed = false;
+        for (Iterator<IRBlock> it = blocks.iterator(); it.hasNext(); ) {
+            IRBlock block = it.next();
+            if (!reachable.contains(block)) {
+                for (IRBlock succ : block.getSuccessors()) {
+                    succ.removePredecessor(block);
+                }
+                it.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Rewrites every use of from into a use of to.
+    public void replaceAllUses(IRInstr from, IRInstr to) {
+        for (IRBlock block : blocks) {
+            for (IRInstr instr : block.instrs) {
+                List<IRInstr> args = instr.args;
+                for (int i = 0; i < args.size(); i++) {
+                    if (args.get(i) == from) {
+                        args.set(i, to);
+                    }
+                }
+            }
+        }
+    }
+
+    public Map<IRInstr, List<IRInstr>> computeUses() {
+        Map<IRInstr, List<IRInstr>> uses = new HashMap<>();
+        for (IRBlock block : blocks) {
+            for (IRInstr instr : block.instrs) {
+                for (IRInstr arg : instr.args) {
+                    uses.computeIfAbsent(arg, k -> new ArrayList<>()).add(instr);
+                }
+            }
+        }
+        return uses;
+    }
+}
@@ -0,0 +1,108 @@
+package cool.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * One SSA instruction. An instruction is also the value it defines, so
+ * operands point straight at their defining instructions.
+ */
+public class IRInstr {
+    public enum Kind { INT, BOOL, REF, NONE }
+
+    private static int next_id = 0;
+
+    public final int id = next_id++;
+    public IROp op;
+    public Kind kind;
+    public final List<IRInstr> args = new ArrayList<>();
+    public int imm;
+    // Data or code label: constant objects, new, dispatched method, void check file name
+    public String label;
+    // Static class of a Ref value, when known
+    public String type;
+    // Successors of a terminator
+    public final List<IRBlock> targets = new ArrayList<>();
+    public IRBlock block;
+
+    public IRInstr(IROp op, Kind kind, IRInstr... args) {
+        this.op = op;
+        this.kind = kind;
+        this.args.addAll(List.of(args));
+    }
+
+    public IRInstr arg(int index) {
+        return args.get(index);
+    }
+
+    public boolean hasValue() {
+        return kind != Kind.NONE;
+    }
+
+    public boolean isConst() {
+        return op == IROp.CONST;
+    }
+
+    public boolean hasSideEffects() {
+        // Division traps on a zero divisor, so it is only pure when the divisor is known
+        if (op == IROp.DIV) {
+            return !(arg(1).isConst() && arg(1).imm != 0);
+        }
+        if (isStringCall("length") || isStringCall("concat")) {
+            return false;
+        }
+        // Copying a prototype with nothing to initialize only allocates
+        if ((op == IROp.NEW || op == IROp.NEW_FRAME) && imm == 0) {
+            return false;
+        }
+        return op.hasSideEffects();
+    }
+
+    // True when running this may stop the program: add, sub and neg trap on
+    // overflow, a tag is loaded through a possibly void pointer, division by
+    // zero aborts, and so does substr out of range on a String
+    public boolean mayTrap() {
+        return switch (op) {
+            case ADD, SUB, NEG, TAG, DISPATCH -> true;
+            case DIV -> hasSideEffects();
+            default -> false;
+        };
+    }
+
+    // True when attribute values may differ after this instruction
+    public boolean mayWriteMemory() {
+        return switch (op) {
+            case NEW, NEW_FRAME -> imm != 0;
+            case SET_ATTR, NEW_SELF, STATIC_DISPATCH -> true;
+            case DISPATCH -> !isStringCall("length") && !isStringCall("concat") && !isStringCall("substr");
+            default -> false;
+        };
+    }
+
+    // String cannot be inherited from, so a dispatch on a String receiver
+    // always reaches the runtime's own method.
+    public boolean isStringCall(String method) {
+        return op == IROp.DISPATCH && method.equals(label) && "String".equals(arg(0).type);
+    }
+
+    // Turns this instruction into another one in place, keeping its users.
+    public void become(IROp op, IRInstr... args) {
+        this.op = op;
+        this.args.clear();
+        this.args.addAll(List.of(args));
+    }
+
+    public void becomeConst(int value) {
+        become(IROp.CONST);
+        this.imm = value;
+    }
+
+    public String name() {
+        return "%" + id;
+    }
+
+    @Override
+    public String toString() {
+        return IRPrinter.print(this);
+    }
+}
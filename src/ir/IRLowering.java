@@ -0,0 +1,544 @@
+package cool.ir;
+
+import cool.codegen.GenGC;
+import cool.codegen.IntCache;
+import cool.codegen.PrintRuntime;
+import cool.codegen.StringRuntime;
+import cool.mips.*;
+
+import java.util.*;
+
+/*
+ * Translates an optimized IR function back to MIPS. Every value that is
+ * not trivially rematerialized (constants, labels, self, formals) gets a
+ * frame slot below $fp; operations work through $t1 and $t2. Phis use a
+ * second "incoming" slot written at the end of each predecessor, so that
+ * copies on a back edge never clobber a value still being read.
+ *
+ * Register contents are tracked inside a block, so a value that is still
+ * in a register is moved instead of reloaded. The function is lowered
+ * twice: the second time drops the slots that were never read back.
+ *
+ * Objects made by NEW_FRAME live in the frame too, below the slots, and
+ * their address is rematerialized from $fp like a formal.
+ *
+ * Under -gc the collector takes every even word of the frame that falls
+ * in the heap for a pointer, and skips odd ones. A raw Int could be such
+ * a word, so it takes two slots, each with its low bit set: the value
+ * itself, then the value shifted left, which keeps its low bit. Raw
+ * Bools are 0 or 1 and are stored as they are.
+ */
+public class IRLowering {
+    private final IRFunction function;
+    private final ProgramLayout layout;
+    private final MipsCode code;
+    private final Map<IRInstr, Integer> slots = new HashMap<>();
+    private final Map<IRInstr, Integer> incoming_slots = new HashMap<>();
+    // Lowest slot of each object built in the frame
+    private final Map<IRInstr, Integer> frame_objects = new HashMap<>();
+    private int num_slots = 0;
+    private int label_counter = 0;
+
+    // Values whose slot is never read, found by a first lowering
+    private final Set<IRInstr> unread;
+    private final Set<IRInstr> slot_reads = new HashSet<>();
+    private Map<Register, IRInstr> contents = new EnumMap<>(Register.class);
+    private int scanned = 0;
+
+    private IRLowering(IRFunction function, LabelTable labels, ProgramLayout layout, Set<IRInstr> unread) {
+        this.function = function;
+        this.layout = layout;
+        this.code = new MipsCode(labels);
+        this.unread = unread;
+    }
+
+    public static MipsCode lower(IRFunction function, LabelTable labels, ProgramLayout layout) {
+        IRLowering first = new IRLowering(function, labels, layout, Set.of());
+        first.lower();
+
+        Set<IRInstr> unread = new HashSet<>(first.slots.keySet());
+        unread.removeAll(first.slot_reads);
+        if (unread.isEmpty()) return first.code;
+
+        return new IRLowering(function, labels, layout, unread).lower();
+    }
+
+    private static boolean isRematerialized(IRInstr instr) {
+        return switch (instr.op) {
+            case CONST, GLOBAL, VOID, SELF, PARAM, NEW_FRAME -> true;
+            default -> false;
+        };
+    }
+
+    private int frameOffset(int slot) {
+        return -4 * (slot + 1);
+    }
+
+    private static boolean isSplit(IRInstr value) {
+        return GenGC.enabled() && value.kind == IRInstr.Kind.INT;
+    }
+
+    private static int words(IRInstr value) {
+        return isSplit(value) ? 2 : 1;
+    }
+
+    private void storeSlot(Register reg, int slot, IRInstr value) {
+        if (!isSplit(value)) {
+            code.sw(reg, frameOffset(slot), Register.FP);
+            return;
+        }
+        code.opImm(Opcode.ORI, Register.T3, reg, 1);
+        code.sw(Register.T3, frameOffset(slot), Register.FP);
+        code.opImm(Opcode.SLL, Register.T3, reg, 1);
+        code.opImm(Opcode.ORI, Register.T3, Register.T3, 1);
+        code.sw(Register.T3, frameOffset(slot + 1), Register.FP);
+    }
+
+    private void loadSlot(Register reg, int slot, IRInstr value) {
+        code.lw(reg, frameOffset(slot), Register.FP);
+        if (!isSplit(value)) return;
+        code.lw(Register.T3, frameOffset(slot + 1), Register.FP);
+        code.opImm(Opcode.SRL, Register.T3, Register.T3, 1);
+        code.opImm(Opcode.ANDI, Register.T3, Register.T3, 1);
+        code.opImm(Opcode.XORI, reg, reg, 1);
+        code.op(Opcode.OR, reg, reg, Register.T3);
+    }
+
+    private void assignSlots(List<IRBlock> order) {
+        for (IRBlock block : order) {
+            for (IRInstr instr : block.instrs) {
+                if (instr.op == IROp.NEW_FRAME) {
+                    num_slots += layout.objectSize(instr.label);
+                    frame_objects.put(instr, num_slots - 1);
+                }
+                if (!instr.hasValue() || isRematerialized(instr)) continue;
+                if (instr.op == IROp.PHI) {
+                    incoming_slots.put(instr, num_slots);
+                    num_slots += words(instr);
+                }
+                if (unread.contains(instr)) continue;
+                slots.put(instr, num_slots);
+                num_slots += words(instr);
+            }
+        }
+    }
+
+    // Forgets registers written by the code emitted since the last call.
+    private void sync() {
+        for (; scanned < code.size(); scanned++) {
+            Opcode op = code.opcode(scanned);
+            if (op == Opcode.LABEL || op.isCall()) {
+                contents.clear();
+            } else if (op.writesRegister()) {
+                contents.remove(code.reg(scanned, 0));
+            }
+        }
+    }
+
+    private Register holder(IRInstr value) {
+        for (Map.Entry<Register, IRInstr> entry : contents.entrySet()) {
+            if (entry.getValue() == value) return entry.getKey();
+        }
+        return null;
+    }
+
+    private void load(IRInstr value, Register reg) {
+        sync();
+        Register held = holder(value);
+        if (held == reg) return;
+
+        if (held != null) {
+            code.move(reg, held);
+        } else {
+            switch (value.op) {
+                case CONST -> code.li(reg, value.imm);
+                case GLOBAL -> code.la(reg, value.label);
+                case VOID -> code.li(reg, 0);
+                case SELF -> code.move(reg, Register.S0);
+                case PARAM -> code.lw(reg, 12 + 4 * value.imm, Register.FP);
+                case NEW_FRAME -> code.addiu(reg, Register.FP, frameOffset(frame_objects.get(value)));
+                default -> {
+                    loadSlot(reg, slots.get(value), value);
+                    slot_reads.add(value);
+                }
+            }
+        }
+        sync();
+        contents.put(reg, value);
+    }
+
+    // Loads two operands without the first load clobbering the second.
+    private void loadPair(IRInstr a, Register ra, IRInstr b, Register rb) {
+        sync();
+        if (holder(b) == ra && holder(a) != ra) {
+            load(b, rb);
+            load(a, ra);
+        } else {
+            load(a, ra);
+            load(b, rb);
+        }
+    }
+
+    private void store(IRInstr value, Register reg) {
+        sync();
+        Integer slot = slots.get(value);
+        if (slot != null) {
+            storeSlot(reg, slot, value);
+        }
+        contents.put(reg, value);
+    }
+
+    // A register holding value, loading it into scratch only when needed
+    private Register base(IRInstr value, Register scratch) {
+        if (value.op == IROp.SELF) return Register.S0;
+        sync();
+        Register held = holder(value);
+        if (held != null) return held;
+        load(value, scratch);
+        return scratch;
+    }
+
+    private String newLabel() {
+        return function.label + "_L" + label_counter++;
+    }
+
+    private String returnLabel() {
+        return function.label + "_ret";
+    }
+
+    private MipsCode lower() {
+        List<IRBlock> order = function.reversePostorder();
+        assignSlots(order);
+
+        code.label(function.label);
+        code.addiu(Register.SP, Register.SP, -12);
+        code.sw(Register.FP, 12, Register.SP);
+        code.sw(Register.S0, 8, Register.SP);
+        code.sw(Register.RA, 4, Register.SP);
+        code.addiu(Register.FP, Register.SP, 4);
+        code.move(Register.S0, Register.A0);
+        if (num_slots > 0) {
+            code.addiu(Register.SP, Register.SP, -4 * num_slots);
+        }
+        // The collector scans the whole frame, so no slot may hold a stale pointer
+        if (GenGC.enabled()) {
+            for (int slot = 0; slot < num_slots; slot++) {
+                code.sw(Register.ZERO, frameOffset(slot), Register.FP);
+            }
+        }
+
+        for (int i = 0; i < order.size(); i++) {
+            IRBlock block = order.get(i);
+            IRBlock next = i + 1 < order.size() ? order.get(i + 1) : null;
+
+            if (i > 0) {
+                code.label(block.label());
+            }
+            for (IRInstr instr : block.instrs) {
+                lowerInstr(instr, next);
+            }
+        }
+
+        code.label(returnLabel());
+        if (num_slots > 0) {
+            code.addiu(Register.SP, Register.SP, 4 * num_slots);
+        }
+        code.lw(Register.FP, 12, Register.SP);
+        code.lw(Register.S0, 8, Register.SP);
+        code.lw(Register.RA, 4, Register.SP);
+        code.addiu(Register.SP, Register.SP, 12);
+        if (function.numFormals > 0) {
+            code.addiu(Register.SP, Register.SP, 4 * function.numFormals);
+        }
+        code.jr(Register.RA);
+        return code;
+    }
+
+    // Stores the values flowing along the edges out of the current block.
+    private void phiMoves(IRBlock from) {
+        for (IRBlock succ : from.getSuccessors()) {
+            int index = succ.preds.indexOf(from);
+            for (IRInstr phi : succ.getPhis()) {
+                Register value = base(phi.arg(index), Register.T1);
+                storeSlot(value, incoming_slots.get(phi), phi);
+            }
+        }
+    }
+
+    private void pushArguments(IRInstr call) {
+        for (int i = call.args.size() - 1; i >= 1; i--) {
+            code.sw(base(call.arg(i), Register.T1), 0, Register.SP);
+            code.addiu(Register.SP, Register.SP, -4);
+        }
+    }
+
+    // Multiplies reg by an object stride of 16 or 20 bytes, using $t3
+    private void scale(Register reg, int factor) {
+        if (factor == 16) {
+            code.opImm(Opcode.SLL, reg, reg, 4);
+            return;
+        }
+        // 20 = 16 + 4
+        code.opImm(Opcode.SLL, Register.T3, reg, 2);
+        code.opImm(Opcode.SLL, reg, reg, 4);
+        code.op(Opcode.ADDU, reg, reg, Register.T3);
+    }
+
+    private void binary(Opcode op, IRInstr instr) {
+        loadPair(instr.arg(0), Register.T1, instr.arg(1), Register.T2);
+        code.op(op, Register.T1, Register.T1, Register.T2);
+        store(instr, Register.T1);
+    }
+
+    private void voidCheck(IRInstr instr, String abort) {
+        String ok = newLabel();
+        load(instr.arg(0), Register.A0);
+        // The abort path never returns, so registers are intact past the label
+        Map<Register, IRInstr> kept = new EnumMap<>(contents);
+        code.branch(Opcode.BNE, Register.A0, Register.ZERO, ok);
+        code.la(Register.A0, instr.label);
+        code.li(Register.T1, instr.imm);
+        code.jal(abort);
+        code.label(ok);
+        sync();
+        contents = kept;
+    }
+
+    private void lowerInstr(IRInstr instr, IRBlock next) {
+        switch (instr.op) {
+            case CONST, GLOBAL, VOID, SELF, PARAM -> { }
+            case PHI -> {
+                loadSlot(Register.T1, incoming_slots.get(instr), instr);
+                store(instr, Register.T1);
+            }
+            case COPY -> {
+                load(instr.arg(0), Register.T1);
+                store(instr, Register.T1);
+            }
+            case UNBOX_INT, UNBOX_BOOL, TAG -> {
+                Register obj = base(instr.arg(0), Register.T1);
+                code.lw(Register.T1, instr.op == IROp.TAG ? 0 : 12, obj);
+                store(instr, Register.T1);
+            }
+            case BOX_INT -> {
+                String done = null;
+                if (IntCache.enabled()) {
+                    // One unsigned compare checks both ends of the cached range
+                    String allocate = newLabel();
+                    done = newLabel();
+                    load(instr.arg(0), Register.T1);
+                    code.addiu(Register.T2, Register.T1, -IntCache.low());
+                    code.li(Register.T3, IntCache.size());
+                    code.op(Opcode.SLTU, Register.T3, Register.T2, Register.T3);
+                    code.branchZero(Opcode.BEQZ, Register.T3, allocate);
+                    scale(Register.T2, IntCache.stride());
+                    code.la(Register.A0, IntCache.LABEL);
+                    code.op(Opcode.ADDU, Register.A0, Register.A0, Register.T2);
+                    code.b(done);
+                    code.label(allocate);
+                }
+                code.la(Register.A0, "Int_protObj");
+                code.jal("Object.copy");
+                GenGC.checkAllocation(code);
+                load(instr.arg(0), Register.T1);
+                code.sw(Register.T1, 12, Register.A0);
+                if (done != null) {
+                    code.label(done);
+                }
+                store(instr, Register.A0);
+            }
+            case BOX_BOOL -> {
+                // bool_const1 is laid out right after bool_const0
+                load(instr.arg(0), Register.T1);
+                scale(Register.T1, 16 + GenGC.header());
+                code.la(Register.A0, "bool_const0");
+                code.op(Opcode.ADDU, Register.A0, Register.A0, Register.T1);
+                store(instr, Register.A0);
+            }
+            case ADD -> binary(Opcode.ADD, instr);
+            case SUB -> binary(Opcode.SUB, instr);
+            case MUL -> binary(Opcode.MUL, instr);
+            case DIV -> binary(Opcode.DIV, instr);
+            case LT -> binary(Opcode.SLT, instr);
+            case LE -> binary(Opcode.SLE, instr);
+            case EQ -> binary(Opcode.SEQ, instr);
+            case ADDU -> binary(Opcode.ADDU, instr);
+            case SUBU -> binary(Opcode.SUBU, instr);
+            case SHL, SRA, SRL -> {
+                Opcode shift = instr.op == IROp.SHL ? Opcode.SLL : instr.op == IROp.SRA ? Opcode.SRA : Opcode.SRL;
+                load(instr.arg(0), Register.T1);
+                code.opImm(shift, Register.T1, Register.T1, instr.imm);
+                store(instr, Register.T1);
+            }
+            case NEG -> {
+                load(instr.arg(0), Register.T1);
+                code.neg(Register.T1, Register.T1);
+                store(instr, Register.T1);
+            }
+            case NOT -> {
+                load(instr.arg(0), Register.T1);
+                code.opImm(Opcode.XORI, Register.T1, Register.T1, 1);
+                store(instr, Register.T1);
+            }
+            case IS_VOID -> {
+                load(instr.arg(0), Register.T1);
+                code.op(Opcode.SEQ, Register.T1, Register.T1, Register.ZERO);
+                store(instr, Register.T1);
+            }
+            case EQUALS -> {
+                String end = newLabel();
+                loadPair(instr.arg(0), Register.T1, instr.arg(1), Register.T2);
+                code.la(Register.A0, "bool_const1");
+                code.la(Register.A1, "bool_const0");
+                code.branch(Opcode.BEQ, Register.T1, Register.T2, end);
+                if ("String".equals(instr.arg(0).type) && "String".equals(instr.arg(1).type)) {
+                    StringRuntime.compareLengths(code, end);
+                }
+                code.jal(StringRuntime.equalityTest());
+                code.label(end);
+                store(instr, Register.A0);
+            }
+            case GET_ATTR -> {
+                Register obj = base(instr.arg(0), Register.T1);
+                code.lw(Register.T1, instr.imm, obj);
+                store(instr, Register.T1);
+            }
+            case SET_ATTR -> {
+                if (instr.arg(0).op == IROp.SELF) {
+                    load(instr.arg(1), Register.T1);
+                    code.sw(Register.T1, instr.imm, Register.S0);
+                    GenGC.assigned(code, Register.S0, instr.imm);
+                } else {
+                    loadPair(instr.arg(0), Register.T2, instr.arg(1), Register.T1);
+                    code.sw(Register.T1, instr.imm, Register.T2);
+                    GenGC.assigned(code, Register.T2, instr.imm);
+                }
+            }
+            case NEW -> {
+                code.la(Register.A0, instr.label + "_protObj");
+                code.jal("Object.copy");
+                GenGC.checkAllocation(code);
+                if (instr.imm != 0) {
+                    code.jal(instr.label + "_init");
+                }
+                store(instr, Register.A0);
+            }
+            case NEW_FRAME -> {
+                int offset = frameOffset(frame_objects.get(instr));
+                code.la(Register.T0, instr.label + "_protObj");
+                for (int word = 0; word < layout.objectSize(instr.label); word++) {
+                    code.lw(Register.T1, 4 * word, Register.T0);
+                    code.sw(Register.T1, offset + 4 * word, Register.FP);
+                }
+                code.addiu(Register.A0, Register.FP, offset);
+                if (instr.imm != 0) {
+                    code.jal(instr.label + "_init");
+                }
+                store(instr, Register.A0);
+            }
+            case NEW_SELF -> {
+                code.la(Register.T0, "class_objTab");
+                code.lw(Register.T1, 0, Register.S0);
+                code.opImm(Opcode.SLL, Register.T1, Register.T1, 3);
+                code.op(Opcode.ADDU, Register.T0, Register.T0, Register.T1);
+                code.lw(Register.A0, 0, Register.T0);
+                code.jal("Object.copy");
+                GenGC.checkAllocation(code);
+                code.la(Register.T0, "class_objTab");
+                code.lw(Register.T1, 0, Register.S0);
+                code.opImm(Opcode.SLL, Register.T1, Register.T1, 3);
+                code.op(Opcode.ADDU, Register.T0, Register.T0, Register.T1);
+                code.lw(Register.T0, 4, Register.T0);
+                code.jalr(Register.T0);
+                store(instr, Register.A0);
+            }
+            case DISPATCH -> {
+                pushArguments(instr);
+                load(instr.arg(0), Register.A0);
+                if (instr.isStringCall("length")) {
+                    StringRuntime.length(code);
+                } else if (instr.isStringCall("substr")) {
+                    StringRuntime.substr(code, newLabel(), newLabel());
+                } else {
+                    code.lw(Register.T0, 8, Register.A0);
+                    code.lw(Register.T0, instr.imm, Register.T0);
+                    code.jalr(Register.T0);
+                }
+                store(instr, Register.A0);
+            }
+            case STATIC_DISPATCH -> {
+                pushArguments(instr);
+                load(instr.arg(0), Register.A0);
+                code.jal(instr.label);
+                store(instr, Register.A0);
+            }
+            case CONCAT -> {
+                if (StringRuntime.ropes()) {
+                    // One rope node per part, joined from the left
+                    load(instr.arg(0), Register.A0);
+                    for (int i = 1; i < instr.args.size(); i++) {
+                        code.sw(base(instr.arg(i), Register.T1), 0, Register.SP);
+                        code.addiu(Register.SP, Register.SP, -4);
+                        code.jal(StringRuntime.ROPE_CONCAT);
+                    }
+                } else {
+                    pushArguments(instr);
+                    load(instr.arg(0), Register.A0);
+                    if (instr.args.size() == 2) {
+                        code.jal("String.concat");
+                    } else {
+                        code.li(Register.A1, instr.args.size() - 1);
+                        code.jal(StringRuntime.CONCAT_N);
+                    }
+                }
+                GenGC.checkAllocation(code);
+                store(instr, Register.A0);
+            }
+            case CALL_RUNTIME -> {
+                if (!instr.args.isEmpty()) {
+                    load(instr.arg(0), Register.A0);
+                }
+                if (instr.label.equals(PrintRuntime.PRINT_STRING)) {
+                    StringRuntime.flatten(code);
+                }
+                code.jal(instr.label);
+                if (instr.hasValue()) {
+                    store(instr, Register.A0);
+                }
+            }
+            case CHECK_DISPATCH_VOID -> voidCheck(instr, "_dispatch_abort");
+            case CHECK_CASE_VOID -> voidCheck(instr, "_case_abort2");
+            case JUMP -> {
+                phiMoves(instr.block);
+                IRBlock target = instr.targets.getFirst();
+                if (target != next) {
+                    code.b(target.label());
+                }
+            }
+            case BRANCH -> {
+                phiMoves(instr.block);
+                IRBlock if_true = instr.targets.get(0);
+                IRBlock if_false = instr.targets.get(1);
+                load(instr.arg(0), Register.T1);
+                if (if_true == next) {
+                    code.branchZero(Opcode.BEQZ, Register.T1, if_false.label());
+                } else {
+                    code.branchZero(Opcode.BNEZ, Register.T1, if_true.label());
+                    if (if_false != next) {
+                        code.b(if_false.label());
+                    }
+                }
+            }
+            case RETURN -> {
+                load(instr.arg(0), Register.A0);
+                if (next != null) {
+                    code.b(returnLabel());
+                }
+            }
+            case CASE_ABORT -> {
+                load(instr.arg(0), Register.A0);
+                code.jal("_case_abort");
+            }
+        }
+    }
+}
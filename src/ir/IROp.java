@@ -0,0 +1,80 @@
+package cool.ir;
+
+public enum IROp {
+    // Values
+    CONST,          // raw Int or Bool, imm
+    GLOBAL,         // address of a data label: int_const, str_const, bool_const
+    VOID,           // the void reference
+    SELF,
+    PARAM,          // formal parameter imm
+    COPY,
+    PHI,
+
+    // Boxing
+    BOX_INT,
+    BOX_BOOL,
+    UNBOX_INT,
+    UNBOX_BOOL,
+
+    // Raw arithmetic and comparisons
+    ADD,
+    SUB,
+    MUL,
+    DIV(true),
+    NEG,
+    ADDU,           // wrapping add and subtract, like mul they never trap
+    SUBU,
+    SHL,            // shifts of args[0] by imm bits
+    SRA,
+    SRL,
+    LT,
+    LE,
+    EQ,
+    NOT,
+    IS_VOID,
+    EQUALS,         // Cool '=' on two objects, yields a Bool object
+    CONCAT,         // new String joining all args, which are Strings
+
+    // Objects
+    GET_ATTR,       // attribute of args[0] at byte offset imm
+    SET_ATTR(true), // store args[1] into args[0] at byte offset imm
+    TAG,            // class tag of args[0]
+    NEW(true),      // new label; imm 1 when label_init has to run
+    NEW_FRAME(true),    // new label placed in the routine's own frame, imm as for NEW
+    NEW_SELF(true),
+    DISPATCH(true),         // dynamic dispatch of method label through vtable offset imm
+    STATIC_DISPATCH(true),  // direct call of routine label
+    CHECK_DISPATCH_VOID(true),
+    CHECK_CASE_VOID(true),
+    CALL_RUNTIME(true),     // leaf runtime routine label, taking args[0] in $a0
+
+    // Terminators
+    JUMP(true, true),
+    BRANCH(true, true),
+    RETURN(true, true),
+    CASE_ABORT(true, true);
+
+    private final boolean side_effects;
+    private final boolean terminator;
+
+    IROp() {
+        this(false, false);
+    }
+
+    IROp(boolean sideEffects) {
+        this(sideEffects, false);
+    }
+
+    IROp(boolean sideEffects, boolean terminator) {
+        this.side_effects = sideEffects;
+        this.terminator = terminator;
+    }
+
+    public boolean hasSideEffects() {
+        return side_effects;
+    }
+
+    public boolean isTerminator() {
+        return terminator;
+    }
+}
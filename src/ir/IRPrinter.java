@@ -0,0 +1,59 @@
+package cool.ir;
+
+import java.util.stream.Collectors;
+
+// Textual dump of the IR, used by -dump-ir.
+public class IRPrinter {
+    public static String print(IRInstr instr) {
+        StringBuilder sb = new StringBuilder();
+        if (instr.hasValue()) {
+            sb.append(instr.name()).append(" = ");
+        }
+        sb.append(instr.op.name().toLowerCase());
+
+        if (instr.op == IROp.CONST || instr.op == IROp.PARAM
+                || instr.op == IROp.SHL || instr.op == IROp.SRA || instr.op == IROp.SRL) {
+            sb.append(' ').append(instr.imm);
+        }
+        if (instr.label != null) {
+            sb.append(' ').append(instr.label);
+        }
+        if (!instr.args.isEmpty()) {
+            sb.append(' ').append(instr.args.stream()
+                    .map(arg -> arg == null ? "?" : arg.name())
+                    .collect(Collectors.joining(", ")));
+        }
+        switch (instr.op) {
+            case GET_ATTR, SET_ATTR, DISPATCH -> sb.append(" @").append(instr.imm);
+            case CHECK_DISPATCH_VOID, CHECK_CASE_VOID -> sb.append(" line ").append(instr.imm);
+            default -> { }
+        }
+        if (!instr.targets.isEmpty()) {
+            sb.append(" -> ").append(instr.targets.stream()
+                    .map(IRBlock::toString)
+                    .collect(Collectors.joining(", ")));
+        }
+        if (instr.type != null) {
+            sb.append(" : ").append(instr.type);
+        }
+        return sb.toString();
+    }
+
+    public static String print(IRFunction function) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("function ").append(function.label).append('\n');
+        for (IRBlock block : function.blocks) {
+            sb.append(block);
+            if (!block.preds.isEmpty()) {
+                sb.append("    ; preds ").append(block.preds.stream()
+                        .map(IRBlock::toString)
+                        .collect(Collectors.joining(", ")));
+            }
+            sb.append('\n');
+            for (IRInstr instr : block.instrs) {
+                sb.append("    ").append(print(instr)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
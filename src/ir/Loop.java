@@ -0,0 +1,80 @@
+package cool.ir;
+
+import java.util.*;
+
+/*
+ * A natural loop: a header plus every block that reaches one of its back
+ * edges without passing through the header. A while loop built by
+ * IRBuilder has its condition in the header and a single back edge.
+ */
+public class Loop {
+    public final IRBlock header;
+    public final Set<IRBlock> blocks = new LinkedHashSet<>();
+    public final List<IRBlock> latches = new ArrayList<>();
+
+    private Loop(IRBlock header) {
+        this.header = header;
+        blocks.add(header);
+    }
+
+    public boolean contains(IRBlock block) {
+        return blocks.contains(block);
+    }
+
+    public boolean contains(IRInstr instr) {
+        return instr.block != null && blocks.contains(instr.block);
+    }
+
+    // The only block entering the loop from outside, when it ends with a jump to the header
+    public IRBlock getPreheader() {
+        IRBlock preheader = null;
+        for (IRBlock pred : header.preds) {
+            if (contains(pred)) continue;
+            if (preheader != null) return null;
+            preheader = pred;
+        }
+        if (preheader == null) return null;
+        IRInstr term = preheader.getTerminator();
+        return term != null && term.op == IROp.JUMP ? preheader : null;
+    }
+
+    // Blocks inside the loop with a successor outside it
+    public List<IRBlock> getExitingBlocks() {
+        List<IRBlock> exiting = new ArrayList<>();
+        for (IRBlock block : blocks) {
+            for (IRBlock succ : block.getSuccessors()) {
+                if (!contains(succ)) {
+                    exiting.add(block);
+                    break;
+                }
+            }
+        }
+        return exiting;
+    }
+
+    // Natural loops of a function, innermost first.
+    public static List<Loop> findLoops(IRFunction function, DominatorTree dom) {
+        Map<IRBlock, Loop> by_header = new LinkedHashMap<>();
+
+        for (IRBlock block : dom.getOrder()) {
+            for (IRBlock succ : block.getSuccessors()) {
+                if (!dom.dominates(succ, block)) continue;
+
+                Loop loop = by_header.computeIfAbsent(succ, Loop::new);
+                loop.latches.add(block);
+                Deque<IRBlock> work = new ArrayDeque<>();
+                work.add(block);
+                while (!work.isEmpty()) {
+                    IRBlock current = work.poll();
+                    if (loop.blocks.add(current)) {
+                        work.addAll(current.preds);
+                    }
+                }
+            }
+        }
+
+        List<Loop> loops = new ArrayList<>(by_header.values());
+        loops.sort(Comparator.comparingInt(loop -> loop.blocks.size()));
+        return loops;
+    }
+}
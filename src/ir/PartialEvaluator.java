@@ -0,0 +1,293 @@
+package cool.ir;
+
+import cool.AST.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Compile-time interpreter for the pure subset of Cool, used to precompute
+ * calls made from attribute initializers. Values are Java Integers,
+ * Strings and Booleans standing for Int, String and Bool objects.
+ *
+ * Evaluation gives up on anything whose result could depend on the run:
+ * attributes, self as a value, new, IO and every other builtin except the
+ * String methods, dispatch on anything but self, and methods overridden
+ * below the initializer's class, since self may be any of its subclasses.
+ * It also gives up wherever the generated code would abort or trap
+ * (overflow, division by zero, substr out of range, case), and when it
+ * runs out of fuel or recursion depth, so a call it cannot finish is
+ * simply left to run.
+ */
+public class PartialEvaluator {
+    private static final int FUEL = 200000;
+    private static final int MAX_DEPTH = 200;
+    private static final int MAX_STRING_LENGTH = 1024;
+
+    // Thrown wherever evaluation has to stop; the call is then compiled as usual
+    private static class GiveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        GiveUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Object VOID = new Object();
+
+    private final Map<String, ASTNode.ClassDef> classes = new HashMap<>();
+    private final Map<String, List<String>> children = new HashMap<>();
+
+    private String selfClass;
+    private int fuel;
+    private int depth;
+    private final List<String> precomputed = new ArrayList<>();
+
+    public PartialEvaluator(ASTNode.Program program) {
+        for (ASTNode.ClassDef classDef : program.classes) {
+            String name = classDef.type.getToken().getText();
+            String parent = classDef.inheritsType != null ? classDef.inheritsType.getToken().getText() : "Object";
+            classes.put(name, classDef);
+            children.computeIfAbsent(parent, k -> new ArrayList<>()).add(name);
+        }
+    }
+
+    /*
+     * Value of a call found in an initializer of className, or null when
+     * it cannot be computed ahead of time.
+     */
+    public Object evaluateCall(String className, ASTNode.Expression call) {
+        selfClass = className;
+        fuel = FUEL;
+        depth = 0;
+        try {
+            Object value = eval(call, new HashMap<>());
+            if (value == VOID) return null;
+            precomputed.add(className + "_init: line " + call.getToken().getLine() + " = " + describe(value));
+            return value;
+        } catch (GiveUp | StackOverflowError e) {
+            return null;
+        }
+    }
+
+    private static String describe(Object value) {
+        return value instanceof String s ? '"' + s + '"' : value.toString();
+    }
+
+    // Method lookup
+
+    private ASTNode.FunctionsFeatures findMethod(String className, String methodName) {
+        for (ASTNode.ClassDef classDef = classes.get(className); classDef != null; ) {
+            for (ASTNode.Feature feature : classDef.features) {
+                if (feature instanceof ASTNode.FunctionsFeatures method
+                        && method.id.getToken().getText().equals(methodName)) {
+                    return method;
+                }
+            }
+            classDef = classDef.inheritsType == null ? null : classes.get(classDef.inheritsType.getToken().getText());
+        }
+        return null;
+    }
+
+    private boolean isOverriddenBelow(String className, String methodName) {
+        for (String child : children.getOrDefault(className, List.of())) {
+            if (findMethod(child, methodName) != findMethod(className, methodName)
+                    || isOverriddenBelow(child, methodName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Evaluation
+
+    private static <T> T expect(Object value, Class<T> type) {
+        if (!type.isInstance(value)) throw new GiveUp();
+        return type.cast(value);
+    }
+
+    private static int checked(long value) {
+        if (value != (int) value) throw new GiveUp();
+        return (int) value;
+    }
+
+    private Object eval(ASTNode.Expression expr, Map<String, Object[]> env) {
+        if (--fuel < 0) throw new GiveUp();
+
+        switch (expr) {
+            case ASTNode.IntType literal -> {
+                return Integer.parseInt(literal.getToken().getText());
+            }
+            case ASTNode.StringType literal -> {
+                return literal.getToken().getText();
+            }
+            case ASTNode.TrueType t -> {
+                return true;
+            }
+            case ASTNode.FalseType f -> {
+                return false;
+            }
+            case ASTNode.IDtype id -> {
+                Object[] cell = env.get(id.getToken().getText());
+                if (cell == null) throw new GiveUp();
+                return cell[0];
+            }
+            case ASTNode.AssignNode assign -> {
+                Object[] cell = env.get(assign.id.getToken().getText());
+                if (cell == null) throw new GiveUp();
+                cell[0] = eval(assign.exp, env);
+                return cell[0];
+            }
+            case ASTNode.ParenNode paren -> {
+                return eval(paren.exp, env);
+            }
+            case ASTNode.BlockNode block -> {
+                Object result = VOID;
+                for (ASTNode.Expression e : block.expressions) {
+                    result = eval(e, env);
+                }
+                return result;
+            }
+            case ASTNode.LetNode let -> {
+                Map<String, Object[]> inner = new HashMap<>(env);
+                for (ASTNode.LocalVarNode var : let.localVars) {
+                    Object value;
+                    if (var.initExpr != null) {
+                        value = eval(var.initExpr, inner);
+                    } else {
+                        value = switch (var.type.getToken().getText()) {
+                            case "Int" -> 0;
+                            case "String" -> "";
+                            case "Bool" -> false;
+                            default -> throw new GiveUp();
+                        };
+                    }
+                    inner.put(var.id.getToken().getText(), new Object[]{value});
+                }
+                return eval(let.body, inner);
+            }
+            case ASTNode.PlusNode plus -> {
+                return checked((long) evalInt(plus.left, env) + evalInt(plus.right, env));
+            }
+            case ASTNode.MinusNode minus -> {
+                return checked((long) evalInt(minus.left, env) - evalInt(minus.right, env));
+            }
+            case ASTNode.MulNode mul -> {
+                return checked((long) evalInt(mul.left, env) * evalInt(mul.right, env));
+            }
+            case ASTNode.DivNode div -> {
+                int a = evalInt(div.left, env);
+                int b = evalInt(div.right, env);
+                if (b == 0) throw new GiveUp();
+                return checked((long) a / b);
+            }
+            case ASTNode.TildeNode tilde -> {
+                return checked(-(long) evalInt(tilde.exp, env));
+            }
+            case ASTNode.LtNode lt -> {
+                return evalInt(lt.left, env) < evalInt(lt.right, env);
+            }
+            case ASTNode.LeNode le -> {
+                return evalInt(le.left, env) <= evalInt(le.right, env);
+            }
+            case ASTNode.EqualNode eq -> {
+                Object a = eval(eq.left, env);
+                Object b = eval(eq.right, env);
+                if (a == VOID || b == VOID) throw new GiveUp();
+                return a.equals(b);
+            }
+            case ASTNode.NotNode not -> {
+                return !expect(eval(not.exp, env), Boolean.class);
+            }
+            case ASTNode.IsvoidNode isvoid -> {
+                return eval(isvoid.exp, env) == VOID;
+            }
+            case ASTNode.IfNode ifNode -> {
+                return expect(eval(ifNode.condition, env), Boolean.class)
+                        ? eval(ifNode.thenExp, env) : eval(ifNode.elseExp, env);
+            }
+            case ASTNode.WhileNode whileNode -> {
+                while (expect(eval(whileNode.condition, env), Boolean.class)) {
+                    eval(whileNode.body, env);
+                }
+                return VOID;
+            }
+            case ASTNode.FuncCallNode call -> {
+                return invoke(selfClass, call.id.getToken().getText(), true, call.arguments, env);
+            }
+            case ASTNode.FuncCallClassNode call -> {
+                return evalCall(call, env);
+            }
+            default -> throw new GiveUp();
+        }
+    }
+
+    private int evalInt(ASTNode.Expression expr, Map<String, Object[]> env) {
+        return expect(eval(expr, env), Integer.class);
+    }
+
+    private Object evalCall(ASTNode.FuncCallClassNode call, Map<String, Object[]> env) {
+        String method_name = call.id.getToken().getText();
+
+        if (call.object instanceof ASTNode.IDtype id && id.getToken().getText().equals("self")) {
+            if (call.atType == null) {
+                return invoke(selfClass, method_name, true, call.arguments, env);
+            }
+            return invoke(call.atType.getToken().getText(), method_name, false, call.arguments, env);
+        }
+
+        // The generated code evaluates the arguments last to first, then the receiver
+        Object[] values = new Object[call.arguments.size()];
+        for (int i = values.length - 1; i >= 0; i--) {
+            values[i] = eval(call.arguments.get(i), env);
+        }
+        List<Object> arguments = Arrays.asList(values);
+        String receiver = expect(eval(call.object, env), String.class);
+
+        switch (method_name) {
+            case "length" -> {
+                return receiver.length();
+            }
+            case "concat" -> {
+                String result = receiver + expect(arguments.getFirst(), String.class);
+                if (result.length() > MAX_STRING_LENGTH) throw new GiveUp();
+                return result;
+            }
+            case "substr" -> {
+                int start = expect(arguments.get(0), Integer.class);
+                int length = expect(arguments.get(1), Integer.class);
+                if (start < 0 || length < 0 || (long) start + length > receiver.length()) throw new GiveUp();
+                return receiver.substring(start, start + length);
+            }
+            default -> throw new GiveUp();
+        }
+    }
+
+    // Runs a user-defined method; dynamic calls on self must not have an override below selfClass
+    private Object invoke(String className, String methodName, boolean dynamic,
+                          List<ASTNode.Expression> arguments, Map<String, Object[]> env) {
+        ASTNode.FunctionsFeatures method = findMethod(className, methodName);
+        if (method == null || (dynamic && isOverriddenBelow(className, methodName))) throw new GiveUp();
+        if (method.formals.size() != arguments.size() || ++depth > MAX_DEPTH) throw new GiveUp();
+
+        // Last to first, as the generated code pushes them
+        Map<String, Object[]> frame = new HashMap<>();
+        for (int i = arguments.size() - 1; i >= 0; i--) {
+            Object value = eval(arguments.get(i), env);
+            if (value == VOID) throw new GiveUp();
+            frame.put(method.formals.get(i).id.getToken().getText(), new Object[]{value});
+        }
+
+        Object result = eval(method.body, frame);
+        depth--;
+        return result;
+    }
+
+    public void printReport(PrintStream out) {
+        if (precomputed.isEmpty()) return;
+        out.println("precomputed " + precomputed.size() + " calls in initializers:");
+        for (String line : precomputed) {
+            out.println("    " + line);
+        }
+    }
+}
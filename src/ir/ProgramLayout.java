@@ -0,0 +1,40 @@
+package cool.ir;
+
+// Object layout and data labels chosen by the code generator.
+public interface ProgramLayout {
+    int dispatchOffset(String className, String methodName);
+
+    // Label of the routine found at methodName's slot in className's dispatch table
+    String methodLabel(String className, String methodName);
+
+    // Label of the routine every object of className or its subclasses runs
+    // for methodName, or null when a subclass overrides it
+    String uniqueMethodLabel(String className, String methodName);
+
+    // Byte offset of an attribute inside objects of className, or -1
+    int attributeOffset(String className, String attrName);
+
+    // REF for attributes pointing to their value, INT or BOOL for those holding it as a raw word
+    IRInstr.Kind attributeKind(String className, String attrName);
+
+    // Words in an object of className, header included
+    int objectSize(String className);
+
+    // Initial word of the attribute at byte offset in className's prototype: a data label, or "0"
+    String prototypeWord(String className, int offset);
+
+    // Whether className or one of its ancestors gives an attribute an initial value
+    boolean hasInitializers(String className);
+
+    int classTag(String className);
+
+    int maxDescendantTag(String className);
+
+    // Labels of constant objects, created on demand
+    String stringConstant(String value);
+
+    String intConstant(int value);
+
+    // Contents of the String constant at label
+    String stringValue(String label);
+}
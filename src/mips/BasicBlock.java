@@ -0,0 +1,50 @@
+package cool.mips;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A maximal run of instructions [start, end) of a MipsCode with a single entry and exit.
+public class BasicBlock {
+    private final int id;
+    private final int start;
+    private final int end;
+    private final List<BasicBlock> successors = new ArrayList<>();
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+
+    public BasicBlock(int id, int start, int end) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    void addSuccessor(BasicBlock block) {
+        if (!successors.contains(block)) {
+            successors.add(block);
+            block.predecessors.add(this);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cool.mips;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Splits the code of one routine into basic blocks and links them by control flow.
+public class ControlFlowGraph {
+    private final MipsCode code;
+    private final List<BasicBlock> blocks = new ArrayList<>();
+
+    public ControlFlowGraph(MipsCode code) {
+        this.code = code;
+        build();
+    }
+
+    public MipsCode getCode() {
+        return code;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.isEmpty() ? null : blocks.getFirst();
+    }
+
+    private void build() {
+        int n = code.size();
+        if (n == 0) {
+            return;
+        }
+
+        boolean[] leader = new boolean[n + 1];
+        leader[0] = true;
+        for (int i = 0; i < n; i++) {
+            Opcode op = code.opcode(i);
+            if (op == Opcode.LABEL) {
+                leader[i] = true;
+            } else if (op.isConditionalBranch() || op.isUnconditionalJump()) {
+                leader[i + 1] = true;
+            }
+        }
+
+        Map<Integer, BasicBlock> label_blocks = new HashMap<>();
+        int start = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i == n || leader[i]) {
+                BasicBlock block = new BasicBlock(blocks.size(), start, i);
+                blocks.add(block);
+                if (code.opcode(start) == Opcode.LABEL) {
+                    label_blocks.put(code.operand(start), block);
+                }
+                start = i;
+            }
+        }
+
+        for (int b = 0; b < blocks.size(); b++) {
+            BasicBlock block = blocks.get(b);
+            int last = block.getEnd() - 1;
+            Opcode op = code.opcode(last);
+
+            if (op.isConditionalBranch() || op == Opcode.B) {
+                BasicBlock target = label_blocks.get(code.operand(last));
+                if (target != null) {
+                    block.addSuccessor(target);
+                }
+            }
+
+            if (!op.isUnconditionalJump() && b + 1 < blocks.size()) {
+                block.addSuccessor(blocks.get(b + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package cool.mips;
+
+import java.util.Arrays;
+
+/*
+ * A straight list of MIPS instructions. Every instruction is packed into one
+ * int holding the opcode and up to three registers, plus one int operand
+ * holding either an immediate/offset or the id of a label in the LabelTable.
+ */
+public class MipsCode {
+    private static final int OPCODE_BITS = 6;
+    private static final int REG_BITS = 5;
+    private static final int REG_MASK = (1 << REG_BITS) - 1;
+
+    private final LabelTable labels;
+    private int[] insns;
+    private int[] operands;
+    private int size;
+
+    public MipsCode(LabelTable labels) {
+        this.labels = labels;
+        this.insns = new int[16];
+        this.operands = new int[16];
+    }
+
+    public LabelTable getLabels() {
+        return labels;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Opcode opcode(int index) {
+        return Opcode.fromOrdinal(insns[index] & ((1 << OPCODE_BITS) - 1));
+    }
+
+    // Register operand 0, 1 or 2 of an instruction, in the order they are printed.
+    public Register reg(int index, int which) {
+        int shift = OPCODE_BITS + which * REG_BITS;
+        return Register.fromNumber((insns[index] >>> shift) & REG_MASK);
+    }
+
+    public int operand(int index) {
+        return operands[index];
+    }
+
+    public String label(int index) {
+        return labels.name(operands[index]);
+    }
+
+    private static int encode(Opcode op, Register r1, Register r2, Register r3) {
+        int word = op.ordinal();
+        if (r1 != null) word |= r1.ordinal() << OPCODE_BITS;
+        if (r2 != null) word |= r2.ordinal() << (OPCODE_BITS + REG_BITS);
+        if (r3 != null) word |= r3.ordinal() << (OPCODE_BITS + 2 * REG_BITS);
+        return word;
+    }
+
+    private void grow(int needed) {
+        if (needed > insns.length) {
+            int capacity = Math.max(needed, insns.length * 2);
+            insns = Arrays.copyOf(insns, capacity);
+            operands = Arrays.copyOf(operands, capacity);
+        }
+    }
+
+    public MipsCode emit(Opcode op, Register r1, Register r2, Register r3, int operand) {
+        grow(size + 1);
+        insns[size] = encode(op, r1, r2, r3);
+        operands[size] = operand;
+        size++;
+        return this;
+    }
+
+    public MipsCode append(MipsCode other) {
+        if (other == null) {
+            return this;
+        }
+        grow(size + other.size);
+        System.arraycopy(other.insns, 0, insns, size, other.size);
+        System.arraycopy(other.operands, 0, operands, size, other.size);
+        size += other.size;
+        return this;
+    }
+
+    // Copies instruction src of other into this list.
+    public MipsCode appendFrom(MipsCode other, int src) {
+        grow(size + 1);
+        insns[size] = other.insns[src];
+        operands[size] = other.operands[src];
+        size++;
+        return this;
+    }
+
+    public MipsCode label(String name) {
+        return emit(Opcode.LABEL, null, null, null, labels.intern(name));
+    }
+
+    public MipsCode la(Register rd, String label) {
+        return emit(Opcode.LA, rd, null, null, labels.intern(label));
+    }
+
+    public MipsCode li(Register rd, int value) {
+        return emit(Opcode.LI, rd, null, null, value);
+    }
+
+    public MipsCode lw(Register rt, int offset, Register base) {
+        return emit(Opcode.LW, rt, base, null, offset);
+    }
+
+    public MipsCode sw(Register rt, int offset, Register base) {
+        return emit(Opcode.SW, rt, base, null, offset);
+    }
+
+    public MipsCode lbu(Register rt, int offset, Register base) {
+        return emit(Opcode.LBU, rt, base, null, offset);
+    }
+
+    public MipsCode sb(Register rt, int offset, Register base) {
+        return emit(Opcode.SB, rt, base, null, offset);
+    }
+
+    public MipsCode move(Register rd, Register rs) {
+        return emit(Opcode.MOVE, rd, rs, null, 0);
+    }
+
+    public MipsCode neg(Register rd, Register rs) {
+        return emit(Opcode.NEG, rd, rs, null, 0);
+    }
+
+    public MipsCode op(Opcode op, Register rd, Register rs, Register rt) {
+        return emit(op, rd, rs, rt, 0);
+    }
+
+    public MipsCode opImm(Opcode op, Register rt, Register rs, int imm) {
+        return emit(op, rt, rs, null, imm);
+    }
+
+    public MipsCode addiu(Register rt, Register rs, int imm) {
+        return opImm(Opcode.ADDIU, rt, rs, imm);
+    }
+
+    public MipsCode branch(Opcode op, Register rs, Register rt, String label) {
+        return emit(op, rs, rt, null, labels.intern(label));
+    }
+
+    public MipsCode branchZero(Opcode op, Register rs, String label) {
+        return emit(op, rs, null, null, labels.intern(label));
+    }
+
+    public MipsCode b(String label) {
+        return emit(Opcode.B, null, null, null, labels.intern(label));
+    }
+
+    public MipsCode jal(String label) {
+        return emit(Opcode.JAL, null, null, null, labels.intern(label));
+    }
+
+    public MipsCode jalr(Register rs) {
+        return emit(Opcode.JALR, rs, null, null, 0);
+    }
+
+    public MipsCode jr(Register rs) {
+        return emit(Opcode.JR, rs, null, null, 0);
+    }
+
+    public MipsCode syscall() {
+        return emit(Opcode.SYSCALL, null, null, null, 0);
+    }
+}
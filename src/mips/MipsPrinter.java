@@ -0,0 +1,56 @@
+package cool.mips;
+
+// Renders MipsCode in the SPIM syntax used throughout the generated program.
+public class MipsPrinter {
+
+    public static String print(MipsCode code) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < code.size(); i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            printInstruction(out, code, i);
+        }
+        return out.toString();
+    }
+
+    public static String printInstruction(MipsCode code, int index) {
+        StringBuilder out = new StringBuilder();
+        printInstruction(out, code, index);
+        return out.toString();
+    }
+
+    private static void printInstruction(StringBuilder out, MipsCode code, int i) {
+        Opcode op = code.opcode(i);
+
+        if (op == Opcode.LABEL) {
+            out.append(code.label(i)).append(':');
+            return;
+        }
+
+        out.append("    ").append(op.getMnemonic());
+        if (op.getFormat() == Opcode.Format.NONE) {
+            return;
+        }
+        for (int pad = op.getMnemonic().length(); pad < 8; pad++) {
+            out.append(' ');
+        }
+
+        switch (op.getFormat()) {
+            case REG_LABEL -> out.append(code.reg(i, 0)).append(' ').append(code.label(i));
+            case REG_IMM -> out.append(code.reg(i, 0)).append(' ').append(code.operand(i));
+            case REG_MEM -> out.append(code.reg(i, 0)).append(' ')
+                    .append(code.operand(i)).append('(').append(code.reg(i, 1)).append(')');
+            case REG_REG -> out.append(code.reg(i, 0)).append(' ').append(code.reg(i, 1));
+            case REG_REG_REG -> out.append(code.reg(i, 0)).append(' ')
+                    .append(code.reg(i, 1)).append(' ').append(code.reg(i, 2));
+            case REG_REG_IMM -> out.append(code.reg(i, 0)).append(' ')
+                    .append(code.reg(i, 1)).append(' ').append(code.operand(i));
+            case REG_REG_LABEL -> out.append(code.reg(i, 0)).append(' ')
+                    .append(code.reg(i, 1)).append(' ').append(code.label(i));
+            case LABEL -> out.append(code.label(i));
+            case REG -> out.append(code.reg(i, 0));
+            default -> {}
+        }
+    }
+}
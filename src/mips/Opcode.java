@@ -0,0 +1,114 @@
+package cool.mips;
+
+public enum Opcode {
+    // Loads, stores and moves
+    LA("la", Format.REG_LABEL),
+    LI("li", Format.REG_IMM),
+    LW("lw", Format.REG_MEM),
+    SW("sw", Format.REG_MEM),
+    LBU("lbu", Format.REG_MEM),
+    SB("sb", Format.REG_MEM),
+    MOVE("move", Format.REG_REG),
+    NEG("neg", Format.REG_REG),
+
+    // Three register arithmetic
+    ADD("add", Format.REG_REG_REG),
+    ADDU("addu", Format.REG_REG_REG),
+    SUB("sub", Format.REG_REG_REG),
+    SUBU("subu", Format.REG_REG_REG),
+    MUL("mul", Format.REG_REG_REG),
+    DIV("div", Format.REG_REG_REG),
+    AND("and", Format.REG_REG_REG),
+    OR("or", Format.REG_REG_REG),
+    XOR("xor", Format.REG_REG_REG),
+    SLT("slt", Format.REG_REG_REG),
+    SLTU("sltu", Format.REG_REG_REG),
+    SEQ("seq", Format.REG_REG_REG),
+    SLE("sle", Format.REG_REG_REG),
+
+    // Register and immediate arithmetic
+    ADDI("addi", Format.REG_REG_IMM),
+    ADDIU("addiu", Format.REG_REG_IMM),
+    ANDI("andi", Format.REG_REG_IMM),
+    ORI("ori", Format.REG_REG_IMM),
+    XORI("xori", Format.REG_REG_IMM),
+    SLTI("slti", Format.REG_REG_IMM),
+    SLL("sll", Format.REG_REG_IMM),
+    SRL("srl", Format.REG_REG_IMM),
+    SRA("sra", Format.REG_REG_IMM),
+
+    // Conditional branches
+    BEQ("beq", Format.REG_REG_LABEL),
+    BNE("bne", Format.REG_REG_LABEL),
+    BLT("blt", Format.REG_REG_LABEL),
+    BLE("ble", Format.REG_REG_LABEL),
+    BGT("bgt", Format.REG_REG_LABEL),
+    BGE("bge", Format.REG_REG_LABEL),
+    BEQZ("beqz", Format.REG_LABEL),
+    BNEZ("bnez", Format.REG_LABEL),
+    BLTZ("bltz", Format.REG_LABEL),
+
+    // Jumps and calls
+    B("b", Format.LABEL),
+    JAL("jal", Format.LABEL),
+    JALR("jalr", Format.REG),
+    JR("jr", Format.REG),
+    SYSCALL("syscall", Format.NONE),
+
+    // Pseudo instruction marking a label definition
+    LABEL("", Format.LABEL_DEF);
+
+    public enum Format {
+        REG_LABEL, REG_IMM, REG_MEM, REG_REG, REG_REG_REG, REG_REG_IMM,
+        REG_REG_LABEL, LABEL, REG, LABEL_DEF, NONE
+    }
+
+    private static final Opcode[] BY_ORDINAL = values();
+
+    private final String mnemonic;
+    private final Format format;
+
+    Opcode(String mnemonic, Format format) {
+        this.mnemonic = mnemonic;
+        this.format = format;
+    }
+
+    public static Opcode fromOrdinal(int ordinal) {
+        return BY_ORDINAL[ordinal];
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public boolean isConditionalBranch() {
+        return format == Format.REG_REG_LABEL || this == BEQZ || this == BNEZ || this == BLTZ;
+    }
+
+    public boolean isCall() {
+        return this == JAL || this == JALR;
+    }
+
+    // Instructions after which control never falls through to the next one.
+    public boolean isUnconditionalJump() {
+        return this == B || this == JR;
+    }
+
+    // True when the first register operand is the destination.
+    public boolean writesRegister() {
+        return switch (format) {
+            case REG_LABEL, REG_IMM, REG_MEM, REG_REG, REG_REG_REG, REG_REG_IMM ->
+                    this != SW && this != SB && this != BEQZ && this != BNEZ && this != BLTZ;
+            default -> false;
+        };
+    }
+
+    public boolean hasLabelOperand() {
+        return format == Format.REG_LABEL || format == Format.REG_REG_LABEL
+                || format == Format.LABEL || format == Format.LABEL_DEF;
+    }
+}
@@ -0,0 +1,23 @@
+package cool.mips;
+
+// MIPS general purpose registers, declared in hardware order so that
+// ordinal() is the register number used in the instruction encoding.
+public enum Register {
+    ZERO, AT, V0, V1, A0, A1, A2, A3,
+    T0, T1, T2, T3, T4, T5, T6, T7,
+    S0, S1, S2, S3, S4, S5, S6, S7,
+    T8, T9, K0, K1, GP, SP, FP, RA;
+
+    private static final Register[] BY_NUMBER = values();
+
+    private final String asm_name = "$" + name().toLowerCase();
+
+    public static Register fromNumber(int number) {
+        return BY_NUMBER[number];
+    }
+
+    @Override
+    public String toString() {
+        return asm_name;
+    }
+}
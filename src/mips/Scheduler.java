@@ -0,0 +1,198 @@
+package cool.mips;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Reorders the instructions of each basic block so that the instruction
+ * after a load does not read the register it loaded. On the R2000 and
+ * R3000 a loaded value is not ready for the next instruction: a pipeline
+ * with interlocks stalls LOAD_DELAY cycles, and for one without them the
+ * assembler puts a nop in between.
+ *
+ * Calls, syscalls, branches and jumps stay in place and end the region
+ * of instructions scheduled together. Within a region an instruction
+ * stays after the ones whose registers it reads or writes. A load or
+ * store also stays after the stores, and a store after the loads, that
+ * may touch the same bytes. Two accesses are apart only when they use the
+ * same base register, unchanged between them, at offsets that do not
+ * overlap.
+ *
+ * Instructions are listed one at a time. The one preferred does not read
+ * the register loaded just before, then has the longest path of
+ * dependences to the end of the region, counting LOAD_DELAY more after a
+ * load, then came first.
+ */
+public class Scheduler {
+    private static final int LOAD_DELAY = 1;
+
+    private int routines = 0;
+    private int regions = 0;
+    private int moved = 0;
+    private int stalls_before = 0;
+    private int stalls_after = 0;
+
+    private static int bit(Register reg) {
+        return reg == Register.ZERO ? 0 : 1 << reg.ordinal();
+    }
+
+    private static boolean isLoad(Opcode op) {
+        return op == Opcode.LW || op == Opcode.LBU;
+    }
+
+    private static boolean isStore(Opcode op) {
+        return op == Opcode.SW || op == Opcode.SB;
+    }
+
+    // Instructions nothing is moved across
+    private static boolean isBarrier(Opcode op) {
+        return op.isCall() || op == Opcode.SYSCALL || op.isConditionalBranch() || op.isUnconditionalJump();
+    }
+
+    static int reads(MipsCode code, int i) {
+        Opcode op = code.opcode(i);
+        return switch (op.getFormat()) {
+            case REG_LABEL -> op == Opcode.LA ? 0 : bit(code.reg(i, 0));
+            case REG_MEM -> bit(code.reg(i, 1)) | (isStore(op) ? bit(code.reg(i, 0)) : 0);
+            case REG_REG, REG_REG_IMM -> bit(code.reg(i, 1));
+            case REG_REG_REG -> bit(code.reg(i, 1)) | bit(code.reg(i, 2));
+            case REG_REG_LABEL -> bit(code.reg(i, 0)) | bit(code.reg(i, 1));
+            case REG -> bit(code.reg(i, 0));
+            default -> 0;
+        };
+    }
+
+    static int writes(MipsCode code, int i) {
+        return code.opcode(i).writesRegister() ? bit(code.reg(i, 0)) : 0;
+    }
+
+    // Load-use stalls of code run straight through; labels take no cycle
+    public static int stalls(MipsCode code) {
+        int stalls = 0;
+        int loaded = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Opcode op = code.opcode(i);
+            if (op == Opcode.LABEL) continue;
+            if ((reads(code, i) & loaded) != 0) {
+                stalls += LOAD_DELAY;
+            }
+            loaded = isLoad(op) ? writes(code, i) : 0;
+        }
+        return stalls;
+    }
+
+    public MipsCode schedule(MipsCode code) {
+        routines++;
+        MipsCode scheduled = new MipsCode(code.getLabels());
+        int loaded = 0;
+        for (BasicBlock block : new ControlFlowGraph(code).getBlocks()) {
+            int start = block.getStart();
+            if (code.opcode(start) == Opcode.LABEL) {
+                scheduled.appendFrom(code, start++);
+            }
+            for (int i = start; i < block.getEnd(); i++) {
+                if (isBarrier(code.opcode(i))) {
+                    loaded = schedule(code, start, i + 1, loaded, scheduled);
+                    start = i + 1;
+                }
+            }
+            loaded = schedule(code, start, block.getEnd(), loaded, scheduled);
+        }
+        stalls_before += stalls(code);
+        stalls_after += stalls(scheduled);
+        return scheduled;
+    }
+
+    // Whether the loads or stores a and b, made with versions of their base registers, may overlap
+    private static boolean mayAlias(MipsCode code, int a, int a_version, int b, int b_version) {
+        if (code.reg(a, 1) != code.reg(b, 1) || a_version != b_version) return true;
+        int a_end = code.operand(a) + (code.opcode(a) == Opcode.LW || code.opcode(a) == Opcode.SW ? 4 : 1);
+        int b_end = code.operand(b) + (code.opcode(b) == Opcode.LW || code.opcode(b) == Opcode.SW ? 4 : 1);
+        return code.operand(a) < b_end && code.operand(b) < a_end;
+    }
+
+    // Lists instructions [start, end) into scheduled after the one that loaded the registers in loaded
+    private int schedule(MipsCode code, int start, int end, int loaded, MipsCode scheduled) {
+        int n = end - start;
+        if (n == 0) return loaded;
+        regions++;
+
+        int[] reads = new int[n];
+        int[] writes = new int[n];
+        // Writes to the base register of each load and store before it in the region
+        int[] versions = new int[n];
+        int[] written = new int[32];
+        for (int i = 0; i < n; i++) {
+            reads[i] = reads(code, start + i);
+            writes[i] = writes(code, start + i);
+            Opcode op = code.opcode(start + i);
+            if (isLoad(op) || isStore(op)) {
+                versions[i] = written[code.reg(start + i, 1).ordinal()];
+            }
+            for (int r = 0; r < 32; r++) {
+                if ((writes[i] & (1 << r)) != 0) written[r]++;
+            }
+        }
+
+        // Successors of each instruction, with the cycles between them
+        List<List<int[]>> succs = new ArrayList<>();
+        int[] preds = new int[n];
+        for (int i = 0; i < n; i++) {
+            succs.add(new ArrayList<>());
+        }
+        for (int j = 0; j < n; j++) {
+            Opcode later = code.opcode(start + j);
+            for (int i = 0; i < j; i++) {
+                Opcode earlier = code.opcode(start + i);
+                boolean memory = (isStore(earlier) && (isLoad(later) || isStore(later)))
+                        || (isLoad(earlier) && isStore(later));
+                boolean depends = isBarrier(later)
+                        || (writes[i] & reads[j]) != 0 || (reads[i] & writes[j]) != 0 || (writes[i] & writes[j]) != 0
+                        || (memory && mayAlias(code, start + i, versions[i], start + j, versions[j]));
+                if (!depends) continue;
+                int cycles = isLoad(earlier) && (writes[i] & reads[j]) != 0 ? 1 + LOAD_DELAY : 1;
+                succs.get(i).add(new int[] {j, cycles});
+                preds[j]++;
+            }
+        }
+
+        // Longest path from each instruction to the end of the region
+        int[] height = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int[] succ : succs.get(i)) {
+                height[i] = Math.max(height[i], succ[1] + height[succ[0]]);
+            }
+        }
+
+        boolean[] done = new boolean[n];
+        for (int position = 0; position < n; position++) {
+            int best = -1;
+            boolean best_stalls = true;
+            for (int i = 0; i < n; i++) {
+                if (done[i] || preds[i] > 0) continue;
+                boolean stalls = (reads[i] & loaded) != 0;
+                if (best < 0 || (best_stalls && !stalls) || (best_stalls == stalls && height[i] > height[best])) {
+                    best = i;
+                    best_stalls = stalls;
+                }
+            }
+            done[best] = true;
+            for (int[] succ : succs.get(best)) {
+                preds[succ[0]]--;
+            }
+            scheduled.appendFrom(code, start + best);
+            loaded = isLoad(code.opcode(start + best)) ? writes[best] : 0;
+            if (best != position) {
+                moved++;
+            }
+        }
+        return loaded;
+    }
+
+    public void printReport(PrintStream out) {
+        if (routines == 0) return;
+        out.println("scheduling: " + stalls_before + " load-use stalls before, " + stalls_after + " after, "
+                + moved + " instructions moved in " + regions + " regions of " + routines + " routines");
+    }
+}
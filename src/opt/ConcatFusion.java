@@ -0,0 +1,148 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Rewrites concat dispatches on String receivers into CONCAT instructions
+ * and fuses chains of them: a CONCAT whose only use is as a part of
+ * another one is spliced into it, so a.concat(b).concat(c).concat(d)
+ * allocates one String instead of three. Neighbouring literal parts are
+ * joined into one str_const, and a CONCAT made only of literals becomes
+ * the constant itself.
+ */
+public class ConcatFusion implements Pass {
+    private final ProgramLayout layout;
+    private int fused = 0;
+    private int folded = 0;
+
+    public ConcatFusion(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "concat-fusion";
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = false;
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                if (instr.isStringCall("concat")) {
+                    instr.op = IROp.CONCAT;
+                    instr.label = null;
+                    instr.imm = 0;
+                    changed = true;
+                }
+            }
+        }
+
+        Map<IRInstr, List<IRInstr>> uses = function.computeUses();
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : new ArrayList<>(block.instrs)) {
+                if (instr.op == IROp.CONCAT) {
+                    changed |= splice(instr, uses);
+                    changed |= foldLiterals(instr);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean splice(IRInstr concat, Map<IRInstr, List<IRInstr>> uses) {
+        boolean changed = false;
+        for (int i = 0; i < concat.args.size(); i++) {
+            IRInstr part = concat.arg(i);
+            if (part.op != IROp.CONCAT || uses.getOrDefault(part, List.of()).size() != 1) continue;
+
+            concat.args.remove(i);
+            concat.args.addAll(i, part.args);
+            for (IRInstr inner : part.args) {
+                // Literals made by foldLiterals are not in the map yet
+                List<IRInstr> inner_uses = uses.computeIfAbsent(inner, k -> new ArrayList<>());
+                inner_uses.remove(part);
+                inner_uses.add(concat);
+            }
+            // Re-examine the spliced parts, which may be chains themselves
+            i--;
+            fused++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    private String literal(IRInstr part) {
+        return part.op == IROp.GLOBAL && "String".equals(part.type) ? layout.stringValue(part.label) : null;
+    }
+
+    private IRInstr stringConstant(IRInstr position, String value) {
+        IRInstr constant = new IRInstr(IROp.GLOBAL, IRInstr.Kind.REF);
+        constant.label = layout.stringConstant(value);
+        constant.type = "String";
+        position.block.insertBefore(position, constant);
+        return constant;
+    }
+
+    private boolean foldLiterals(IRInstr concat) {
+        List<IRInstr> parts = new ArrayList<>();
+        List<IRInstr> run = new ArrayList<>();
+        boolean changed = false;
+
+        for (IRInstr part : concat.args) {
+            if (literal(part) != null) {
+                run.add(part);
+                continue;
+            }
+            changed |= endRun(concat, parts, run);
+            parts.add(part);
+        }
+        changed |= endRun(concat, parts, run);
+
+        if (!changed) return false;
+        folded++;
+
+        if (parts.isEmpty()) {
+            concat.become(IROp.GLOBAL);
+            concat.label = layout.stringConstant("");
+        } else if (parts.size() == 1 && parts.getFirst().op == IROp.GLOBAL) {
+            concat.become(IROp.GLOBAL);
+            concat.label = parts.getFirst().label;
+        } else if (parts.size() == 1) {
+            // Strings are immutable and compared by contents, so the part itself will do
+            concat.become(IROp.COPY, parts.getFirst());
+        } else {
+            concat.args.clear();
+            concat.args.addAll(parts);
+        }
+        return true;
+    }
+
+    // Moves a run of literal parts to parts, joining it when that changes anything
+    private boolean endRun(IRInstr concat, List<IRInstr> parts, List<IRInstr> run) {
+        if (run.isEmpty()) return false;
+
+        StringBuilder text = new StringBuilder();
+        for (IRInstr part : run) {
+            text.append(literal(part));
+        }
+        boolean changed = run.size() > 1 || text.isEmpty();
+        if (!changed) {
+            parts.add(run.getFirst());
+        } else if (!text.isEmpty()) {
+            parts.add(stringConstant(concat, text.toString()));
+        }
+        run.clear();
+        return changed;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (fused + folded == 0) return;
+        out.println("concat fusion: " + fused + " concatenations fused into their users, "
+                + folded + " with literal parts folded");
+    }
+}
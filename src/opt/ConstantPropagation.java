@@ -0,0 +1,321 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.util.*;
+
+/*
+ * Sparse conditional constant propagation (Wegman and Zadeck). Tracks raw
+ * Int and Bool values as well as references known to be a boxed constant,
+ * and only follows the branches that can actually be taken. Folding never
+ * hides a trap: overflowing arithmetic and division by zero stay in place.
+ */
+public class ConstantPropagation implements Pass {
+    private final ProgramLayout layout;
+
+    // Lattice value: TOP (undetermined), a constant, or BOTTOM (varies)
+    private static final class Cell {
+        static final Cell TOP = new Cell(0, 0, null);
+        static final Cell BOTTOM = new Cell(2, 0, null);
+
+        final int state;
+        final int value;
+        // "Int" or "Bool" for a constant object, null for a raw value
+        final String box;
+
+        Cell(int state, int value, String box) {
+            this.state = state;
+            this.value = value;
+            this.box = box;
+        }
+
+        static Cell of(int value, String box) {
+            return new Cell(1, value, box);
+        }
+
+        boolean isConst() {
+            return state == 1;
+        }
+
+        boolean sameAs(Cell other) {
+            return state == other.state && value == other.value && Objects.equals(box, other.box);
+        }
+    }
+
+    private interface Fold {
+        int apply(int a, int b);
+    }
+
+    private Map<IRInstr, Cell> cells;
+    private Set<IRBlock> reachable;
+    private Map<IRBlock, Set<IRBlock>> executable;
+    private Map<IRInstr, List<IRInstr>> uses;
+    private Deque<IRBlock[]> flow_work;
+    private Deque<IRInstr> ssa_work;
+
+    public ConstantPropagation(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "constant-propagation";
+    }
+
+    private Cell cell(IRInstr instr) {
+        return cells.getOrDefault(instr, Cell.TOP);
+    }
+
+    private static Cell meet(Cell a, Cell b) {
+        if (a.state == 0) return b;
+        if (b.state == 0) return a;
+        return a.sameAs(b) ? a : Cell.BOTTOM;
+    }
+
+    private boolean isExecutable(IRBlock from, IRBlock to) {
+        Set<IRBlock> targets = executable.get(from);
+        return targets != null && targets.contains(to);
+    }
+
+    private void markEdge(IRBlock from, IRBlock to) {
+        if (executable.computeIfAbsent(from, k -> new HashSet<>()).add(to)) {
+            flow_work.add(new IRBlock[] { from, to });
+        }
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        cells = new HashMap<>();
+        reachable = new HashSet<>();
+        executable = new HashMap<>();
+        uses = function.computeUses();
+        flow_work = new ArrayDeque<>();
+        ssa_work = new ArrayDeque<>();
+
+        reachable.add(function.entry);
+        function.entry.instrs.forEach(this::evaluate);
+
+        while (!flow_work.isEmpty() || !ssa_work.isEmpty()) {
+            while (!flow_work.isEmpty()) {
+                IRBlock to = flow_work.poll()[1];
+                if (reachable.add(to)) {
+                    to.instrs.forEach(this::evaluate);
+                } else {
+                    to.getPhis().forEach(this::evaluate);
+                }
+            }
+            while (!ssa_work.isEmpty()) {
+                IRInstr instr = ssa_work.poll();
+                if (instr.block != null && reachable.contains(instr.block)) {
+                    evaluate(instr);
+                }
+            }
+        }
+
+        return rewrite(function);
+    }
+
+    private void evaluate(IRInstr instr) {
+        if (instr.op.isTerminator()) {
+            evaluateTerminator(instr);
+            return;
+        }
+        if (!instr.hasValue()) return;
+
+        Cell old_cell = cell(instr);
+        if (old_cell.state == 2) return;
+        Cell new_cell = meet(old_cell, compute(instr));
+        if (!new_cell.sameAs(old_cell)) {
+            cells.put(instr, new_cell);
+            ssa_work.addAll(uses.getOrDefault(instr, List.of()));
+        }
+    }
+
+    private void evaluateTerminator(IRInstr instr) {
+        IRBlock block = instr.block;
+        switch (instr.op) {
+            case JUMP -> markEdge(block, instr.targets.getFirst());
+            case BRANCH -> {
+                Cell condition = cell(instr.arg(0));
+                if (condition.isConst()) {
+                    markEdge(block, instr.targets.get(condition.value != 0 ? 0 : 1));
+                } else if (condition.state == 2) {
+                    markEdge(block, instr.targets.get(0));
+                    markEdge(block, instr.targets.get(1));
+                }
+            }
+            default -> { }
+        }
+    }
+
+    private Cell compute(IRInstr instr) {
+        switch (instr.op) {
+            case CONST:
+                return Cell.of(instr.imm, null);
+            case GLOBAL:
+                if ("Int".equals(instr.type) || "Bool".equals(instr.type)) {
+                    return Cell.of(instr.imm, instr.type);
+                }
+                return Cell.BOTTOM;
+            case COPY:
+                return cell(instr.arg(0));
+            case PHI: {
+                Cell result = Cell.TOP;
+                List<IRBlock> preds = instr.block.preds;
+                for (int i = 0; i < preds.size(); i++) {
+                    if (isExecutable(preds.get(i), instr.block)) {
+                        result = meet(result, cell(instr.arg(i)));
+                    }
+                }
+                return result;
+            }
+            case BOX_INT:
+            case BOX_BOOL: {
+                Cell value = cell(instr.arg(0));
+                if (!value.isConst()) return value;
+                return Cell.of(value.value, instr.op == IROp.BOX_INT ? "Int" : "Bool");
+            }
+            case UNBOX_INT:
+            case UNBOX_BOOL: {
+                Cell object = cell(instr.arg(0));
+                if (!object.isConst()) return object;
+                return object.box != null ? Cell.of(object.value, null) : Cell.BOTTOM;
+            }
+            case ADD:
+                return fold(instr, Math::addExact);
+            case SUB:
+                return fold(instr, Math::subtractExact);
+            case MUL:
+                return fold(instr, Math::multiplyExact);
+            case DIV:
+                return fold(instr, (a, b) -> {
+                    if (b == 0 || (a == Integer.MIN_VALUE && b == -1)) {
+                        throw new ArithmeticException();
+                    }
+                    return a / b;
+                });
+            case ADDU:
+                return fold(instr, (a, b) -> a + b);
+            case SUBU:
+                return fold(instr, (a, b) -> a - b);
+            case SHL:
+            case SRA:
+            case SRL: {
+                Cell value = cell(instr.arg(0));
+                if (!value.isConst()) return value;
+                int bits = instr.imm;
+                return Cell.of(instr.op == IROp.SHL ? value.value << bits
+                        : instr.op == IROp.SRA ? value.value >> bits : value.value >>> bits, null);
+            }
+            case LT:
+                return fold(instr, (a, b) -> a < b ? 1 : 0);
+            case LE:
+                return fold(instr, (a, b) -> a <= b ? 1 : 0);
+            case EQ:
+                return fold(instr, (a, b) -> a == b ? 1 : 0);
+            case NEG: {
+                Cell value = cell(instr.arg(0));
+                if (!value.isConst()) return value;
+                if (value.value == Integer.MIN_VALUE) return Cell.BOTTOM;
+                return Cell.of(-value.value, null);
+            }
+            case NOT: {
+                Cell value = cell(instr.arg(0));
+                return value.isConst() ? Cell.of(value.value == 0 ? 1 : 0, null) : value;
+            }
+            case IS_VOID: {
+                switch (instr.arg(0).op) {
+                    case VOID: return Cell.of(1, null);
+                    case SELF, GLOBAL, NEW, NEW_FRAME, NEW_SELF, BOX_INT, BOX_BOOL, CONCAT: return Cell.of(0, null);
+                    default: break;
+                }
+                Cell value = cell(instr.arg(0));
+                if (value.isConst()) return Cell.of(0, null);
+                return value.state == 0 ? Cell.TOP : Cell.BOTTOM;
+            }
+            case EQUALS: {
+                Cell a = cell(instr.arg(0));
+                Cell b = cell(instr.arg(1));
+                if (a.state == 0 || b.state == 0) return Cell.TOP;
+                if (a.isConst() && b.isConst() && a.box != null && b.box != null) {
+                    return Cell.of(a.sameAs(b) ? 1 : 0, "Bool");
+                }
+                return Cell.BOTTOM;
+            }
+            default:
+                return Cell.BOTTOM;
+        }
+    }
+
+    private Cell fold(IRInstr instr, Fold fold) {
+        Cell a = cell(instr.arg(0));
+        Cell b = cell(instr.arg(1));
+        if (a.state == 2 || b.state == 2) return Cell.BOTTOM;
+        if (a.state == 0 || b.state == 0) return Cell.TOP;
+        try {
+            return Cell.of(fold.apply(a.value, b.value), null);
+        } catch (ArithmeticException e) {
+            return Cell.BOTTOM;
+        }
+    }
+
+    private boolean rewrite(IRFunction function) {
+        boolean changed = false;
+
+        for (IRBlock block : function.blocks) {
+            if (!reachable.contains(block)) continue;
+            boolean moved_phi = false;
+
+            for (IRInstr instr : block.instrs) {
+                Cell value = cells.get(instr);
+                if (value == null || !value.isConst() || instr.hasSideEffects()) continue;
+                if (instr.op == IROp.CONST || instr.op == IROp.GLOBAL) continue;
+
+                moved_phi |= instr.op == IROp.PHI;
+                if (value.box == null) {
+                    instr.becomeConst(value.value);
+                } else if (value.box.equals("Int")) {
+                    instr.become(IROp.GLOBAL);
+                    instr.label = layout.intConstant(value.value);
+                    instr.imm = value.value;
+                    instr.type = "Int";
+                } else {
+                    instr.become(IROp.GLOBAL);
+                    instr.label = value.value != 0 ? "bool_const1" : "bool_const0";
+                    instr.imm = value.value;
+                    instr.type = "Bool";
+                }
+                changed = true;
+            }
+
+            // Folded phis are no longer phis; keep the real ones at the top
+            if (moved_phi) {
+                List<IRInstr> reordered = new ArrayList<>();
+                for (IRInstr instr : block.instrs) {
+                    if (instr.op == IROp.PHI) reordered.add(instr);
+                }
+                for (IRInstr instr : block.instrs) {
+                    if (instr.op != IROp.PHI) reordered.add(instr);
+                }
+                block.instrs.clear();
+                block.instrs.addAll(reordered);
+            }
+
+            IRInstr term = block.getTerminator();
+            if (term != null && term.op == IROp.BRANCH && cell(term.arg(0)).isConst()) {
+                IRBlock taken = term.targets.get(cell(term.arg(0)).value != 0 ? 0 : 1);
+                IRBlock dropped = term.targets.get(cell(term.arg(0)).value != 0 ? 1 : 0);
+                if (dropped != taken) {
+                    dropped.removePredecessor(block);
+                }
+                term.become(IROp.JUMP);
+                term.targets.clear();
+                term.targets.add(taken);
+                changed = true;
+            }
+        }
+
+        changed |= function.removeUnreachableBlocks();
+        return changed;
+    }
+}
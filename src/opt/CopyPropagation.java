@@ -0,0 +1,76 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.util.*;
+
+/*
+ * Forwards copies to their users. Also removes phis whose operands are all
+ * the same value (or the phi itself) and unbox(box(x)) round trips.
+ */
+public class CopyPropagation implements Pass {
+    @Override
+    public String getName() {
+        return "copy-propagation";
+    }
+
+    // The value an instruction can be replaced with, or null
+    private IRInstr forward(IRInstr instr) {
+        switch (instr.op) {
+            case COPY:
+                return instr.arg(0);
+            case PHI: {
+                IRInstr same = null;
+                for (IRInstr arg : instr.args) {
+                    if (arg == instr || arg == same) continue;
+                    if (same != null) return null;
+                    same = arg;
+                }
+                return same;
+            }
+            case UNBOX_INT:
+                return instr.arg(0).op == IROp.BOX_INT ? instr.arg(0).arg(0) : null;
+            case UNBOX_BOOL:
+                return instr.arg(0).op == IROp.BOX_BOOL ? instr.arg(0).arg(0) : null;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = false;
+
+        while (true) {
+            Map<IRInstr, IRInstr> replacements = new HashMap<>();
+            for (IRBlock block : function.blocks) {
+                for (IRInstr instr : block.instrs) {
+                    IRInstr target = forward(instr);
+                    if (target != null) target = resolve(target, replacements);
+                    // A cycle of copies and phis with no outside value is left alone
+                    if (target != null && target != instr) {
+                        replacements.put(instr, target);
+                    }
+                }
+            }
+            if (replacements.isEmpty()) break;
+
+            for (IRBlock block : function.blocks) {
+                block.instrs.removeIf(replacements::containsKey);
+                for (IRInstr instr : block.instrs) {
+                    instr.args.replaceAll(arg -> resolve(arg, replacements));
+                }
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private IRInstr resolve(IRInstr value, Map<IRInstr, IRInstr> replacements) {
+        IRInstr next;
+        while ((next = replacements.get(value)) != null) {
+            value = next;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,73 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Mark and sweep over SSA values: everything reachable from a side effect,
+ * an instruction that may trap or a terminator is live, the rest is
+ * dropped. An unused add that overflows still has SPIM report it. Void
+ * checks on values that can never be void are not counted as side effects.
+ */
+public class DeadCodeElimination implements Pass {
+    // Instructions removed from each routine
+    private final Map<String, Integer> removed = new LinkedHashMap<>();
+
+    @Override
+    public String getName() {
+        return "dead-code-elimination";
+    }
+
+    static boolean isNeverVoid(IRInstr value) {
+        return switch (value.op) {
+            case SELF, GLOBAL, NEW, NEW_FRAME, NEW_SELF, BOX_INT, BOX_BOOL, EQUALS, CONCAT -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isRoot(IRInstr instr) {
+        if (instr.op == IROp.CHECK_DISPATCH_VOID || instr.op == IROp.CHECK_CASE_VOID) {
+            return !isNeverVoid(instr.arg(0));
+        }
+        return instr.op.isTerminator() || instr.hasSideEffects() || instr.mayTrap();
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        int before = function.instructionCount();
+        boolean changed = function.removeUnreachableBlocks();
+
+        Set<IRInstr> live = new HashSet<>();
+        Deque<IRInstr> work = new ArrayDeque<>();
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                if (isRoot(instr) && live.add(instr)) {
+                    work.add(instr);
+                }
+            }
+        }
+        while (!work.isEmpty()) {
+            for (IRInstr arg : work.poll().args) {
+                if (live.add(arg)) {
+                    work.add(arg);
+                }
+            }
+        }
+
+        for (IRBlock block : function.blocks) {
+            changed |= block.instrs.removeIf(instr -> !live.contains(instr));
+        }
+        if (before > function.instructionCount()) {
+            removed.merge(function.label, before - function.instructionCount(), Integer::sum);
+        }
+        return changed;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (removed.isEmpty()) return;
+        out.println("dead code: " + DeadStoreElimination.describe(removed));
+    }
+}
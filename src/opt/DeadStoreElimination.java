@@ -0,0 +1,174 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Removes attribute stores nothing can observe. Attributes are only read
+ * and written through self, so a store to self is dead when every path
+ * from it stores to the same offset again before reading it, calling
+ * anything or returning. This is found backwards over the blocks, from
+ * the set of offsets each block is sure to overwrite before a read.
+ *
+ * An init routine starts from a copy of its class's prototype, so until
+ * it stores to an attribute or calls anything the attribute still holds
+ * its prototype word. A store of that same word there, as a default
+ * initializer such as x : Int <- 0 makes, changes nothing either.
+ *
+ * Dead values and discarded pure expressions are left to
+ * dead-code-elimination, which also drops what the removed stores used.
+ */
+public class DeadStoreElimination implements Pass {
+    private final ProgramLayout layout;
+    // Stores removed in each routine
+    private final Map<String, Integer> overwritten = new LinkedHashMap<>();
+    private final Map<String, Integer> defaults = new LinkedHashMap<>();
+
+    public DeadStoreElimination(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "dead-store-elimination";
+    }
+
+    // Instructions that may run code reading self's attributes
+    private static boolean readsAttributes(IRInstr instr) {
+        return switch (instr.op) {
+            case DISPATCH, STATIC_DISPATCH, NEW_SELF -> true;
+            case NEW, NEW_FRAME -> instr.imm != 0;
+            default -> false;
+        };
+    }
+
+    private static boolean isSelfStore(IRInstr instr) {
+        return instr.op == IROp.SET_ATTR && instr.arg(0).op == IROp.SELF;
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = removeDefaults(function);
+        changed |= removeOverwritten(function);
+        return changed;
+    }
+
+    // Whether value is the word the prototype holds
+    private boolean isPrototypeWord(IRInstr value, String word) {
+        if (word == null) return false;
+        return switch (value.op) {
+            case GLOBAL -> word.equals(value.label);
+            case CONST, VOID -> word.equals("0") && value.imm == 0;
+            default -> false;
+        };
+    }
+
+    private boolean removeDefaults(IRFunction function) {
+        if (!function.label.equals(function.className + "_init")) return false;
+
+        Set<Integer> written = new HashSet<>();
+        List<IRInstr> dead = new ArrayList<>();
+        for (IRInstr instr : function.entry.instrs) {
+            if (isSelfStore(instr)) {
+                if (!written.contains(instr.imm)
+                        && isPrototypeWord(instr.arg(1), layout.prototypeWord(function.className, instr.imm))) {
+                    dead.add(instr);
+                }
+                written.add(instr.imm);
+            } else if (instr.mayWriteMemory() || readsAttributes(instr)) {
+                break;
+            }
+        }
+        function.entry.instrs.removeAll(dead);
+        count(defaults, function, dead.size());
+        return !dead.isEmpty();
+    }
+
+    private boolean removeOverwritten(IRFunction function) {
+        Set<Integer> offsets = new HashSet<>();
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                if (isSelfStore(instr)) {
+                    offsets.add(instr.imm);
+                }
+            }
+        }
+        if (offsets.isEmpty()) return false;
+
+        // Offsets each block overwrites before reading, starting from all of them
+        List<IRBlock> order = function.reversePostorder();
+        Map<IRBlock, Set<Integer>> dead_in = new HashMap<>();
+        for (IRBlock block : order) {
+            dead_in.put(block, new HashSet<>(offsets));
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IRBlock block : order.reversed()) {
+                Set<Integer> dead = transfer(block, deadOut(block, dead_in), null);
+                changed |= !dead.equals(dead_in.put(block, dead));
+            }
+        }
+
+        List<IRInstr> removed = new ArrayList<>();
+        for (IRBlock block : order) {
+            transfer(block, deadOut(block, dead_in), removed);
+        }
+        for (IRInstr store : removed) {
+            store.block.instrs.remove(store);
+        }
+        count(overwritten, function, removed.size());
+        return !removed.isEmpty();
+    }
+
+    private static Set<Integer> deadOut(IRBlock block, Map<IRBlock, Set<Integer>> dead_in) {
+        List<IRBlock> succs = block.getSuccessors();
+        if (succs.isEmpty()) return new HashSet<>();
+        Set<Integer> dead = new HashSet<>(dead_in.get(succs.getFirst()));
+        for (IRBlock succ : succs) {
+            dead.retainAll(dead_in.get(succ));
+        }
+        return dead;
+    }
+
+    // Walks block backwards from the offsets dead at its end, adding the dead stores to removed
+    private static Set<Integer> transfer(IRBlock block, Set<Integer> dead, List<IRInstr> removed) {
+        for (IRInstr instr : block.instrs.reversed()) {
+            if (isSelfStore(instr)) {
+                if (removed != null && dead.contains(instr.imm)) {
+                    removed.add(instr);
+                }
+                dead.add(instr.imm);
+            } else if (instr.op == IROp.GET_ATTR) {
+                dead.remove(instr.imm);
+            } else if (readsAttributes(instr)) {
+                dead.clear();
+            }
+        }
+        return dead;
+    }
+
+    private static void count(Map<String, Integer> counts, IRFunction function, int removed) {
+        if (removed > 0) {
+            counts.merge(function.label, removed, Integer::sum);
+        }
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (!overwritten.isEmpty()) {
+            out.println("dead stores: " + describe(overwritten));
+        }
+        if (!defaults.isEmpty()) {
+            out.println("default initializers dropped: " + describe(defaults));
+        }
+    }
+
+    static String describe(Map<String, Integer> counts) {
+        StringJoiner joiner = new StringJoiner(", ");
+        counts.forEach((routine, removed) -> joiner.add(routine + " " + removed));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package cool.opt;
+
+import cool.codegen.StringRuntime;
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Moves objects that cannot outlive the routine creating them from the
+ * heap into its frame. An object escapes when it is returned, stored in
+ * an attribute, passed as an argument, merged by a phi or handed to a
+ * runtime routine. Using it as the receiver of a call is fine when the
+ * routine called keeps its self to itself; if the routine may return
+ * self, the result of the call is followed as well.
+ *
+ * What each routine does with its self is found the same way, starting
+ * from the optimistic guess that no self escapes and repeating until the
+ * summaries stop changing, so recursive methods are handled. A new whose
+ * init routine lets self escape stays on the heap.
+ *
+ * A phi is never needed to reach an object from the same iteration of a
+ * loop, so a new run again by a loop can reuse its frame space: the
+ * object of the previous iteration is no longer reachable.
+ *
+ * There is nothing left to scalar-replace at this point: attributes are
+ * only read and written through self, so a new object is never the base
+ * of a GET_ATTR or SET_ATTR in the routine creating it, and an object
+ * nothing reads is already dropped by dead-code-elimination.
+ */
+public class EscapeAnalysis implements ProgramPass {
+    // Built-in routines that neither keep nor return their self
+    private static final Set<String> KEEPS_SELF = Set.of(
+            "Object.abort", "Object.type_name", "Object.copy", "IO.in_string", "IO.in_int");
+    // Built-in routines that return their self and do not keep it
+    private static final Set<String> RETURNS_SELF = Set.of("IO.out_string", StringRuntime.ROPE_OUT_STRING, "IO.out_int");
+    private static final Set<String> BASIC_CLASSES = Set.of("Int", "Bool", "String");
+
+    private final ProgramLayout layout;
+    private final Map<String, IRFunction> routines = new HashMap<>();
+    // Routines whose self may outlive the call, and those that may return it
+    private final Set<String> escaping = new HashSet<>();
+    private final Set<String> returning = new HashSet<>();
+
+    private int allocations = 0;
+    private int moved = 0;
+    private int bytes = 0;
+
+    public EscapeAnalysis(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "escape-analysis";
+    }
+
+    // What happens to a value: whether it may outlive the routine, and whether it may be returned
+    private static class Fate {
+        boolean escapes;
+        boolean returned;
+    }
+
+    @Override
+    public boolean run(List<IRFunction> functions) {
+        for (IRFunction function : functions) {
+            routines.put(function.label, function);
+        }
+        summarize(functions);
+
+        boolean changed = false;
+        for (IRFunction function : functions) {
+            Map<IRInstr, List<IRInstr>> uses = function.computeUses();
+            for (IRBlock block : function.blocks) {
+                for (IRInstr instr : block.instrs) {
+                    if (instr.op != IROp.NEW || BASIC_CLASSES.contains(instr.label)) continue;
+                    allocations++;
+                    if (instr.imm != 0 && escaping.contains(instr.label + "_init")) continue;
+
+                    Fate fate = follow(List.of(instr), uses);
+                    if (fate.escapes || fate.returned) continue;
+                    instr.op = IROp.NEW_FRAME;
+                    moved++;
+                    bytes += 4 * layout.objectSize(instr.label);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void summarize(List<IRFunction> functions) {
+        Map<IRFunction, Map<IRInstr, List<IRInstr>>> uses = new HashMap<>();
+        for (IRFunction function : functions) {
+            uses.put(function, function.computeUses());
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IRFunction function : functions) {
+                List<IRInstr> selves = new ArrayList<>();
+                for (IRBlock block : function.blocks) {
+                    for (IRInstr instr : block.instrs) {
+                        if (instr.op == IROp.SELF) {
+                            selves.add(instr);
+                        }
+                    }
+                }
+                Fate fate = follow(selves, uses.get(function));
+                if (fate.escapes) {
+                    changed |= escaping.add(function.label);
+                }
+                if (fate.returned) {
+                    changed |= returning.add(function.label);
+                }
+            }
+        }
+    }
+
+    // Label of the routine a call on receiver reaches, or null when there may be several
+    private String target(IRInstr call) {
+        if (call.op == IROp.STATIC_DISPATCH) return call.label;
+        IRInstr receiver = call.arg(0);
+        return receiver.type == null ? null : layout.uniqueMethodLabel(receiver.type, call.label);
+    }
+
+    private boolean keepsSelf(String routine) {
+        if (routines.containsKey(routine)) return !escaping.contains(routine);
+        return KEEPS_SELF.contains(routine) || RETURNS_SELF.contains(routine);
+    }
+
+    private boolean returnsSelf(String routine) {
+        return returning.contains(routine) || RETURNS_SELF.contains(routine);
+    }
+
+    // Follows roots and every value that is the same object through their uses
+    private Fate follow(List<IRInstr> roots, Map<IRInstr, List<IRInstr>> uses) {
+        Fate fate = new Fate();
+        Set<IRInstr> aliases = new HashSet<>(roots);
+        Deque<IRInstr> work = new ArrayDeque<>(roots);
+        while (!work.isEmpty() && !fate.escapes) {
+            IRInstr value = work.poll();
+            for (IRInstr use : uses.getOrDefault(value, List.of())) {
+                switch (use.op) {
+                    case GET_ATTR, TAG, IS_VOID, EQUALS, CHECK_DISPATCH_VOID, CHECK_CASE_VOID -> { }
+                    case SET_ATTR -> fate.escapes |= use.arg(1) == value;
+                    case COPY -> {
+                        if (aliases.add(use)) {
+                            work.add(use);
+                        }
+                    }
+                    case RETURN -> fate.returned = true;
+                    case DISPATCH, STATIC_DISPATCH -> {
+                        String routine = target(use);
+                        if (use.args.lastIndexOf(value) > 0 || routine == null || !keepsSelf(routine)) {
+                            fate.escapes = true;
+                        } else if (returnsSelf(routine) && aliases.add(use)) {
+                            work.add(use);
+                        }
+                    }
+                    default -> fate.escapes = true;
+                }
+            }
+        }
+        return fate;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (allocations == 0) return;
+        out.println("escape analysis: " + moved + " of " + allocations + " allocations moved to the frame, "
+                + bytes + " bytes of frame used, " + escaping.size() + " of " + routines.size()
+                + " routines let self escape");
+    }
+}
@@ -0,0 +1,120 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.Set;
+
+/*
+ * Resolves dispatches whose target is known at compile time. A receiver
+ * has an exact type when it comes from new, is a constant or a CONCAT, is
+ * the self or a formal of a clone made for that class, or its static type
+ * has no subclasses; Int, Bool and String never do.
+ *
+ * type_name on an exact type becomes the class name's str_const. copy on
+ * an Int, Bool or String becomes the receiver itself: those objects are
+ * immutable and = compares their contents, so no program can tell the
+ * copy apart. Other dispatches that can reach only one routine call it
+ * directly instead of loading it from the dispatch table. Void receivers
+ * still abort, since the CHECK_DISPATCH_VOID in front of each call stays.
+ *
+ * Dispatches on Strings are left to the passes that know the String
+ * methods, which look for them as DISPATCH instructions.
+ */
+public class ExactTypeFolding implements Pass {
+    private static final Set<String> IMMUTABLE = Set.of("Int", "Bool", "String");
+
+    private final ProgramLayout layout;
+    private int names = 0;
+    private int copies = 0;
+    private int direct = 0;
+
+    public ExactTypeFolding(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "exact-type-folding";
+    }
+
+    // Dynamic type of a non-void value, or null when it may be a subclass of its static type
+    static String exactType(IRInstr value, ProgramLayout layout) {
+        IRFunction function = value.block == null ? null : value.block.function;
+        switch (value.op) {
+            case NEW, NEW_FRAME -> {
+                return value.label;
+            }
+            case CONCAT -> {
+                return "String";
+            }
+            case COPY -> {
+                String type = exactType(value.arg(0), layout);
+                if (type != null) return type;
+            }
+            case SELF -> {
+                if (function != null && function.exactSelf != null) return function.exactSelf;
+            }
+            case PARAM -> {
+                if (function != null && function.exactFormals != null && function.exactFormals[value.imm] != null) {
+                    return function.exactFormals[value.imm];
+                }
+            }
+            default -> {
+            }
+        }
+        if (value.type == null || layout.classTag(value.type) < 0) return null;
+        return layout.classTag(value.type) == layout.maxDescendantTag(value.type) ? value.type : null;
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = false;
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                if (instr.op == IROp.DISPATCH) {
+                    changed |= fold(instr);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean fold(IRInstr call) {
+        IRInstr receiver = call.arg(0);
+        String exact = exactType(receiver, layout);
+        String target = exact != null
+                ? layout.methodLabel(exact, call.label)
+                : receiver.type == null ? null : layout.uniqueMethodLabel(receiver.type, call.label);
+        if (target == null) return false;
+
+        if (target.equals("Object.type_name") && exact != null) {
+            call.become(IROp.GLOBAL);
+            call.label = layout.stringConstant(exact);
+            call.type = "String";
+            call.imm = 0;
+            names++;
+            return true;
+        }
+        if (target.equals("Object.copy") && exact != null && IMMUTABLE.contains(exact)) {
+            call.become(IROp.COPY, receiver);
+            call.type = exact;
+            copies++;
+            return true;
+        }
+        if ("String".equals(exact)) return false;
+
+        call.op = IROp.STATIC_DISPATCH;
+        call.label = target;
+        call.imm = 0;
+        direct++;
+        return true;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (names + copies + direct == 0) return;
+        out.println("exact types: " + names + " type_name calls folded, " + copies + " copies removed, "
+                + direct + " dispatches made direct");
+    }
+}
@@ -0,0 +1,190 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.util.*;
+
+/*
+ * Dominator-based global value numbering. A pure instruction is replaced
+ * by an identical one that dominates it. Attribute loads are numbered
+ * together with a memory epoch that changes at every attribute store or
+ * call, so a load is only reused while no write can have come between;
+ * a store also makes its value available to the loads that follow it.
+ */
+public class GlobalValueNumbering implements Pass {
+    private DominatorTree dom;
+    private Set<IRBlock> killing_blocks;
+    private Map<IRBlock, Integer> end_epoch;
+    private Map<IRInstr, IRInstr> replacements;
+    private Map<String, IRInstr> table;
+    private int next_epoch;
+
+    @Override
+    public String getName() {
+        return "global-value-numbering";
+    }
+
+    private static boolean isCommutative(IROp op) {
+        return op == IROp.ADD || op == IROp.ADDU || op == IROp.MUL || op == IROp.EQ;
+    }
+
+    private String key(IRInstr instr, int epoch) {
+        // SPIM reports an overflow and carries on, so each occurrence traps again. A
+        // division by zero or a dispatch on void aborts at the first one.
+        if (instr.mayTrap() && instr.op != IROp.DIV && instr.op != IROp.DISPATCH) {
+            return null;
+        }
+        switch (instr.op) {
+            case CONST, GLOBAL, VOID, SELF, PARAM, BOX_INT, BOX_BOOL, UNBOX_INT, UNBOX_BOOL,
+                 ADD, SUB, MUL, DIV, NEG, ADDU, SUBU, SHL, SRA, SRL,
+                 LT, LE, EQ, NOT, IS_VOID, EQUALS, CONCAT, TAG, PHI, GET_ATTR:
+                break;
+            case DISPATCH:
+                // Strings are immutable, so these only depend on their operands
+                if (instr.isStringCall("length") || instr.isStringCall("concat")
+                        || instr.isStringCall("substr")) {
+                    break;
+                }
+                return null;
+            default:
+                return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(instr.op).append(' ').append(instr.kind).append(' ').append(instr.imm);
+        sb.append(' ').append(instr.label);
+
+        int[] ids = new int[instr.args.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = instr.arg(i).id;
+        }
+        if (isCommutative(instr.op)) {
+            Arrays.sort(ids);
+        }
+        for (int id : ids) {
+            sb.append(' ').append(id);
+        }
+
+        if (instr.op == IROp.PHI) {
+            sb.append(" @").append(instr.block.id);
+        } else if (instr.op == IROp.GET_ATTR) {
+            sb.append(" #").append(epoch);
+        }
+        return sb.toString();
+    }
+
+    // Key of the load a store makes redundant; raw attributes are stored and loaded as INT or BOOL
+    private static String loadKey(IRInstr object, int offset, IRInstr.Kind kind, int epoch) {
+        return IROp.GET_ATTR + " " + kind + " " + offset + " null " + object.id + " #" + epoch;
+    }
+
+    private IRInstr resolve(IRInstr value) {
+        IRInstr next;
+        while ((next = replacements.get(value)) != null) {
+            value = next;
+        }
+        return value;
+    }
+
+    // A block may keep its dominator's memory state when no path between them writes memory.
+    private int entryEpoch(IRBlock block) {
+        IRBlock idom = dom.getIdom(block);
+        if (idom == null) return next_epoch++;
+
+        Set<IRBlock> visited = new HashSet<>();
+        Deque<IRBlock> work = new ArrayDeque<>(block.preds);
+        while (!work.isEmpty()) {
+            IRBlock current = work.poll();
+            if (current == idom || !visited.add(current)) continue;
+            if (killing_blocks.contains(current)) return next_epoch++;
+            work.addAll(current.preds);
+        }
+        return end_epoch.get(idom);
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        dom = new DominatorTree(function);
+        killing_blocks = new HashSet<>();
+        end_epoch = new HashMap<>();
+        replacements = new HashMap<>();
+        table = new HashMap<>();
+        next_epoch = 0;
+
+        for (IRBlock block : dom.getOrder()) {
+            for (IRInstr instr : block.instrs) {
+                if (instr.mayWriteMemory()) {
+                    killing_blocks.add(block);
+                    break;
+                }
+            }
+        }
+
+        // Preorder walk of the dominator tree, undoing each block's entries on the way out
+        Deque<IRBlock> stack = new ArrayDeque<>();
+        Deque<List<String>> added = new ArrayDeque<>();
+        Map<IRBlock, Iterator<IRBlock>> pending = new HashMap<>();
+        stack.push(function.entry);
+        added.push(visit(function.entry));
+        pending.put(function.entry, dom.getChildren(function.entry).iterator());
+
+        while (!stack.isEmpty()) {
+            Iterator<IRBlock> it = pending.get(stack.peek());
+            if (it.hasNext()) {
+                IRBlock child = it.next();
+                stack.push(child);
+                added.push(visit(child));
+                pending.put(child, dom.getChildren(child).iterator());
+            } else {
+                stack.pop();
+                for (String key : added.pop()) {
+                    table.remove(key);
+                }
+            }
+        }
+
+        if (replacements.isEmpty()) return false;
+
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                instr.args.replaceAll(this::resolve);
+            }
+        }
+        return true;
+    }
+
+    private List<String> visit(IRBlock block) {
+        List<String> added = new ArrayList<>();
+        int epoch = entryEpoch(block);
+
+        for (Iterator<IRInstr> it = block.instrs.iterator(); it.hasNext(); ) {
+            IRInstr instr = it.next();
+            instr.args.replaceAll(this::resolve);
+
+            if (instr.mayWriteMemory()) {
+                epoch = next_epoch++;
+                if (instr.op == IROp.SET_ATTR) {
+                    String forwarded = loadKey(instr.arg(0), instr.imm, instr.arg(1).kind, epoch);
+                    table.put(forwarded, instr.arg(1));
+                    added.add(forwarded);
+                }
+                continue;
+            }
+
+            String key = key(instr, epoch);
+            if (key == null) continue;
+
+            IRInstr existing = table.get(key);
+            if (existing != null) {
+                replacements.put(instr, existing);
+                it.remove();
+            } else {
+                table.put(key, instr);
+                added.add(key);
+            }
+        }
+
+        end_epoch.put(block, epoch);
+        return added;
+    }
+}
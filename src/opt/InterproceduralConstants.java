@@ -0,0 +1,238 @@
+package cool.opt;
+
+import cool.codegen.Memoization;
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Constant propagation across calls. Every call in the program is in the
+ * IR, so the call sites that may reach a routine are all known: its
+ * direct calls, and the dispatches whose receiver's class or one of its
+ * subclasses has the routine in its dispatch table. When all of them
+ * pass the same constant object for a formal, the routine reads that
+ * constant instead. A formal passed on unchanged by a recursive call does
+ * not stop this, since the values are found starting from the guess that
+ * each formal is a constant and weakened until the call sites agree.
+ *
+ * A routine that only direct calls reach can also stop taking formals it
+ * no longer reads: its call sites stop pushing them, and the argument is
+ * still computed for its side effects. Memoized methods are also called
+ * by their wrappers, which are not in the IR, so they are left alone.
+ */
+public class InterproceduralConstants implements ProgramPass {
+    // Lattice value of a formal passed values that differ; null means no call seen yet
+    private static final IRInstr VARIES = new IRInstr(IROp.VOID, IRInstr.Kind.REF);
+
+    private final ProgramLayout layout;
+    private final Map<IRFunction, IRInstr[]> formals = new HashMap<>();
+    private final Set<IRFunction> rewritten = new LinkedHashSet<>();
+    private int specialized = 0;
+    private int dropped = 0;
+    private final Set<String> specialized_routines = new HashSet<>();
+    private final Set<String> dropping_routines = new HashSet<>();
+
+    public InterproceduralConstants(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "interprocedural-constants";
+    }
+
+    @Override
+    public Collection<IRFunction> rewritten() {
+        return rewritten;
+    }
+
+    private static String methodName(IRFunction function) {
+        return function.label.substring(function.label.lastIndexOf('.') + 1);
+    }
+
+    // Methods whose callers are all in the IR; inits take no formals
+    private static boolean isAnalyzed(IRFunction function) {
+        return !function.label.endsWith("_init") && Memoization.method(function.label).equals(function.label);
+    }
+
+    // Whether a dispatch on a receiver of static type may run function through a dispatch table
+    private boolean mayDispatchTo(IRInstr call, IRFunction function) {
+        if (!call.label.equals(methodName(function))) return false;
+        // Clones are only reached by direct calls
+        if (!function.label.equals(layout.methodLabel(function.className, call.label))) return false;
+
+        String type = call.arg(0).type;
+        if (type == null || layout.classTag(type) < 0) return true;
+        int tag = layout.classTag(type);
+        int owner = layout.classTag(function.className);
+        if (tag <= owner && owner <= layout.maxDescendantTag(type)) return true;
+        return owner < tag && tag <= layout.maxDescendantTag(function.className)
+                && function.label.equals(layout.methodLabel(type, call.label));
+    }
+
+    @Override
+    public boolean run(List<IRFunction> functions) {
+        rewritten.clear();
+        Map<String, IRFunction> routines = new HashMap<>();
+        for (IRFunction function : functions) {
+            routines.put(function.label, function);
+        }
+
+        // Call sites reaching each routine, and the routines some dispatch reaches
+        Map<IRFunction, List<IRInstr>> callers = new HashMap<>();
+        Set<IRFunction> dispatched = new HashSet<>();
+        for (IRFunction caller : functions) {
+            for (IRBlock block : caller.blocks) {
+                for (IRInstr instr : block.instrs) {
+                    if (instr.op == IROp.STATIC_DISPATCH && routines.containsKey(instr.label)) {
+                        callers.computeIfAbsent(routines.get(instr.label), f -> new ArrayList<>()).add(instr);
+                    } else if (instr.op == IROp.DISPATCH) {
+                        for (IRFunction function : functions) {
+                            if (mayDispatchTo(instr, function)) {
+                                callers.computeIfAbsent(function, f -> new ArrayList<>()).add(instr);
+                                dispatched.add(function);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        formals.clear();
+        for (IRFunction function : functions) {
+            IRInstr[] values = new IRInstr[function.numFormals];
+            if (!isAnalyzed(function)) {
+                Arrays.fill(values, VARIES);
+            }
+            formals.put(function, values);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<IRFunction, List<IRInstr>> entry : callers.entrySet()) {
+                IRInstr[] values = formals.get(entry.getKey());
+                for (IRInstr call : entry.getValue()) {
+                    for (int i = 0; i < values.length && i + 1 < call.args.size(); i++) {
+                        IRInstr value = meet(values[i], valueOf(call.arg(i + 1)));
+                        changed |= value != values[i];
+                        values[i] = value;
+                    }
+                }
+            }
+        }
+
+        boolean any = false;
+        for (IRFunction function : functions) {
+            if (!isAnalyzed(function) || !callers.containsKey(function)) continue;
+            any |= specialize(function);
+            if (!dispatched.contains(function)) {
+                any |= dropFormals(function, callers.get(function));
+            }
+        }
+        return any;
+    }
+
+    // Constant a caller passes as an argument, VARIES, or null while its own formal is undecided
+    private IRInstr valueOf(IRInstr value) {
+        while (value.op == IROp.COPY) {
+            value = value.arg(0);
+        }
+        return switch (value.op) {
+            case GLOBAL, VOID -> value;
+            case PARAM -> formals.get(value.block.function)[value.imm];
+            default -> VARIES;
+        };
+    }
+
+    private static boolean sameConstant(IRInstr a, IRInstr b) {
+        if (a.op != b.op) return false;
+        return a.op == IROp.VOID || a.label.equals(b.label);
+    }
+
+    private static IRInstr meet(IRInstr a, IRInstr b) {
+        if (a == null) return b;
+        if (b == null || a == VARIES) return a;
+        if (b == VARIES) return VARIES;
+        return sameConstant(a, b) ? a : VARIES;
+    }
+
+    private boolean specialize(IRFunction function) {
+        IRInstr[] values = formals.get(function);
+        boolean changed = false;
+        for (IRInstr param : new ArrayList<>(function.entry.instrs)) {
+            if (param.op != IROp.PARAM) continue;
+            IRInstr value = values[param.imm];
+            if (value == null || value == VARIES) continue;
+
+            IRInstr constant = new IRInstr(value.op, value.kind);
+            constant.label = value.label;
+            constant.imm = value.imm;
+            constant.type = value.op == IROp.VOID ? param.type : value.type;
+            function.entry.insertBefore(param, constant);
+            function.replaceAllUses(param, constant);
+            function.entry.instrs.remove(param);
+            specialized++;
+            specialized_routines.add(function.label);
+            rewritten.add(function);
+            changed = true;
+        }
+        return changed;
+    }
+
+    // Stops passing the formals function no longer reads; all its callers are direct calls
+    private boolean dropFormals(IRFunction function, List<IRInstr> calls) {
+        boolean[] read = new boolean[function.numFormals];
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                if (instr.op == IROp.PARAM) {
+                    read[instr.imm] = true;
+                }
+            }
+        }
+
+        int[] renumbered = new int[function.numFormals];
+        int kept = 0;
+        for (int i = 0; i < function.numFormals; i++) {
+            renumbered[i] = read[i] ? kept++ : -1;
+        }
+        if (kept == function.numFormals) return false;
+
+        for (IRInstr call : calls) {
+            for (int i = function.numFormals - 1; i >= 0; i--) {
+                if (!read[i]) {
+                    call.args.remove(i + 1);
+                }
+            }
+            rewritten.add(call.block.function);
+        }
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : block.instrs) {
+                if (instr.op == IROp.PARAM) {
+                    instr.imm = renumbered[instr.imm];
+                }
+            }
+        }
+        if (function.exactFormals != null) {
+            String[] exact = new String[kept];
+            for (int i = 0; i < function.numFormals; i++) {
+                if (read[i]) {
+                    exact[renumbered[i]] = function.exactFormals[i];
+                }
+            }
+            function.exactFormals = exact;
+        }
+        dropped += function.numFormals - kept;
+        dropping_routines.add(function.label);
+        function.numFormals = kept;
+        return true;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (specialized + dropped == 0) return;
+        out.println("interprocedural constants: " + specialized + " formals of " + specialized_routines.size()
+                + " routines made constant, " + dropped + " formals dropped from " + dropping_routines.size()
+                + " routines");
+    }
+}
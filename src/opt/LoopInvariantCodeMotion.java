@@ -0,0 +1,110 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Hoists loop invariant computations into the block that jumps into the
+ * loop. An instruction is invariant when its operands are defined outside
+ * the loop or are invariant themselves; attribute loads also need a loop
+ * that never writes memory. Operations that can trap (overflowing add or
+ * sub, division, tag loads and String calls on a possibly void receiver)
+ * are only hoisted from the header ahead of its first side effect: the
+ * header runs as soon as the loop is entered, so the trap fires at the
+ * same point of the program's output as before.
+ */
+public class LoopInvariantCodeMotion implements Pass {
+    private final List<String> hoisted = new ArrayList<>();
+
+    @Override
+    public String getName() {
+        return "loop-invariant-code-motion";
+    }
+
+    private static boolean isMovable(IRInstr instr) {
+        return switch (instr.op) {
+            case CONST, GLOBAL, VOID, SELF, PARAM, BOX_INT, BOX_BOOL, UNBOX_INT, UNBOX_BOOL, ADD, SUB, MUL, DIV, NEG,
+                 ADDU, SUBU, SHL, SRA, SRL, LT, LE, EQ, NOT, IS_VOID, EQUALS, CONCAT, TAG, GET_ATTR -> true;
+            case DISPATCH -> instr.isStringCall("length") || instr.isStringCall("concat")
+                    || instr.isStringCall("substr");
+            default -> false;
+        };
+    }
+
+    // Values the lowering rematerializes anyway; moved but not reported
+    private static boolean isTrivial(IRInstr instr) {
+        return switch (instr.op) {
+            case CONST, GLOBAL, VOID, SELF, PARAM -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = false;
+        DominatorTree dom = new DominatorTree(function);
+
+        for (Loop loop : Loop.findLoops(function, dom)) {
+            IRBlock preheader = loop.getPreheader();
+            if (preheader == null) continue;
+
+            boolean writes_memory = false;
+            for (IRBlock block : loop.blocks) {
+                for (IRInstr instr : block.instrs) {
+                    writes_memory |= instr.mayWriteMemory();
+                }
+            }
+
+            Set<IRInstr> invariant = new HashSet<>();
+            boolean progress = true;
+
+            while (progress) {
+                progress = false;
+                for (IRBlock block : dom.getOrder()) {
+                    if (!loop.contains(block)) continue;
+
+                    boolean may_trap_here = block == loop.header;
+
+                    for (Iterator<IRInstr> it = block.instrs.iterator(); it.hasNext(); ) {
+                        IRInstr instr = it.next();
+                        if (!isMovable(instr) || (instr.op == IROp.GET_ATTR && writes_memory)
+                                || (instr.mayTrap() && !may_trap_here)) {
+                            may_trap_here &= !instr.hasSideEffects() && !instr.mayTrap();
+                            continue;
+                        }
+
+                        boolean operands_invariant = true;
+                        for (IRInstr arg : instr.args) {
+                            operands_invariant &= !loop.contains(arg) || invariant.contains(arg);
+                        }
+                        if (!operands_invariant) {
+                            may_trap_here &= !instr.mayTrap();
+                            continue;
+                        }
+
+                        it.remove();
+                        preheader.addBeforeTerminator(instr);
+                        invariant.add(instr);
+                        if (instr.kind != IRInstr.Kind.NONE && !isTrivial(instr)) {
+                            hoisted.add(function.label + ": " + instr + " out of loop at " + loop.header);
+                        }
+                        progress = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (hoisted.isEmpty()) return;
+        out.println("hoisted " + hoisted.size() + " loop invariant instructions:");
+        for (String line : hoisted) {
+            out.println("    " + line);
+        }
+    }
+}
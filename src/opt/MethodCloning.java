@@ -0,0 +1,190 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Copies methods for the exact classes their callers know. A method is
+ * compiled once for every class inheriting it and every argument it may
+ * get, so self has the type of the class defining it, SELF_TYPE stands
+ * for that class, and a formal declared Object says nothing about what it
+ * holds. A direct call whose receiver or arguments have exact types that
+ * are more precise than that can call a clone rebuilt from the method's
+ * body as if that receiver's class had defined it, with those formals
+ * retyped. Self and the retyped formals are exact in the clone, so the
+ * calls on them become direct as well, and calls that reach the method
+ * again from inside reach the clone.
+ *
+ * Specializations are made hottest first, call sites weighing more the
+ * deeper their loop and when they recurse, up to MAX_CLONES clones that
+ * add at most MAX_GROWTH_PERCENT to the program's instructions, or
+ * MAX_CLONE_SIZE instructions in a smaller program. Methods larger than
+ * MAX_CLONE_SIZE are never copied.
+ */
+public class MethodCloning implements ProgramPass {
+    private static final int MAX_CLONES = 16;
+    private static final int MAX_GROWTH_PERCENT = 25;
+    private static final int MAX_CLONE_SIZE = 400;
+
+    // Builds a routine called label from the body of method as if receiver defined it
+    public interface Builder {
+        IRFunction build(String label, String method, String receiver, String[] formalTypes);
+    }
+
+    private final ProgramLayout layout;
+    private final Builder builder;
+    private final Map<String, IRFunction> routines = new HashMap<>();
+    // Clone labels by specialization key
+    private final Map<String, String> clones = new HashMap<>();
+    private final List<IRFunction> clone_functions = new ArrayList<>();
+    private final Set<String> cloned_methods = new HashSet<>();
+    private int budget = -1;
+    private int growth = 0;
+    private int redirected = 0;
+
+    public MethodCloning(ProgramLayout layout, Builder builder) {
+        this.layout = layout;
+        this.builder = builder;
+    }
+
+    @Override
+    public String getName() {
+        return "method-cloning";
+    }
+
+    // Calls to one method that can share a clone
+    private static class Specialization {
+        String key;
+        IRFunction method;
+        String receiver;
+        String exactSelf;
+        String[] formalTypes;
+        int weight;
+        final List<IRInstr> calls = new ArrayList<>();
+    }
+
+    @Override
+    public boolean run(List<IRFunction> functions) {
+        if (budget < 0) {
+            int size = 0;
+            for (IRFunction function : functions) {
+                size += function.instructionCount();
+            }
+            // Small programs can still afford one clone of the largest size
+            budget = Math.max(size * MAX_GROWTH_PERCENT / 100, MAX_CLONE_SIZE);
+        }
+        for (IRFunction function : functions) {
+            routines.put(function.label, function);
+        }
+
+        Map<String, Specialization> found = new LinkedHashMap<>();
+        for (IRFunction function : functions) {
+            for (IRBlock block : function.blocks) {
+                for (IRInstr instr : block.instrs) {
+                    if (instr.op != IROp.STATIC_DISPATCH) continue;
+                    Specialization spec = specialize(instr);
+                    if (spec == null) continue;
+                    Specialization same = found.putIfAbsent(spec.key, spec);
+                    if (same != null) spec = same;
+                    spec.weight += weight(instr);
+                    spec.calls.add(instr);
+                }
+            }
+        }
+        List<Specialization> hottest = new ArrayList<>(found.values());
+        hottest.sort(Comparator.comparingInt((Specialization s) -> s.weight).reversed());
+
+        boolean changed = false;
+        for (Specialization spec : hottest) {
+            String label = clones.get(spec.key);
+            if (label == null) {
+                int size = spec.method.instructionCount();
+                if (clones.size() >= MAX_CLONES || size > MAX_CLONE_SIZE || growth + size > budget) continue;
+
+                label = "_clone" + clones.size() + "_" + spec.method.label;
+                IRFunction clone = builder.build(label, spec.method.label, spec.receiver, spec.formalTypes);
+                clone.exactSelf = spec.exactSelf;
+                clone.exactFormals = spec.formalTypes;
+                functions.add(clone);
+                routines.put(label, clone);
+                clones.put(spec.key, label);
+                clone_functions.add(clone);
+                cloned_methods.add(spec.method.label);
+                growth += size;
+            }
+            for (IRInstr call : spec.calls) {
+                call.label = label;
+                redirected++;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean hasSubclasses(String type) {
+        int tag = type == null ? -1 : layout.classTag(type);
+        return tag >= 0 && tag != layout.maxDescendantTag(type);
+    }
+
+    // The clone call should reach, or null when the call knows no more than the method
+    private Specialization specialize(IRInstr call) {
+        IRFunction method = routines.get(call.label);
+        if (method == null || method.label.endsWith("_init") || clone_functions.contains(method)) return null;
+
+        Specialization spec = new Specialization();
+        spec.method = method;
+        spec.receiver = method.className;
+        String receiver = ExactTypeFolding.exactType(call.arg(0), layout);
+        if (receiver != null && hasSubclasses(method.className)) {
+            spec.receiver = receiver;
+            spec.exactSelf = receiver;
+        }
+
+        // Formals the method no longer reads have no PARAM left to retype
+        String[] declared = new String[method.numFormals];
+        for (IRInstr instr : method.entry.instrs) {
+            if (instr.op == IROp.PARAM) {
+                declared[instr.imm] = instr.type;
+            }
+        }
+        boolean retyped = false;
+        spec.formalTypes = new String[method.numFormals];
+        for (int i = 0; i < method.numFormals; i++) {
+            String exact = ExactTypeFolding.exactType(call.arg(i + 1), layout);
+            if (exact != null && hasSubclasses(declared[i])) {
+                spec.formalTypes[i] = exact;
+                retyped = true;
+            }
+        }
+        if (spec.exactSelf == null && !retyped) return null;
+
+        spec.key = method.label + " " + spec.exactSelf + " " + Arrays.toString(spec.formalTypes);
+        return spec;
+    }
+
+    // Static estimate of how often call runs relative to the other calls
+    private static int weight(IRInstr call) {
+        int weight = 1;
+        for (int depth = 0; depth < Math.min(call.block.loopDepth, 3); depth++) {
+            weight *= 10;
+        }
+        if (call.block.function.label.equals(call.label)) {
+            weight *= 10;
+        }
+        return weight;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (clone_functions.isEmpty()) return;
+        int size = 0;
+        for (IRFunction clone : clone_functions) {
+            size += clone.instructionCount();
+        }
+        out.println("method cloning: " + clone_functions.size() + " clones of " + cloned_methods.size()
+                + " methods, " + redirected + " calls redirected, " + size + " instructions added (budget "
+                + budget + ")");
+    }
+}
@@ -0,0 +1,16 @@
+package cool.opt;
+
+import cool.ir.IRFunction;
+
+import java.io.PrintStream;
+
+public interface Pass {
+    String getName();
+
+    // Returns true when the function was changed
+    boolean run(IRFunction function);
+
+    // Details of what the pass did, printed with -pass-stats
+    default void printReport(PrintStream out) {
+    }
+}
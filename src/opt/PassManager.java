@@ -0,0 +1,148 @@
+package cool.opt;
+
+import cool.codegen.GenGC;
+import cool.ir.IRFunction;
+import cool.ir.ProgramLayout;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Runs the optimization pipeline over each function, then the passes that
+ * look at the whole program, and keeps per-pass totals: time spent and IR
+ * instruction counts before and after. Functions a program pass adds or
+ * rewrites go through the pipeline again, and the pass runs again while
+ * it keeps changing them.
+ */
+public class PassManager {
+    // Upper bound on pipeline rounds when iterating to a fixed point
+    private static final int MAX_ROUNDS = 8;
+
+    private static class PassStats {
+        long nanos;
+        int runs;
+        int before;
+        int after;
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+    private final List<ProgramPass> program_passes = new ArrayList<>();
+    private final Map<String, PassStats> stats = new LinkedHashMap<>();
+    private boolean iterate = false;
+
+    public static PassManager forLevel(int level, ProgramLayout layout, MethodCloning.Builder clones) {
+        PassManager manager = new PassManager();
+        if (level >= 1) {
+            manager.add(new CopyPropagation());
+            manager.add(new ConstantPropagation(layout));
+            manager.add(new ExactTypeFolding(layout));
+        }
+        if (level >= 2) {
+            manager.add(new GlobalValueNumbering());
+            manager.add(new LoopInvariantCodeMotion());
+            manager.add(new StrengthReduction());
+            manager.iterate = true;
+        }
+        if (level >= 1) {
+            manager.add(new ConcatFusion(layout));
+            manager.add(new PrintCoalescing(layout));
+            manager.add(new DeadStoreElimination(layout));
+            manager.add(new DeadCodeElimination());
+        }
+        if (level >= 2) {
+            manager.add(new MethodCloning(layout, clones));
+            manager.add(new InterproceduralConstants(layout));
+        }
+        // The collector cannot tell objects in a frame from stale pointers into the heap
+        if (level >= 2 && !GenGC.enabled()) {
+            manager.add(new EscapeAnalysis(layout));
+        }
+        return manager;
+    }
+
+    public void add(Pass pass) {
+        passes.add(pass);
+        stats.put(pass.getName(), new PassStats());
+    }
+
+    public void add(ProgramPass pass) {
+        program_passes.add(pass);
+        stats.put(pass.getName(), new PassStats());
+    }
+
+    public void run(List<IRFunction> functions) {
+        for (IRFunction function : functions) {
+            run(function);
+        }
+        for (ProgramPass pass : program_passes) {
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                int count = functions.size();
+                boolean changed = runPass(pass, functions);
+                // Routines a pass adds or rewrites are optimized before it looks at them again
+                Set<IRFunction> optimize = new LinkedHashSet<>(functions.subList(count, functions.size()));
+                optimize.addAll(pass.rewritten());
+                for (IRFunction function : optimize) {
+                    run(function);
+                }
+                if (!changed || optimize.isEmpty()) break;
+            }
+        }
+    }
+
+    private boolean runPass(ProgramPass pass, List<IRFunction> functions) {
+        PassStats pass_stats = stats.get(pass.getName());
+        int before = instructionCount(functions);
+        long start = System.nanoTime();
+        boolean changed = pass.run(functions);
+        pass_stats.nanos += System.nanoTime() - start;
+        pass_stats.runs++;
+        pass_stats.before += before;
+        pass_stats.after += instructionCount(functions);
+        return changed;
+    }
+
+    private static int instructionCount(List<IRFunction> functions) {
+        int count = 0;
+        for (IRFunction function : functions) {
+            count += function.instructionCount();
+        }
+        return count;
+    }
+
+    private void run(IRFunction function) {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            for (Pass pass : passes) {
+                changed |= runPass(pass, function);
+            }
+            if (!iterate || !changed) break;
+        }
+    }
+
+    private boolean runPass(Pass pass, IRFunction function) {
+        PassStats pass_stats = stats.get(pass.getName());
+        int before = function.instructionCount();
+        long start = System.nanoTime();
+        boolean changed = pass.run(function);
+        pass_stats.nanos += System.nanoTime() - start;
+        pass_stats.runs++;
+        pass_stats.before += before;
+        pass_stats.after += function.instructionCount();
+        return changed;
+    }
+
+    public void printStatistics(PrintStream out) {
+        out.printf("%-28s %6s %10s %10s %10s %8s%n", "pass", "runs", "time (ms)", "before", "after", "delta");
+        for (Map.Entry<String, PassStats> entry : stats.entrySet()) {
+            PassStats s = entry.getValue();
+            out.printf("%-28s %6d %10.3f %10d %10d %+8d%n", entry.getKey(),
+                    s.runs, s.nanos / 1e6, s.before, s.after, s.after - s.before);
+        }
+        for (Pass pass : passes) {
+            pass.printReport(out);
+        }
+        for (ProgramPass pass : program_passes) {
+            pass.printReport(out);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package cool.opt;
+
+import cool.codegen.PrintRuntime;
+import cool.codegen.StringRuntime;
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Turns out_string and out_int calls that can only reach IO's own
+ * methods into calls of the buffered routines in PrintRuntime. Both
+ * methods return their receiver, so the dispatch result is replaced by it.
+ *
+ * Prints in the same block with nothing but pure instructions that cannot
+ * trap between them form a batch that ends with one flush, and therefore
+ * one syscall.
+ * Neighbouring prints of literal Strings and Ints in a batch are merged
+ * into a single String constant. Once the chain's results are replaced,
+ * the void checks of its later links test a receiver that was already
+ * checked in the block, and are dropped.
+ */
+public class PrintCoalescing implements Pass {
+    private final ProgramLayout layout;
+    private int converted = 0;
+    private int merged = 0;
+
+    public PrintCoalescing(ProgramLayout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public String getName() {
+        return "print-coalescing";
+    }
+
+    private static boolean isPrint(IRInstr instr) {
+        return instr.op == IROp.CALL_RUNTIME
+                && (instr.label.equals(PrintRuntime.PRINT_STRING) || instr.label.equals(PrintRuntime.PRINT_INT));
+    }
+
+    private static boolean isFlush(IRInstr instr) {
+        return instr.op == IROp.CALL_RUNTIME && instr.label.equals(PrintRuntime.FLUSH);
+    }
+
+    // Instructions a batch may span; dead void checks are dropped later anyway.
+    // The batch is flushed before anything that may trap, so its text comes out first.
+    private static boolean isTransparent(IRInstr instr) {
+        if (instr.op == IROp.CHECK_DISPATCH_VOID) {
+            return DeadCodeElimination.isNeverVoid(instr.arg(0));
+        }
+        return !instr.hasSideEffects() && !instr.mayTrap() && !instr.op.isTerminator();
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = false;
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : new ArrayList<>(block.instrs)) {
+                changed |= convert(function, instr);
+            }
+        }
+        for (IRBlock block : function.blocks) {
+            changed |= batch(block);
+        }
+        return changed;
+    }
+
+    // Label of the routine call always reaches, or null
+    private String target(IRInstr call) {
+        IRInstr receiver = call.arg(0);
+        return switch (call.op) {
+            case DISPATCH -> receiver.type == null ? null : layout.uniqueMethodLabel(receiver.type, call.label);
+            case STATIC_DISPATCH -> call.label;
+            default -> null;
+        };
+    }
+
+    private boolean convert(IRFunction function, IRInstr call) {
+        if (call.args.size() != 2) return false;
+        String target = target(call);
+        if (target == null) return false;
+
+        String routine = switch (target) {
+            case "IO.out_string", StringRuntime.ROPE_OUT_STRING -> PrintRuntime.PRINT_STRING;
+            case "IO.out_int" -> PrintRuntime.PRINT_INT;
+            default -> null;
+        };
+        IRInstr receiver = call.arg(0);
+        if (routine == null) return false;
+
+        IRInstr print = new IRInstr(IROp.CALL_RUNTIME, IRInstr.Kind.NONE, call.arg(1));
+        print.label = routine;
+        call.block.insertBefore(call, print);
+        function.replaceAllUses(call, receiver);
+        call.block.instrs.remove(call);
+        converted++;
+        return true;
+    }
+
+    // Text of a print whose argument is a constant, or null
+    private String literal(IRInstr print) {
+        IRInstr arg = print.arg(0);
+        if (arg.op != IROp.GLOBAL) return null;
+        if (print.label.equals(PrintRuntime.PRINT_INT)) {
+            return "Int".equals(arg.type) ? Integer.toString(arg.imm) : null;
+        }
+        return "String".equals(arg.type) ? layout.stringValue(arg.label) : null;
+    }
+
+    // Rebuilds the flushes of a block, one after the last print of each batch
+    private boolean batch(IRBlock block) {
+        int old_flushes = 0;
+        int new_flushes = 0;
+        boolean changed = false;
+
+        IRInstr last_print = null;
+        Set<IRInstr> checked = new HashSet<>();
+        for (IRInstr instr : new ArrayList<>(block.instrs)) {
+            // A chain checks its receiver again at every link, which cannot fail after the first
+            if (instr.op == IROp.CHECK_DISPATCH_VOID && !checked.add(instr.arg(0))) {
+                block.instrs.remove(instr);
+                changed = true;
+            } else if (isFlush(instr)) {
+                block.instrs.remove(instr);
+                old_flushes++;
+            } else if (isPrint(instr)) {
+                if (last_print != null && merge(last_print, instr)) {
+                    changed = true;
+                } else {
+                    last_print = instr;
+                }
+            } else if (!isTransparent(instr) && last_print != null) {
+                insertFlush(last_print);
+                new_flushes++;
+                last_print = null;
+            }
+        }
+        if (last_print != null) {
+            insertFlush(last_print);
+            new_flushes++;
+        }
+        return changed || old_flushes != new_flushes;
+    }
+
+    // Folds the literal print second into first, which it directly follows in its batch
+    private boolean merge(IRInstr first, IRInstr second) {
+        String a = literal(first);
+        String b = literal(second);
+        if (a == null || b == null) return false;
+
+        IRInstr text = new IRInstr(IROp.GLOBAL, IRInstr.Kind.REF);
+        text.label = layout.stringConstant(a + b);
+        text.type = "String";
+        first.block.insertBefore(first, text);
+        first.args.set(0, text);
+        first.label = PrintRuntime.PRINT_STRING;
+        second.block.instrs.remove(second);
+        merged++;
+        return true;
+    }
+
+    private void insertFlush(IRInstr print) {
+        IRInstr flush = new IRInstr(IROp.CALL_RUNTIME, IRInstr.Kind.NONE);
+        flush.label = PrintRuntime.FLUSH;
+        List<IRInstr> instrs = print.block.instrs;
+        print.block.insertBefore(instrs.get(instrs.indexOf(print) + 1), flush);
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (converted == 0) return;
+        out.println("print coalescing: " + converted + " out_string/out_int calls buffered, "
+                + merged + " literals merged");
+    }
+}
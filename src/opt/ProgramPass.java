@@ -0,0 +1,24 @@
+package cool.opt;
+
+import cool.ir.IRFunction;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.List;
+
+// A pass that needs every routine of the program at once, run after the per-function pipeline
+public interface ProgramPass {
+    String getName();
+
+    // Returns true when any function was changed
+    boolean run(List<IRFunction> functions);
+
+    // Functions the last run changed enough to be worth optimizing again
+    default Collection<IRFunction> rewritten() {
+        return List.of();
+    }
+
+    // Details of what the pass did, printed with -pass-stats
+    default void printReport(PrintStream out) {
+    }
+}
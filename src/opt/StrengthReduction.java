@@ -0,0 +1,216 @@
+package cool.opt;
+
+import cool.ir.*;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/*
+ * Replaces multiplications and divisions by cheaper operations.
+ *
+ * Inside a while loop, i * c where i steps by a constant on every trip
+ * becomes a new induction variable that starts at init * c and grows by
+ * step * c. Elsewhere, multiplying by a constant near a power of two
+ * becomes shifts and adds, and dividing by a power of two becomes an
+ * arithmetic shift with a bias so that negative dividends still round
+ * toward zero like div does. mul wraps around on overflow, so all the
+ * replacements use the wrapping addu and subu.
+ */
+public class StrengthReduction implements Pass {
+    private int induction_variables = 0;
+    private int multiplications = 0;
+    private int divisions = 0;
+
+    @Override
+    public String getName() {
+        return "strength-reduction";
+    }
+
+    private static IRInstr constantOperand(IRInstr instr) {
+        if (instr.arg(1).isConst()) return instr.arg(1);
+        if (instr.op == IROp.MUL && instr.arg(0).isConst()) return instr.arg(0);
+        return null;
+    }
+
+    private static IRInstr otherOperand(IRInstr instr, IRInstr constant) {
+        return instr.arg(0) == constant ? instr.arg(1) : instr.arg(0);
+    }
+
+    @Override
+    public boolean run(IRFunction function) {
+        boolean changed = reduceInductionVariables(function);
+
+        for (IRBlock block : function.blocks) {
+            for (IRInstr instr : new ArrayList<>(block.instrs)) {
+                if (instr.op == IROp.MUL) {
+                    changed |= reduceMultiplication(instr);
+                } else if (instr.op == IROp.DIV) {
+                    changed |= reduceDivision(instr);
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Helpers emitting raw Int instructions in front of position
+
+    private IRInstr insert(IRInstr position, IROp op, int imm, IRInstr... args) {
+        IRInstr instr = new IRInstr(op, IRInstr.Kind.INT, args);
+        instr.imm = imm;
+        position.block.insertBefore(position, instr);
+        return instr;
+    }
+
+    private IRInstr constant(IRInstr position, int value) {
+        return insert(position, IROp.CONST, value);
+    }
+
+    // Turns instr into a plain copy of value, for copy propagation to clean up
+    private static void replace(IRInstr instr, IRInstr value) {
+        instr.become(IROp.COPY, value);
+    }
+
+    private boolean reduceMultiplication(IRInstr mul) {
+        IRInstr constant = constantOperand(mul);
+        if (constant == null) return false;
+        IRInstr x = otherOperand(mul, constant);
+        int c = constant.imm;
+
+        if (c == 0) {
+            mul.becomeConst(0);
+        } else if (c == 1) {
+            replace(mul, x);
+        } else if (c == -1) {
+            mul.become(IROp.SUBU, constant(mul, 0), x);
+        } else if (Integer.bitCount(c) == 1 && c > 0) {
+            mul.become(IROp.SHL, x);
+            mul.imm = Integer.numberOfTrailingZeros(c);
+        } else if (c > 0 && Integer.bitCount(c - 1) == 1) {
+            IRInstr shifted = insert(mul, IROp.SHL, Integer.numberOfTrailingZeros(c - 1), x);
+            mul.become(IROp.ADDU, shifted, x);
+        } else if (c > 0 && c != Integer.MAX_VALUE && Integer.bitCount(c + 1) == 1) {
+            IRInstr shifted = insert(mul, IROp.SHL, Integer.numberOfTrailingZeros(c + 1), x);
+            mul.become(IROp.SUBU, shifted, x);
+        } else if (c < 0 && c != Integer.MIN_VALUE && Integer.bitCount(-c) == 1) {
+            IRInstr shifted = insert(mul, IROp.SHL, Integer.numberOfTrailingZeros(-c), x);
+            mul.become(IROp.SUBU, constant(mul, 0), shifted);
+        } else {
+            return false;
+        }
+        multiplications++;
+        return true;
+    }
+
+    private boolean reduceDivision(IRInstr div) {
+        if (!div.arg(1).isConst()) return false;
+        IRInstr x = div.arg(0);
+        int c = div.arg(1).imm;
+        if (c == 0 || c == Integer.MIN_VALUE) return false;
+
+        int magnitude = Math.abs(c);
+        if (magnitude == 1) {
+            // x / -1 keeps div, which leaves MIN_VALUE alone where negation would trap
+            if (c != 1) return false;
+            replace(div, x);
+            divisions++;
+            return true;
+        }
+        if (Integer.bitCount(magnitude) != 1) return false;
+        int k = Integer.numberOfTrailingZeros(magnitude);
+
+        // Add 2^k - 1 to negative dividends so that the shift rounds toward zero
+        IRInstr sign = k == 1 ? x : insert(div, IROp.SRA, 31, x);
+        IRInstr bias = insert(div, IROp.SRL, 32 - k, sign);
+        IRInstr biased = insert(div, IROp.ADDU, 0, x, bias);
+        if (c > 0) {
+            div.become(IROp.SRA, biased);
+            div.imm = k;
+        } else {
+            IRInstr quotient = insert(div, IROp.SRA, k, biased);
+            div.become(IROp.SUBU, constant(div, 0), quotient);
+        }
+        divisions++;
+        return true;
+    }
+
+    // Induction variables
+
+    // Step of a basic induction variable: a header phi updated by phi + s on the back edge
+    private static Integer stepOf(IRInstr phi, IRInstr next) {
+        if (next.op != IROp.BOX_INT) return null;
+        IRInstr update = next.arg(0);
+        if (update.op != IROp.ADD && update.op != IROp.SUB) return null;
+
+        IRInstr a = update.arg(0);
+        IRInstr b = update.arg(1);
+        boolean a_is_phi = a.op == IROp.UNBOX_INT && a.arg(0) == phi;
+        boolean b_is_phi = b.op == IROp.UNBOX_INT && b.arg(0) == phi;
+
+        if (a_is_phi && b.isConst()) return update.op == IROp.ADD ? b.imm : -b.imm;
+        if (b_is_phi && a.isConst() && update.op == IROp.ADD) return a.imm;
+        return null;
+    }
+
+    private boolean reduceInductionVariables(IRFunction function) {
+        boolean changed = false;
+        DominatorTree dom = new DominatorTree(function);
+
+        for (Loop loop : Loop.findLoops(function, dom)) {
+            IRBlock preheader = loop.getPreheader();
+            if (preheader == null || loop.latches.size() != 1 || loop.header.preds.size() != 2) continue;
+            IRBlock latch = loop.latches.getFirst();
+            int entry_index = loop.header.preds.indexOf(preheader);
+            int latch_index = 1 - entry_index;
+
+            for (IRInstr phi : loop.header.getPhis()) {
+                Integer step = stepOf(phi, phi.arg(latch_index));
+                if (step == null) continue;
+
+                // One new variable per distinct factor
+                Map<Integer, IRInstr> scaled = new HashMap<>();
+                for (IRBlock block : loop.blocks) {
+                    for (IRInstr instr : new ArrayList<>(block.instrs)) {
+                        if (instr.op != IROp.MUL) continue;
+                        IRInstr constant = constantOperand(instr);
+                        if (constant == null) continue;
+                        IRInstr other = otherOperand(instr, constant);
+                        if (other.op != IROp.UNBOX_INT || other.arg(0) != phi) continue;
+                        // A single shift is as cheap as the add that would replace it
+                        if (constant.imm > 0 && Integer.bitCount(constant.imm) == 1) continue;
+
+                        IRInstr variable = scaled.computeIfAbsent(constant.imm,
+                                c -> newInductionVariable(loop, preheader, latch, entry_index, phi, step, c));
+                        replace(instr, variable);
+                        induction_variables++;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private IRInstr newInductionVariable(Loop loop, IRBlock preheader, IRBlock latch, int entryIndex,
+                                         IRInstr phi, int step, int factor) {
+        IRInstr jump = preheader.getTerminator();
+        IRInstr start = insert(jump, IROp.UNBOX_INT, 0, phi.arg(entryIndex));
+        IRInstr scaled_start = insert(jump, IROp.MUL, 0, start, constant(jump, factor));
+
+        IRInstr variable = new IRInstr(IROp.PHI, IRInstr.Kind.INT);
+        loop.header.addPhi(variable);
+
+        IRInstr back = latch.getTerminator();
+        IRInstr next = insert(back, IROp.ADDU, 0, variable, constant(back, step * factor));
+
+        variable.args.add(entryIndex == 0 ? scaled_start : next);
+        variable.args.add(entryIndex == 0 ? next : scaled_start);
+        return variable;
+    }
+
+    @Override
+    public void printReport(PrintStream out) {
+        if (induction_variables + multiplications + divisions == 0) return;
+        out.println("strength reduction: " + induction_variables + " induction variable multiplications, "
+                + multiplications + " multiplications, " + divisions + " divisions");
+    }
+}
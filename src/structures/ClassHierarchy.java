@@ -0,0 +1,151 @@
+package cool.structures;
+
+import cool.AST.ASTNode;
+
+import java.util.*;
+
+/*
+ * Index of the class tree, built once the definition pass has linked
+ * every class to its parent, so that type checking does not walk
+ * inheritance chains.
+ *
+ * A depth-first walk from Object numbers each class when it is entered
+ * and when it is left. A conforms to B exactly when B's numbers enclose
+ * A's. Each class also keeps its depth and its ancestors 2^k levels up.
+ * The join of two classes, their closest common ancestor, is found by
+ * lifting the deeper one to the depth of the other and then both
+ * together in O(log depth) steps.
+ *
+ * A class whose parent is undefined or illegal is left without one by
+ * the definition pass, which reports it. Such a class roots a tree of its
+ * own, walked after Object's: it conforms only to itself, its subclasses
+ * still conform to it, and it joins with classes of other trees to no
+ * class. Classes cut off by an inheritance cycle, also reported, are
+ * left out: they conform to nothing else and join with anything to no
+ * class.
+ */
+public class ClassHierarchy {
+    private static final Map<String, Integer> index = new HashMap<>();
+    private static ClassSymbol[] classes = new ClassSymbol[0];
+    private static int[] entered;
+    private static int[] left;
+    private static int[] depth;
+    // Root of the tree each class is in
+    private static int[] tree;
+    // ancestors[k][c]: the class 2^k levels above c, or its root when there is none
+    private static int[][] ancestors;
+
+    public static void build(ASTNode.Program program) {
+        List<ClassSymbol> all = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        List<String> names = new ArrayList<>(List.of("Object", "IO", "Int", "String", "Bool"));
+        for (ASTNode.ClassDef classDef : program.classes) {
+            names.add(classDef.type.getToken().getText());
+        }
+        for (String name : names) {
+            if (SymbolTable.globals.lookup(name) instanceof ClassSymbol cls && seen.add(name)) {
+                all.add(cls);
+            }
+        }
+
+        Map<ClassSymbol, List<ClassSymbol>> children = new HashMap<>();
+        List<ClassSymbol> roots = new ArrayList<>();
+        if (SymbolTable.globals.lookup("Object") instanceof ClassSymbol object) {
+            roots.add(object);
+        }
+        for (ClassSymbol cls : all) {
+            if (cls.getInherited_class() != null) {
+                children.computeIfAbsent(cls.getInherited_class(), c -> new ArrayList<>()).add(cls);
+            } else if (!roots.contains(cls)) {
+                roots.add(cls);
+            }
+        }
+
+        index.clear();
+        int n = all.size();
+        classes = new ClassSymbol[n];
+        entered = new int[n];
+        left = new int[n];
+        depth = new int[n];
+        tree = new int[n];
+        int levels = 1;
+        while ((1 << levels) < n) {
+            levels++;
+        }
+        ancestors = new int[levels][n];
+
+        // Iterative, since chains can be as long as the program has classes
+        int clock = 0;
+        Deque<ClassSymbol> stack = new ArrayDeque<>();
+        Deque<Iterator<ClassSymbol>> pending = new ArrayDeque<>();
+        for (ClassSymbol root : roots) {
+            enter(root, -1, clock++);
+            stack.push(root);
+            pending.push(children.getOrDefault(root, List.of()).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<ClassSymbol> next = pending.peek();
+                if (next.hasNext()) {
+                    ClassSymbol child = next.next();
+                    enter(child, index.get(stack.peek().getName()), clock++);
+                    stack.push(child);
+                    pending.push(children.getOrDefault(child, List.of()).iterator());
+                } else {
+                    left[index.get(stack.pop().getName())] = clock++;
+                    pending.pop();
+                }
+            }
+        }
+
+        for (int k = 1; k < levels; k++) {
+            for (int c = 0; c < index.size(); c++) {
+                ancestors[k][c] = ancestors[k - 1][ancestors[k - 1][c]];
+            }
+        }
+    }
+
+    private static void enter(ClassSymbol cls, int parent, int clock) {
+        int c = index.size();
+        index.put(cls.getName(), c);
+        classes[c] = cls;
+        entered[c] = clock;
+        depth[c] = parent < 0 ? 0 : depth[parent] + 1;
+        tree[c] = parent < 0 ? c : tree[parent];
+        ancestors[0][c] = parent < 0 ? c : parent;
+    }
+
+    // Whether the class named type is ancestor or inherits from it
+    public static boolean conforms(String type, String ancestor) {
+        Integer c = index.get(type);
+        Integer a = index.get(ancestor);
+        if (c == null || a == null) return false;
+        return entered[a] <= entered[c] && left[c] <= left[a];
+    }
+
+    // Closest class both named classes conform to, or null when they are not in the same tree
+    public static ClassSymbol join(String type1, String type2) {
+        Integer i = index.get(type1);
+        Integer j = index.get(type2);
+        if (i == null || j == null || tree[i] != tree[j]) return null;
+
+        int a = i;
+        int b = j;
+        if (depth[a] < depth[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        for (int k = ancestors.length - 1; k >= 0; k--) {
+            if (depth[a] - (1 << k) >= depth[b]) {
+                a = ancestors[k][a];
+            }
+        }
+        if (a == b) return classes[a];
+        for (int k = ancestors.length - 1; k >= 0; k--) {
+            if (ancestors[k][a] != ancestors[k][b]) {
+                a = ancestors[k][a];
+                b = ancestors[k][b];
+            }
+        }
+        return classes[ancestors[0][a]];
+    }
+}
@@ -1,7 +1,9 @@
 package cool.structures;
 
 import cool.AST.*;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Set;
 
 
 public class DefinitionPassVisitor implements ASTVisitor<Void> {
@@ -9,7 +11,7 @@ public class DefinitionPassVisitor implements ASTVisitor<Void> {
     ClassSymbol current_class = null;
 
     private boolean checkForCycle(ClassSymbol classSymbol) {
-        LinkedList<ClassSymbol> visited = new LinkedList<>();
+        Set<ClassSymbol> visited = new HashSet<>();
         ClassSymbol current = classSymbol;
 
         while (current != null) {
@@ -98,6 +100,7 @@ public class DefinitionPassVisitor implements ASTVisitor<Void> {
                 }
             }
         }
+        ClassHierarchy.build(program);
 
         for (ASTNode.ClassDef classDef : simple_classes) {
             classDef.accept(this);
@@ -7,6 +7,8 @@ public class FunctionSymbol extends IdSymbol implements Scope {
     protected Scope parent;
     protected Map<String, Symbol> formals = new LinkedHashMap<>();
     protected ClassSymbol owned_class;
+    // Set on pure recursive methods whose results are memoized
+    protected boolean memoized = false;
 
     public FunctionSymbol(Scope parent, String name, ClassSymbol owned_class) {
         super(name);
@@ -53,4 +55,12 @@ public class FunctionSymbol extends IdSymbol implements Scope {
         return owned_class;
     }
 
+    public boolean isMemoized() {
+        return memoized;
+    }
+
+    public void setMemoized(boolean memoized) {
+        this.memoized = memoized;
+    }
+
 }
\ No newline at end of file
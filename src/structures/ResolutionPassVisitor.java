@@ -38,21 +38,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
             return false;
         }
 
-        // Look up the returned type in the class
-        Symbol actual_symbol = SymbolTable.globals.lookup(returned_name);
-        if (!(actual_symbol instanceof ClassSymbol current)) {
-            return false;
-        }
-
-        // Walk up the inheritance chain
-        while (current != null) {
-            if (current.getName().equals(needed_name)) {
-                return true;
-            }
-            current = current.getInherited_class();
-        }
-
-        return false;
+        return ClassHierarchy.conforms(returned_name, needed_name);
     }
 
     private TypeSymbol checkFunctionCall(ClassSymbol classScope, String function_name,
@@ -119,33 +105,8 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
             }
         }
 
-        List<String> ancestors1 = getAncestors(t1);
-
-        Symbol sym2 = SymbolTable.globals.lookup(t2);
-        if (sym2 instanceof ClassSymbol current) {
-            while (current != null) {
-                if (ancestors1.contains(current.getName())) {
-                    return current.getType();
-                }
-                current = current.getInherited_class();
-            }
-        }
-
-        return TypeSymbol.OBJECT;
-    }
-
-    private List<String> getAncestors(String typeName) {
-        List<String> ancestors = new ArrayList<>();
-        Symbol sym = SymbolTable.globals.lookup(typeName);
-
-        if (sym instanceof ClassSymbol current) {
-            while (current != null) {
-                ancestors.add(current.getName());
-                current = current.getInherited_class();
-            }
-        }
-
-        return ancestors;
+        ClassSymbol common = ClassHierarchy.join(t1, t2);
+        return common == null ? TypeSymbol.OBJECT : common.getType();
     }
 
     private TypeSymbol resolveType(String typeName) {
@@ -162,6 +123,11 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         return null;
     }
 
+    private TypeSymbol annotate(ASTNode.Expression node, TypeSymbol type) {
+        node.setStaticType(type);
+        return type;
+    }
+
     private void checkArithmetic(ASTNode node, String type, Symbol symbol, Token info){
         if (symbol != null && !symbol.getName().equals("Int")) {
             SymbolTable.error(node.getCtx(), info,
@@ -277,7 +243,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
 
         if (!(symbol1.getName().equals("Bool") || symbol1.getName().equals("Int") || symbol1.getName().equals("String"))) {
             if (!(symbol2.getName().equals("Bool") || symbol2.getName().equals("Int") || symbol2.getName().equals("String"))) {
-                return TypeSymbol.BOOL;
+                return annotate(equalNode, TypeSymbol.BOOL);
             }
         }
 
@@ -286,7 +252,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
                     equalNode.getToken(), "Cannot compare " + symbol1.getName() + " with " + symbol2.getName());
         }
 
-        return TypeSymbol.BOOL;
+        return annotate(equalNode, TypeSymbol.BOOL);
     }
 
     @Override
@@ -297,7 +263,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         checkArithmetic(leNode, "<=", symbol1, leNode.left.getToken());
         checkArithmetic(leNode, "<=", symbol2, leNode.right.getToken());
 
-        return TypeSymbol.BOOL;
+        return annotate(leNode, TypeSymbol.BOOL);
     }
 
     @Override
@@ -309,7 +275,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         checkArithmetic(ltNode, "<", symbol2, ltNode.right.getToken());
 
 
-        return TypeSymbol.BOOL;
+        return annotate(ltNode, TypeSymbol.BOOL);
     }
 
     @Override
@@ -320,7 +286,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         checkArithmetic(plusNode, "+", symbol1, plusNode.left.getToken());
         checkArithmetic(plusNode, "+", symbol2, plusNode.right.getToken());
 
-        return TypeSymbol.INT;
+        return annotate(plusNode, TypeSymbol.INT);
     }
 
     @Override
@@ -331,7 +297,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         checkArithmetic(minusNode, "-", symbol1, minusNode.left.getToken());
         checkArithmetic(minusNode, "-", symbol2, minusNode.right.getToken());
 
-        return TypeSymbol.INT;
+        return annotate(minusNode, TypeSymbol.INT);
     }
 
     @Override
@@ -342,7 +308,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         checkArithmetic(mulNode, "*", symbol1, mulNode.left.getToken());
         checkArithmetic(mulNode, "*", symbol2, mulNode.right.getToken());
 
-        return TypeSymbol.INT;
+        return annotate(mulNode, TypeSymbol.INT);
     }
 
     @Override
@@ -353,7 +319,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         checkArithmetic(divNode, "/", symbol1, divNode.left.getToken());
         checkArithmetic(divNode, "/", symbol2, divNode.right.getToken());
 
-        return TypeSymbol.INT;
+        return annotate(divNode, TypeSymbol.INT);
     }
 
     @Override
@@ -363,13 +329,13 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
             SymbolTable.error(notNode.getCtx(),
                     notNode.exp.getToken(), "Operand of not has type " + exp_type.getName() + " instead of Bool");
         }
-        return TypeSymbol.BOOL;
+        return annotate(notNode, TypeSymbol.BOOL);
     }
 
 
     @Override
     public TypeSymbol visit(ASTNode.ParenNode parenNode) {
-        return parenNode.exp.accept(this);
+        return annotate(parenNode, parenNode.exp.accept(this));
     }
 
     @Override
@@ -378,7 +344,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
 
         checkArithmetic(tildeNode, "~", exp_type, tildeNode.exp.getToken());
 
-        return TypeSymbol.INT;
+        return annotate(tildeNode, TypeSymbol.INT);
     }
 
     @Override
@@ -386,7 +352,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         String id_name = iDtype.getToken().getText();
 
         if (id_name.equals("self")) {
-            return TypeSymbol.SELF_TYPE;
+            return annotate(iDtype, TypeSymbol.SELF_TYPE);
         }
 
         Symbol symbol = currentScope.lookup(id_name);
@@ -396,9 +362,9 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         }
 
         if (symbol instanceof IdSymbol) {
-            return ((IdSymbol) symbol).getType();
+            return annotate(iDtype, ((IdSymbol) symbol).getType());
         }
-        return null;
+        return annotate(iDtype, null);
     }
 
     @Override
@@ -408,14 +374,14 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         if (id_name.equals("self")) {
             SymbolTable.error(assignNode.getCtx(),
                     assignNode.id.getToken(), "Cannot assign to self");
-            return null;
+            return annotate(assignNode, null);
         }
 
         Symbol symbol = currentScope.lookup(id_name);
         if (symbol == null) {
             SymbolTable.error(assignNode.getCtx(),
                     assignNode.id.getToken(), "Undefined identifier " + id_name);
-            return null;
+            return annotate(assignNode, null);
         }
 
         TypeSymbol return_type = assignNode.exp.accept(this);
@@ -430,13 +396,13 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
             }
         }
 
-        return return_type;
+        return annotate(assignNode, return_type);
     }
 
     @Override
     public TypeSymbol visit(ASTNode.IsvoidNode isvoidNode) {
         isvoidNode.exp.accept(this);
-        return TypeSymbol.BOOL;
+        return annotate(isvoidNode, TypeSymbol.BOOL);
     }
 
     @Override
@@ -444,20 +410,20 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         String type_name = newTypeNode.type.getToken().getText();
 
         if (type_name.equals("SELF_TYPE")) {
-            return TypeSymbol.SELF_TYPE;
+            return annotate(newTypeNode, TypeSymbol.SELF_TYPE);
         }
 
         Symbol symbol = SymbolTable.globals.lookup(type_name);
         if (symbol == null) {
             SymbolTable.error(newTypeNode.getCtx(),
                     newTypeNode.type.getToken(), "new is used with undefined type " + type_name);
-            return null;
+            return annotate(newTypeNode, null);
         }
 
         if (symbol instanceof ClassSymbol) {
-            return ((ClassSymbol) symbol).getType();
+            return annotate(newTypeNode, ((ClassSymbol) symbol).getType());
         }
-        return null;
+        return annotate(newTypeNode, null);
     }
     @Override
     public TypeSymbol visit(ASTNode.FuncCallClassNode funcCallClassNode) {
@@ -467,7 +433,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         TypeSymbol function_type = funcCallClassNode.object.accept(this);
 
         if (function_type == null) {
-            return null;
+            return annotate(funcCallClassNode, null);
         }
 
         ClassSymbol lookupClass = null;
@@ -480,7 +446,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
                 SymbolTable.error(funcCallClassNode.getCtx(),
                         funcCallClassNode.atType.getToken(),
                         "Type of static dispatch cannot be SELF_TYPE");
-                return null;
+                return annotate(funcCallClassNode, null);
             }
 
             // Check that the static type exists
@@ -489,7 +455,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
                 SymbolTable.error(funcCallClassNode.getCtx(),
                         funcCallClassNode.atType.getToken(),
                         "Type " + static_type_name + " of static dispatch is undefined");
-                return null;
+                return annotate(funcCallClassNode, null);
             }
 
             lookupClass = (ClassSymbol) static_type_symbol;
@@ -500,7 +466,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
                         funcCallClassNode.atType.getToken(),
                         "Type " + static_type_name + " of static dispatch is not a superclass of type " +
                                 function_type.getName());
-                return null;
+                return annotate(funcCallClassNode, null);
             }
         } else {
             String object_type_name = function_type.getName();
@@ -516,21 +482,21 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         }
 
         if (lookupClass == null) {
-            return null;
+            return annotate(funcCallClassNode, null);
         }
 
         TypeSymbol declared_return_type = checkFunctionCall(lookupClass, function_name, funcCallClassNode.arguments,
                 funcCallClassNode.getCtx(), funcCallClassNode.id.getToken());
 
         if (declared_return_type == null) {
-            return null;
+            return annotate(funcCallClassNode, null);
         }
 
         if (declared_return_type.getName().equals("SELF_TYPE")) {
-            return function_type;
+            return annotate(funcCallClassNode, function_type);
         }
 
-        return declared_return_type;
+        return annotate(funcCallClassNode, declared_return_type);
     }
 
     @Override
@@ -538,11 +504,11 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         String function_name = funcCallNode.id.getToken().getText();
 
         if (current_class == null) {
-            return null;
+            return annotate(funcCallNode, null);
         }
 
-        return checkFunctionCall(current_class, function_name, funcCallNode.arguments, funcCallNode.getCtx(),
-                funcCallNode.id.getToken());
+        return annotate(funcCallNode, checkFunctionCall(current_class, function_name, funcCallNode.arguments,
+                funcCallNode.getCtx(), funcCallNode.id.getToken()));
     }
 
 
@@ -555,7 +521,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
                             condition_symbol.getName() + " instead of Bool");
         }
         whileNode.body.accept(this);
-        return TypeSymbol.OBJECT;
+        return annotate(whileNode, TypeSymbol.OBJECT);
     }
 
     @Override
@@ -569,7 +535,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         TypeSymbol then_symbol = ifNode.thenExp.accept(this);
         TypeSymbol else_symbol  = ifNode.elseExp.accept(this);
 
-        return join(then_symbol, else_symbol);
+        return annotate(ifNode, join(then_symbol, else_symbol));
     }
 
     @Override
@@ -613,7 +579,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
 
         // Return the LUB (join) of all branch types
         if (branch_types.isEmpty()) {
-            return TypeSymbol.OBJECT;
+            return annotate(caseNode, TypeSymbol.OBJECT);
         }
 
         TypeSymbol result = branch_types.getFirst();
@@ -621,7 +587,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
             result = join(result, branch_types.get(i));
         }
 
-        return result;
+        return annotate(caseNode, result);
     }
 
     @Override
@@ -637,7 +603,7 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         TypeSymbol symbol = letNode.body.accept(this);
 
         currentScope = savedScope;
-        return symbol;
+        return annotate(letNode, symbol);
     }
 
     @Override
@@ -677,27 +643,27 @@ public class ResolutionPassVisitor implements ASTVisitor<TypeSymbol> {
         for (ASTNode.Expression expr : blockNode.expressions) {
             last_type = expr.accept(this);
         }
-        return last_type;
+        return annotate(blockNode, last_type);
     }
 
     @Override
     public TypeSymbol visit(ASTNode.IntType intLiteral) {
-        return TypeSymbol.INT;
+        return annotate(intLiteral, TypeSymbol.INT);
     }
 
     @Override
     public TypeSymbol visit(ASTNode.StringType stringType) {
-        return TypeSymbol.STRING;
+        return annotate(stringType, TypeSymbol.STRING);
     }
 
     @Override
     public TypeSymbol visit(ASTNode.TrueType trueType) {
-        return TypeSymbol.BOOL;
+        return annotate(trueType, TypeSymbol.BOOL);
     }
 
     @Override
     public TypeSymbol visit(ASTNode.FalseType falseType) {
-        return TypeSymbol.BOOL;
+        return annotate(falseType, TypeSymbol.BOOL);
     }
 
     @Override
@@ -0,0 +1,23 @@
+class Grid {
+    sum(n : Int, width : Int, border : Int, scale : Int) : Int {
+        if n = 0 then 0 else
+            (if border = 1 then width * scale else n * scale fi) + sum(n - 1, width, border, scale)
+        fi
+    };
+    walk(i : Int, limit : Int, acc : Int, io : IO) : Int {
+        if i = limit then { io.out_int(acc); io.out_string("\n"); acc; } else
+            walk(i + 1, limit, acc + sum(i, 7, 0, 3), io)
+        fi
+    };
+};
+
+class Main inherits IO {
+    main() : Object {
+        let g : Grid <- new Grid, t : Int <- 0 in {
+            t <- g.walk(0, 200, 0, self);
+            t <- t + g.walk(0, 200, 1, self);
+            out_int(t);
+            out_string("\n");
+        }
+    };
+};
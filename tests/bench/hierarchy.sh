@@ -0,0 +1,35 @@
+#!/bin/bash
+#
+# Writes a program with ten inheritance chains of a thousand classes each,
+# and methods whose if, case and dispatch expressions type check against
+# classes far apart in a chain, for timing the compiler on a deep class
+# tree. Its main prints 0. The program is written to standard output rather
+# than kept here, as it is over 700KB; the arguments give the number of
+# chains and their length.
+#
+#   tests/bench/hierarchy.sh > deep.cl && time $COOLC deep.cl > /dev/null
+
+CHAINS=${1:-10}
+LENGTH=${2:-1000}
+
+awk -v chains="$CHAINS" -v length_="$LENGTH" 'BEGIN {
+    for (k = 0; k < chains; k++) {
+        printf "class C%d_0 { };\n", k
+        for (i = 1; i < length_; i++) {
+            printf "class C%d_%d inherits C%d_%d { };\n", k, i, k, i - 1
+        }
+    }
+    last = length_ - 1
+    print "class Main inherits IO {"
+    for (i = 0; i < 200 * chains; i++) {
+        k = i % chains
+        j = (i * 37) % length_
+        l = (i * 59) % length_
+        printf "  m%d(x : C%d_%d, y : C%d_%d) : C%d_0 { if true then x else (if false then y else new C%d_%d fi) fi };\n", \
+            i, k, last, k, j, k, k, l
+        printf "  n%d(x : C%d_%d) : Object { case x of p : C%d_%d => p; q : C%d_%d => q; r : C%d_%d => r; esac };\n", \
+            i, k, last, (k + 1) % chains, l, k, j, k, l
+    }
+    print "  main() : Object { out_int(0) };"
+    print "};"
+}'
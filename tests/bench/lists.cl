@@ -0,0 +1,31 @@
+class Node {
+    value : Int;
+    next : Node;
+    init(v : Int, n : Node) : Node { { value <- v; next <- n; self; } };
+    getValue() : Int { value };
+    getNext() : Node { next };
+};
+class Main inherits IO {
+    keep : Node;
+    label : String <- "round";
+    build(n : Int) : Node {
+        let list : Node, i : Int <- 0 in {
+            while i < n loop { list <- (new Node).init(i, list); i <- i + 1; } pool;
+            list;
+        }
+    };
+    sum(l : Node) : Int {
+        let s : Int <- 0 in { while not isvoid l loop { s <- s + l.getValue(); l <- l.getNext(); } pool; s; }
+    };
+    main() : Object {
+        let round : Int <- 0, total : Int <- 0, text : String <- "" in {
+            while round < 40 loop {
+                keep <- build(200);
+                total <- total + sum(keep) + sum(build(50));
+                text <- label.concat(" ").concat(text.substr(0, if text.length() < 30 then text.length() else 30 fi));
+                round <- round + 1;
+            } pool;
+            out_int(total).out_string("\n").out_string(text).out_string("\n");
+        }
+    };
+};
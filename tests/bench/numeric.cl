@@ -0,0 +1,35 @@
+class Main inherits IO {
+    -- sum of i * 12 and i * 8 over a range, indexed like a row-major matrix
+    rows(n : Int) : Int {
+        let i : Int <- 0, acc : Int <- 0 in {
+            while i < n loop {
+                acc <- acc + i * 12 + i * 8 - i * 7;
+                i <- i + 1;
+            } pool;
+            acc;
+        }
+    };
+    -- halving and scaling with negative values
+    halves(n : Int) : Int {
+        let i : Int <- 0 - n, acc : Int <- 0 in {
+            while i < n loop {
+                acc <- acc + i / 2 + i / 8 - i / ~4 + (i * 3) / 16;
+                i <- i + 3;
+            } pool;
+            acc;
+        }
+    };
+    digits(x : Int) : Int {
+        let count : Int <- 0 in {
+            while 0 < x loop { x <- x / 2; count <- count + 1; } pool;
+            count;
+        }
+    };
+    main() : Object {
+        {
+            out_int(rows(2000)).out_string("\n");
+            out_int(halves(3000)).out_string("\n");
+            out_int(digits(1000000)).out_string(" ").out_int(~7 / 2).out_string(" ").out_int(~7 / ~2).out_string(" ").out_int(7 * ~1).out_string("\n");
+        }
+    };
+};
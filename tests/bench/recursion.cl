@@ -0,0 +1,28 @@
+class Main inherits IO {
+    fib(n : Int) : Int {
+        if n < 2 then n else fib(n - 1) + fib(n - 2) fi
+    };
+
+    choose(n : Int, k : Int) : Int {
+        if k = 0 then 1 else
+        if k = n then 1 else
+            choose(n - 1, k - 1) + choose(n - 1, k)
+        fi fi
+    };
+
+    even(n : Int) : Bool { if n = 0 then true else odd(n - 1) fi };
+    odd(n : Int) : Bool { if n = 0 then false else even(n - 1) fi };
+
+    rev(s : String) : String {
+        if s.length() = 0 then s else rev(s.substr(1, s.length() - 1)).concat(s.substr(0, 1)) fi
+    };
+
+    main() : Object {
+        {
+            out_int(fib(22)); out_string("\n");
+            out_int(choose(18, 9)); out_string("\n");
+            if even(301) = true then out_string("even\n") else out_string("odd\n") fi;
+            out_string(rev("memoization of strings")); out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,50 @@
+-- Character counts, word splitting and reversal of a 70-character text, all
+-- through length and substr
+class Main inherits IO {
+    text : String <- "the quick brown fox jumps over the lazy dog and keeps running far away";
+
+    count(s : String, c : String) : Int {
+        let i : Int <- 0, n : Int <- 0 in {
+            while i < s.length() loop {
+                if s.substr(i, 1) = c then n <- n + 1 else n fi;
+                i <- i + 1;
+            } pool;
+            n;
+        }
+    };
+
+    reverse(s : String) : String {
+        let i : Int <- s.length(), r : String <- "" in {
+            while 0 < i loop {
+                i <- i - 1;
+                r <- r.concat(s.substr(i, 1));
+            } pool;
+            r;
+        }
+    };
+
+    words(s : String) : Int {
+        let i : Int <- 0, start : Int <- 0, n : Int <- 0 in {
+            while i <= s.length() loop {
+                if i = s.length() then { n <- n + 1; } else
+                if s.substr(i, 1) = " " then { n <- n + 1; start <- i + 1; } else 0 fi fi;
+                i <- i + 1;
+            } pool;
+            n;
+        }
+    };
+
+    main() : Object {
+        let k : Int <- 0, total : Int <- 0 in {
+            while k < 20 loop {
+                total <- total + count(text, "o") + words(text) + reverse(text).length();
+                k <- k + 1;
+            } pool;
+            out_int(total).out_string("\n");
+            out_string(reverse("stressed")).out_string("\n");
+            out_string(text.substr(0, 0)).out_string(text.substr(text.length(), 0)).out_string("|\n");
+            out_string(text.substr(4, 5)).out_string("\n");
+            out_string(text.substr(60, 10)).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,115 @@
+#!/bin/bash
+#
+# Compiles each program under tests/programs and tests/bench at -O0 and
+# compares what it prints with the .out file next to it, then compiles it
+# again with each variant below and compares the output with that of -O0.
+# A program reads its .in file, if there is one. Each program under
+# tests/semantic must instead be rejected with the errors in the .err file
+# next to it.
+#
+# COOLC is the command running the compiler, SPIM the simulator and
+# TRAP_HANDLER the Cool runtime it loads. Naming programs on the command
+# line checks only those.
+#
+#   COOLC="java -cp antlr-4.13.2-complete.jar:classes cool.compiler.Compiler" tests/check.sh
+
+COOLC=${COOLC:-java -cp "$CLASSPATH" cool.compiler.Compiler}
+SPIM=${SPIM:-spim}
+TRAP_HANDLER=${TRAP_HANDLER:-trap.handler}
+
+VARIANTS=(
+    "-O1"
+    "-O2"
+    "-O2 -unroll=1"
+    "-O2 -unroll=3"
+    "-O2 -int-cache=off"
+    "-O2 -int-cache=-2:2"
+    "-gc"
+    "-O2 -gc"
+    "-raw-attrs"
+    "-O2 -raw-attrs"
+    "-ropes"
+    "-O2 -ropes"
+    "-memo"
+    "-O2 -memo"
+    "-tile"
+    "-tile -raw-attrs"
+    "-schedule"
+    "-O2 -schedule"
+    "-O2 -gc -schedule"
+)
+
+TESTS=$(cd "$(dirname "$0")" && pwd)
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+failures=0
+
+fail() {
+    echo "FAIL $1"
+    failures=$((failures + 1))
+}
+
+# Output of the program compiled with the given switches, without the simulator's banner
+run() {
+    local program=$1
+    shift
+    local input=/dev/null
+    [ -f "${program%.cl}.in" ] && input=${program%.cl}.in
+    if ! $COOLC "$@" "$program" > "$WORK/out.s" 2> "$WORK/err" || [ -s "$WORK/err" ]; then
+        cat "$WORK/err"
+        return 1
+    fi
+    $SPIM -exception_file "$TRAP_HANDLER" -file "$WORK/out.s" < "$input" 2>&1 | grep -v \
+        -e '^SPIM Version' -e '^Copyright' -e '^All Rights Reserved' -e '^See the file README' \
+        -e '^Loaded: ' -e '^COOL program successfully executed$'
+}
+
+ONLY=("$@")
+
+selected() {
+    [ ${#ONLY[@]} -eq 0 ] && return 0
+    for only in "${ONLY[@]}"; do
+        [ "$only" = "$1" ] && return 0
+    done
+    return 1
+}
+
+for program in "$TESTS"/programs/*.cl "$TESTS"/bench/*.cl; do
+    [ -f "$program" ] || continue
+    name=$(basename "$program" .cl)
+    selected "$name" || continue
+
+    if ! run "$program" > "$WORK/O0.out"; then
+        fail "$name: does not compile"
+        continue
+    fi
+    if ! diff -q "$WORK/O0.out" "${program%.cl}.out" > /dev/null; then
+        fail "$name: -O0 output differs from $(basename "${program%.cl}.out")"
+    fi
+    for variant in "${VARIANTS[@]}"; do
+        if ! run "$program" $variant > "$WORK/variant.out"; then
+            fail "$name $variant: does not compile"
+        elif ! diff -q "$WORK/O0.out" "$WORK/variant.out" > /dev/null; then
+            fail "$name $variant: output differs from -O0"
+        fi
+    done
+done
+
+for program in "$TESTS"/semantic/*.cl; do
+    [ -f "$program" ] || continue
+    name=$(basename "$program" .cl)
+    selected "$name" || continue
+
+    # Errors are given relative to the program's directory, so they do not depend on where it is checked from
+    (cd "$(dirname "$program")" && $COOLC "$name.cl" 2>&1 > /dev/null) | sed '/^Compilation halted$/q' > "$WORK/err"
+    if ! diff -q "$WORK/err" "${program%.cl}.err" > /dev/null; then
+        fail "$name: errors differ from $(basename "${program%.cl}.err")"
+    fi
+done
+
+if [ $failures -gt 0 ]; then
+    echo "$failures failed"
+    exit 1
+fi
+echo "all passed"
@@ -0,0 +1,28 @@
+class Main inherits IO {
+    x : Int <- 5;
+    s : String <- "hello";
+    b : Int;
+    fact(n : Int) : Int {
+        if n = 0 then 1 else n * fact(n - 1) fi
+    };
+    fib(n : Int) : Int {
+        if n < 2 then n else fib(n - 1) + fib(n - 2) fi
+    };
+    main() : Object {
+        let i : Int <- 0, acc : Int in {
+            while i < 10 loop {
+                acc <- acc + i * 4;
+                i <- i + 1;
+            } pool;
+            out_int(acc).out_string("\n");
+            out_int(fact(x)).out_string("\n");
+            out_int(fib(15)).out_string("\n");
+            out_int(100 / 7).out_string(" ").out_int(~3 - 4).out_string("\n");
+            out_string(s.concat(" world").substr(2, 5)).out_string("\n");
+            out_int(s.length()).out_string("\n");
+            if not (b = 1) then out_string("notb\n") else out_string("b\n") fi;
+            if isvoid self then abort() else 0 fi;
+            out_string(type_name()).out_string("\n");
+        }
+    };
+};
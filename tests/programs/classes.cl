@@ -0,0 +1,48 @@
+class A {
+    v : Int <- 1;
+    name : String <- "A";
+    get() : Int { v };
+    set(x : Int) : SELF_TYPE { { v <- x; self; } };
+    who() : String { name };
+    clone() : SELF_TYPE { new SELF_TYPE };
+};
+class B inherits A {
+    w : Int <- v + 10;
+    who() : String { "B".concat(name) };
+    get() : Int { w + v };
+};
+class C inherits B {
+    z : A <- new B;
+};
+class Main inherits IO {
+    a : A <- new A;
+    b : A <- new B;
+    describe(o : Object) : String {
+        case o of
+            c : C => "C";
+            b : B => "B";
+            a : A => "A";
+            i : Int => "Int";
+            s : String => "String";
+            x : Object => "Object";
+        esac
+    };
+    main() : Object {
+        {
+            out_int(a.get()).out_string("\n");
+            out_int(b.get()).out_string("\n");
+            out_string(b.who()).out_string(b@A.who()).out_string("\n");
+            b.set(7); out_int(b.get()).out_string("\n");
+            out_string(describe(new C)).out_string(describe(b)).out_string(describe(3)).out_string(describe("s")).out_string(describe(true)).out_string("\n");
+            out_string(b.clone().type_name()).out_string("\n");
+            if a = b then out_string("eq\n") else out_string("ne\n") fi;
+            if 3 = 3 then out_string("eq\n") else out_string("ne\n") fi;
+            if "ab" = "a".concat("b") then out_string("eq\n") else out_string("ne\n") fi;
+            let c : C <- new C, n : Int <- 3 in {
+                n <- n + c.get();
+                out_int(n).out_string("\n");
+            };
+            out_int(in_int()).out_string("\n");
+        }
+    };
+};
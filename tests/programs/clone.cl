@@ -0,0 +1,46 @@
+class Counter {
+    n : Int <- 0;
+    step() : Int { 1 };
+    get() : Int { n };
+    add() : SELF_TYPE { { n <- n + step(); self; } };
+    run(k : Int) : SELF_TYPE {
+        let i : Int <- 0 in { while i < k loop { add(); i <- i + 1; } pool; self; }
+    };
+};
+
+class Double inherits Counter {
+    step() : Int { 2 };
+};
+
+class Triple inherits Counter {
+    step() : Int { 3 };
+};
+
+class Describer inherits IO {
+    describe(x : Object) : Int {
+        case x of
+            i : Int => i;
+            s : String => s.length();
+            c : Counter => c.get();
+            o : Object => 0;
+        esac
+    };
+    size(x : Object) : Int {
+        x.type_name().length() + describe(x)
+    };
+};
+
+class Main inherits IO {
+    main() : Object {
+        let d : Describer <- new Describer, total : Int <- 0, i : Int <- 0 in {
+            let c : Counter <- (new Double).run(20000) in out_int(c.get()); out_string("\n");
+            let c : Counter <- (new Triple).run(10000) in out_int(c.get()); out_string("\n");
+            let c : Counter <- (new Counter).run(5000) in out_int(c.get()); out_string("\n");
+            while i < 3000 loop {
+                total <- total + d.size(i) + d.size("abc") + d.size(new Triple);
+                i <- i + 1;
+            } pool;
+            out_int(total); out_string("\n");
+        }
+    };
+};
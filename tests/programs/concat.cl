@@ -0,0 +1,35 @@
+class Main inherits IO {
+    name : String <- "cool";
+    sep : String <- ", ";
+
+    greet(who : String, n : Int) : String {
+        "Hello ".concat(who).concat(sep).concat(name).concat("!").concat("")
+    };
+
+    literal() : String { "a".concat("b").concat("c").concat("") };
+
+    empty(s : String) : String { "".concat(s).concat("") };
+
+    shared(s : String) : String {
+        let t : String <- s.concat("-") in t.concat(t).concat(t)
+    };
+
+    main() : Object {
+        let acc : String <- "", i : Int <- 0, g : String in {
+            g <- greet("world", 3);
+            out_string(g).out_string("\n");
+            out_int(g.length()).out_string("\n");
+            out_string(g.substr(6, 5)).out_string("\n");
+            out_string(literal()).out_string("\n");
+            out_string(empty("x")).out_string(empty("")).out_string("\n");
+            out_string(shared("ab")).out_string("\n");
+            while i < 20 loop {
+                acc <- acc.concat("[").concat(name.substr(i - (i / 4) * 4, 1)).concat("]");
+                i <- i + 1;
+            } pool;
+            out_string(acc).out_string("\n");
+            out_int(acc.length()).out_string("\n");
+            if acc.concat("x").concat("y") = acc.concat("xy") then out_string("eq\n") else out_string("ne\n") fi;
+        }
+    };
+};
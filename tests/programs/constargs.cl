@@ -0,0 +1,34 @@
+class Shape {
+    area(w : Int, h : Int) : Int { w * h };
+};
+
+class Square inherits Shape {
+    area(w : Int, h : Int) : Int { w * w };
+};
+
+class Main inherits IO {
+    count : Int <- 0;
+
+    -- only direct calls reach it, and it never reads skipped
+    helper(x : Int, skipped : Int) : Int { x + 1 };
+
+    -- b is passed on unchanged by the recursive call
+    pow(b : Int, e : Int) : Int { if e = 0 then 1 else b * pow(b, e - 1) fi };
+
+    -- always passed void
+    describe(o : Object, n : Int) : String {
+        if isvoid o then "void ".concat(if n = 0 then "" else describe(o, n - 1) fi) else o.type_name() fi
+    };
+
+    main() : Object {
+        let s : Shape <- new Square, r : Shape <- new Shape, none : Object in {
+            out_int(s.area(3, 4)).out_string(" ").out_int(r.area(3, 4)).out_string(" ");
+            out_int((new Square).area(5, 1)).out_string("\n");
+            out_int(helper(1, count <- count + 1)).out_string(" ");
+            out_int(helper(1, count <- count + 10)).out_string(" ");
+            out_int(count).out_string("\n");
+            out_int(pow(2, 10)).out_string(" ").out_int(pow(2, 0)).out_string("\n");
+            out_string(describe(none, 2)).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,26 @@
+class Main inherits IO {
+    w : Int <- 6;
+    h : Int <- 7;
+    s : String <- "abcdef";
+    area() : Int { w * h + w * h };
+    bump() : Int { { w <- w + 1; w; } };
+    spin(n : Int) : Int {
+        let i : Int <- 0, acc : Int <- 0 in {
+            while i < n loop {
+                acc <- acc + (w * h) + s.length() + s.length();
+                i <- i + 1;
+            } pool;
+            acc;
+        }
+    };
+    mixed() : Int { w + bump() + w };
+    main() : Object {
+        {
+            out_int(area()).out_string("\n");
+            out_int(spin(1000)).out_string("\n");
+            out_int(mixed()).out_string("\n");
+            out_int(area()).out_string("\n");
+            out_string(s.substr(1, 2).concat(s.substr(1, 2))).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,6 @@
+-- An unused sum that overflows is still reported, as at -O0
+class Main inherits IO {
+    main() : Object {
+        let big : Int <- 2147483647, x : Int <- big + 1 in out_string("hi\n")
+    };
+};
@@ -0,0 +1,65 @@
+class A {
+    v : Int <- 3;
+    get() : Int { v };
+    set(x : Int) : SELF_TYPE { { v <- x; self; } };
+    name() : String { "A" };
+    dup() : SELF_TYPE { new SELF_TYPE };
+};
+class B inherits A {
+    name() : String { "B" };
+    both() : String { name().concat(self@A.name()) };
+};
+class C inherits B {
+    name() : String { "C" };
+};
+class Main inherits IO {
+    count : Int;
+    sum3(a : Int, b : Int, c : Int) : Int { a * 100 + b * 10 + c };
+    classify(o : Object) : String {
+        case o of
+            c : C => "C";
+            b : B => "B";
+            a : A => "A";
+            i : Int => "Int";
+            s : String => "String";
+            x : Object => "Object";
+        esac
+    };
+    collatz(n : Int) : Int {
+        let steps : Int <- 0 in {
+            while not n = 1 loop {
+                if n - (n / 2) * 2 = 0 then n <- n / 2 else n <- 3 * n + 1 fi;
+                steps <- steps + 1;
+                count <- count + 1;
+            } pool;
+            steps;
+        }
+    };
+    main() : Object {
+        let a : A <- new A, b : B <- new B, c : C <- new C, k : Int <- 2 + 3 * 4, z : A in {
+            out_int(sum3(1, 2, 3)).out_string("\n");
+            out_int(k).out_string(" ").out_int(~k + 100 / 3).out_string("\n");
+            out_string(classify(c)).out_string(classify(b)).out_string(classify(a));
+            out_string(classify(5)).out_string(classify("s")).out_string(classify(self)).out_string("\n");
+            out_string(b.both()).out_string(c.both()).out_string("\n");
+            out_int(collatz(27)).out_string(" ").out_int(count).out_string("\n");
+            out_int(k).out_string("\n");
+            a.set(7);
+            let d : A <- a.dup() in out_int(a.get()).out_string(" ").out_int(d.get()).out_string("\n");
+            if isvoid z then out_string("void\n") else out_string("nonvoid\n") fi;
+            if "abc" = "ab".concat("c") then out_string("seq\n") else out_string("sne\n") fi;
+            if a = a then out_string("aeq\n") else out_string("ane\n") fi;
+            if 3 < 4 then if 4 <= 4 then out_string("le\n") else 0 fi else 0 fi;
+            let i : Int <- 0, s : String <- "" in {
+                while i < 5 loop {
+                    let j : Int <- i in
+                        while 0 < j loop { s <- s.concat("*"); j <- j - 1; } pool;
+                    s <- s.concat("|");
+                    i <- i + 1;
+                } pool;
+                out_string(s).out_string("\n");
+            };
+            let d : A <- c.dup() in out_string(c.name()).out_string(d.name()).out_string(c.type_name()).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,48 @@
+class Acc {
+    total : Int <- 0;
+    name : String <- "";
+    flag : Bool <- false;
+    other : Acc;
+    last : Int <- 7;
+
+    add(x : Int) : SELF_TYPE {
+        {
+            last <- x;
+            total <- total + x;
+            last <- x * 2;
+            self;
+        }
+    };
+    reset(x : Int) : Int {
+        {
+            total <- 1;
+            if x < 0 then total <- 2 else total <- 3 fi;
+            total;
+        }
+    };
+    touch(x : Int) : Int {
+        {
+            total <- x;
+            x + 1;
+            x * 3;
+            total <- total + 1;
+            total;
+        }
+    };
+    get() : Int { total + last };
+};
+
+class Main inherits IO {
+    main() : Object {
+        let a : Acc <- new Acc, i : Int <- 0, unused : Int <- 0 in {
+            while i < 20000 loop {
+                a.add(i);
+                unused <- unused + i;
+                i <- i + 1;
+            } pool;
+            out_int(a.get()); out_string("\n");
+            out_int(a.reset(3) + a.reset(0 - 1)); out_string("\n");
+            out_int(a.touch(5)); out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,30 @@
+-- = on Int and Bool compares the values, and on Strings the pointers, then
+-- the lengths, then the characters. = on Objects holding them still
+-- compares contents, and on other objects compares pointers.
+class Main inherits IO {
+    flag : Bool;
+    word : String <- "alpha";
+    yes(c : Bool) : String { if c = true then "t " else "f " fi };
+    ints(x : Int, y : Int) : SELF_TYPE {
+        out_string(yes(x = y)).out_string(yes(x + 1 = y + 1)).out_string(yes(~x = y))
+    };
+    bools(a : Bool, b : Bool) : SELF_TYPE {
+        out_string(yes(a = b)).out_string(yes(not a = b)).out_string(yes(a = (1 < 2)))
+    };
+    strings(s : String, t : String) : SELF_TYPE {
+        out_string(yes(s = t)).out_string(yes(t = s)).out_string(yes(s.concat("x") = t.concat("x")))
+    };
+    main() : Object {
+        let i : Int <- 3, o : Object <- 3, p : Object <- 1 + 2, r : Object <- 4,
+            q : Object <- "al".concat("pha"), word2 : Object <- word, beta : Object <- "beta",
+            m : Main <- self, n : Main <- new Main, v : Object, w : Object in {
+            ints(0, 0).ints(1, 2).ints(~5, ~5).ints(2147483646, ~2147483646).ints(i, i.copy()).out_string("\n");
+            bools(true, true).bools(true, false).bools(false, true).bools(flag, false).bools(flag, 1 = 2).out_string("\n");
+            strings(word, word).strings(word, "alpha").strings(word, "al".concat("pha")).out_string("\n");
+            strings(word, "alphb").strings(word, "alph").strings(word, "").strings("", "").out_string("\n");
+            strings(word.substr(1, 3), "lph").strings(word.substr(0, 2), word.substr(3, 2)).out_string("\n");
+            out_string(yes(o = p)).out_string(yes(o = r)).out_string(yes(q = word2)).out_string(yes(q = beta));
+            out_string(yes(m = self)).out_string(yes(m = n)).out_string(yes(v = w)).out_string(yes(v = o)).out_string("\n");
+        }
+    };
+};
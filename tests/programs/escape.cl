@@ -0,0 +1,48 @@
+class Counter {
+    n : Int;
+    add(k : Int) : SELF_TYPE { { n <- n + k; self; } };
+    get() : Int { n };
+};
+
+class Pair {
+    a : Int;
+    b : Int;
+    set(x : Int, y : Int) : Pair { { a <- x; b <- y; self; } };
+    sum() : Int { a + b };
+};
+
+class Keeper {
+    kept : Counter;
+    keep(c : Counter) : Counter { kept <- c };
+};
+
+class Main inherits IO {
+    k : Keeper <- new Keeper;
+
+    step(i : Int) : Int {
+        let p : Pair <- new Pair, c : Counter <- new Counter in {
+            c.add(i);
+            c.add(1);
+            p.set(i, c.get()).sum();
+        }
+    };
+
+    leak(i : Int) : Counter {
+        let c : Counter <- new Counter in c.add(i)
+    };
+
+    main() : Object {
+        let total : Int <- 0, i : Int <- 0 in {
+            while i < 2000 loop {
+                total <- total + step(i);
+                total <- total + leak(i).get();
+                k.keep((new Counter).add(i));
+                i <- i + 1;
+            } pool;
+            out_int(total);
+            out_string("\n");
+            out_int(k.keep((new Counter).add(7)).get());
+            out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,18 @@
+-- Attribute initializers precomputed at compile time must see the side
+-- effects of call arguments in the order the generated code runs them:
+-- arguments last to first, then the receiver.
+class Main inherits IO {
+    a : Int <- f();
+    b : String <- h();
+    c : String <- k();
+    d : Int <- m();
+    f() : Int { let x : Int <- 1 in g(x <- 5, x) };
+    g(p : Int, q : Int) : Int { q };
+    h() : String { let t : String <- "ab" in t.concat(t <- "cd") };
+    k() : String { let n : Int <- 1 in "abcdef".substr(n <- 2, n) };
+    m() : Int { let x : Int <- 1, y : Int in { y <- g(x, x <- x + 10); y + x * 100; } };
+    main() : Object {
+        out_string("a=").out_int(a).out_string(" b=").out_string(b).out_string(" c=").out_string(c)
+            .out_string(" d=").out_int(d).out_string("\n")
+    };
+};
@@ -0,0 +1,33 @@
+-- type_name is folded for receivers of exact type, copy is dropped for
+-- Int, Bool and String, and dispatches with a single target are direct
+class Base {
+    who() : String { "base" };
+    name() : String { type_name() };
+};
+class Leaf inherits Base {
+    who() : String { "leaf" };
+};
+class Other inherits Base {
+    only() : String { "other" };
+};
+class Main inherits IO {
+    leaf : Leaf <- new Leaf;
+    base : Base <- new Leaf;
+    other : Other <- new Other;
+    yes(c : Bool) : String { if c = true then "t " else "f " fi };
+    line(s : String) : SELF_TYPE { out_string(s).out_string("\n") };
+    bang(s : String) : String { s.concat("!") };
+    main() : Object {
+        let x : Int <- 7, b : Bool <- 1 < 2, s : String <- "str", l : Leaf <- leaf, o : Object <- base in {
+            line(leaf.type_name()).line(base.type_name()).line(other.type_name()).line(o.type_name());
+            line(new Base.type_name()).line((new Leaf).type_name()).line(self.type_name());
+            line(x.type_name()).line(5.type_name()).line(b.type_name()).line(s.type_name());
+            line("a".concat("b").type_name()).line(leaf.name()).line(base.name()).line(new Base.name());
+            line(leaf.who()).line(base.who()).line(other.who()).line(other.only());
+            out_int(x.copy() + 1).out_string(" ").out_string(bang(s.copy())).out_string(" ");
+            out_string(yes(x.copy() = x)).out_string(yes(b.copy() = b)).out_string(yes(s.copy() = s));
+            out_string(yes(l.copy() = l)).out_string(yes(l = leaf)).out_string("\n");
+            line(l.copy().type_name()).line(o.copy().type_name());
+        }
+    };
+};
@@ -0,0 +1,10 @@
+-- type_name on a void receiver of a class without subclasses still aborts
+class Leaf {
+    who() : String { "leaf" };
+};
+class Main inherits IO {
+    leaf : Leaf;
+    main() : Object {
+        { out_string("before\n"); out_string(leaf.type_name()); out_string("not reached\n"); }
+    };
+};
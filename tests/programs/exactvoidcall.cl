@@ -0,0 +1,10 @@
+-- A direct call on a void receiver of a class without subclasses still aborts
+class Leaf {
+    who() : String { "leaf" };
+};
+class Main inherits IO {
+    leaf : Leaf;
+    main() : Object {
+        { out_string(new Leaf.who()).out_string("\n"); out_string(leaf.who()); out_string("not reached\n"); }
+    };
+};
@@ -0,0 +1,17 @@
+-- Under -gc, an Int kept unboxed in a frame must not look like a pointer
+-- to the collector. The loop allocates while it holds values running from
+-- the start of the data segment into the heap, and negative and odd ones.
+class Main inherits IO {
+    last : Main;
+    main() : Object {
+        let i : Int <- 268435456, n : Int <- 0, m : Int <- ~2147483647 - 1 in {
+            while i < 268435456 + 262144 loop {
+                last <- new Main;
+                i <- i + 4;
+                n <- n + 1;
+                m <- m + 3;
+            } pool;
+            out_int(i).out_string(" ").out_int(n).out_string(" ").out_int(m).out_string("\n");
+        }
+    };
+};
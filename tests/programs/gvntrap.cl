@@ -0,0 +1,17 @@
+-- SPIM reports each overflow and carries on, so a repeated sum that
+-- overflows is reported again
+class Main inherits IO {
+    a : Int;
+    b : Int;
+    main() : Object {
+        let big : Int <- 2147483647 in {
+            out_string("a: ");
+            a <- big + 1;
+            out_string("b: ");
+            b <- big + 1;
+            out_string("c: ");
+            a <- 1 + big;
+            out_string("done\n");
+        }
+    };
+};
@@ -0,0 +1,36 @@
+class A inherits IO {
+    a : Int <- count();
+    tag : String <- name();
+    count() : Int { 1 };
+    name() : String { "A" };
+    show_a() : Object { out_string(tag).out_int(a).out_string("\n") };
+    show_b() : Object { out_string("?\n") };
+};
+class B inherits A {
+    b : Int <- a + 10;
+    name() : String { "B" };
+    show_b() : Object { out_string(tag).out_int(a).out_int(b).out_string("\n") };
+};
+class C inherits B {
+    c : Int;
+    count() : Int { 5 };
+    show() : Object { out_string(tag).out_int(a).out_int(b).out_int(c).out_string("\n") };
+};
+class P { x : Int; y : Int; getx() : Int { x }; setx(v : Int) : P { { x <- v; self; } }; };
+class Q inherits P { z : Bool; };
+class Main inherits IO {
+    main() : Object {
+        let i : Int <- 0, s : Int <- 0, p : P in {
+            (new A).show_a();
+            (new C).show();
+            (new B).show_b();
+            while i < 200 loop {
+                p <- new Q;
+                s <- s + p.setx(i).getx();
+                new P;
+                i <- i + 1;
+            } pool;
+            out_int(s).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,17 @@
+class Main inherits IO {
+    fib(n : Int) : Int { if n < 2 then n else fib(n - 1) + fib(n - 2) fi };
+    main() : Object {
+        let i : Int <- 0, s : Int <- 0, big : Int <- 1000, neg : Int <- 0 in {
+            while i < 3000 loop {
+                s <- s + i;
+                big <- big + 1;
+                neg <- neg - 1;
+                i <- i + 1;
+            } pool;
+            out_int(s).out_string(" ").out_int(big).out_string(" ").out_int(neg).out_string("\n");
+            out_int(fib(18)).out_string("\n");
+            out_int(~128).out_string(" ").out_int(~129 + 0 * i).out_string(" ").out_int(1023 + 0 * i).out_string(" ").out_int(1024 + 0 * i).out_string("\n");
+            if (i - 2999) = 1 then out_string("one\n") else out_string("?\n") fi;
+        }
+    };
+};
@@ -0,0 +1,40 @@
+class Main inherits IO {
+    w : Int <- 6;
+    h : Int <- 7;
+    s : String <- "abcdef";
+    spin(n : Int) : Int {
+        let i : Int <- 0, acc : Int <- 0 in {
+            while i < n loop {
+                acc <- acc + (w * h + 3) + s.length();
+                i <- i + 1;
+            } pool;
+            acc;
+        }
+    };
+    nested(n : Int) : Int {
+        let i : Int <- 0, acc : Int <- 0 in {
+            while i < n loop {
+                let j : Int <- 0 in
+                    while j < n loop {
+                        acc <- acc + i * n + w;
+                        j <- j + 1;
+                    } pool;
+                i <- i + 1;
+            } pool;
+            acc;
+        }
+    };
+    zero(d : Int) : Int {
+        let i : Int <- 0, acc : Int <- 0 in {
+            while i < 0 loop { acc <- acc + 100 / d; i <- i + 1; } pool;
+            acc;
+        }
+    };
+    main() : Object {
+        {
+            out_int(spin(1000)).out_string("\n");
+            out_int(nested(30)).out_string("\n");
+            out_int(zero(0)).out_string("\n");
+        }
+    };
+};
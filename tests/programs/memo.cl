@@ -0,0 +1,67 @@
+-- Methods -memo must leave alone, next to ones it memoizes
+class Base {
+    step(n : Int) : Int { n };
+    -- calls a method a subclass overrides
+    twice(n : Int) : Int { if n = 0 then 0 else step(n) + twice(n - 1) fi };
+    -- overridden itself
+    depth(n : Int) : Int { if n = 0 then 1 else depth(n - 1) + 1 fi };
+    -- reads self
+    who(n : Int) : String { if n = 0 then type_name() else who(n - 1) fi };
+};
+
+class Sub inherits Base {
+    step(n : Int) : Int { n * 2 };
+    depth(n : Int) : Int { if n = 0 then 100 else depth(n - 1) + 100 fi };
+};
+
+class Main inherits IO {
+    count : Int <- 0;
+
+    -- reads an attribute
+    counted(n : Int) : Int {
+        if n = 0 then count else counted(n - 1) + 1 fi
+    };
+
+    -- prints
+    loud(n : Int) : Int {
+        if n = 0 then { out_string("."); 0; } else loud(n - 1) + 1 fi
+    };
+
+    -- mutual recursion
+    even(n : Int) : Bool { if n = 0 then true else odd(n - 1) fi };
+    odd(n : Int) : Bool { if n = 0 then false else even(n - 1) fi };
+
+    -- keyed by Strings made at run time
+    as(s : String) : Int {
+        if s.length() = 0 then 0 else
+        if s.substr(0, 1) = "a" then 1 + as(s.substr(1, s.length() - 1)) else as(s.substr(1, s.length() - 1)) fi fi
+    };
+
+    -- every call passes the same k, which -O2 would otherwise make constant
+    scaled(n : Int, k : Int) : Int {
+        if n = 0 then 0 else k + scaled(n - 1, k) fi
+    };
+
+    main() : Object {
+        let s : String <- "", i : Int <- 0, b : Base <- new Base, u : Base <- new Sub in {
+            count <- 5;
+            out_int(counted(3)).out_string(" ");
+            count <- 7;
+            out_int(counted(3)).out_string("\n");
+            out_int(loud(2)).out_int(loud(2)).out_string("\n");
+            out_int(u.twice(5)).out_string(" ").out_int(b.twice(5)).out_string(" ").out_int(u.twice(5)).out_string("\n");
+            out_int(b.depth(3)).out_string(" ").out_int(u.depth(3)).out_string(" ").out_int(b.depth(3)).out_string("\n");
+            out_string(b.who(2)).out_string(" ").out_string(u.who(2)).out_string(" ").out_string(b.who(2)).out_string("\n");
+            if even(41) = true then out_string("even ") else out_string("odd ") fi;
+            if odd(41) = true then out_string("odd ") else out_string("even ") fi;
+            if even(40) = true then out_string("even\n") else out_string("odd\n") fi;
+            while i < 12 loop {
+                s <- s.concat(if i - (i / 3) * 3 = 0 then "a" else "b" fi);
+                out_int(as(s)).out_string(" ").out_int(as("x".concat(s))).out_string(" ");
+                i <- i + 1;
+            } pool;
+            out_string("\n");
+            out_int(scaled(10, 3)).out_string(" ").out_int(scaled(20, 3)).out_string(" ").out_int(scaled(10, 3)).out_string("\n");
+        }
+    };
+};
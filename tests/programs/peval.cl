@@ -0,0 +1,45 @@
+class Config {
+    fib(n : Int) : Int { if n < 2 then n else fib(n - 1) + fib(n - 2) fi };
+    fact(n : Int) : Int { if n = 0 then 1 else n * fact(n - 1) fi };
+    banner(s : String, n : Int) : String {
+        let r : String <- "" , i : Int <- 0 in {
+            while i < n loop { r <- r.concat(s); i <- i + 1; } pool;
+            r.concat("!");
+        }
+    };
+    name() : String { "config" };
+    forever(n : Int) : Int { forever(n + 1) };
+    width : Int <- fib(20);
+    big : Int <- fact(20);
+    line : String <- banner("=-", 5);
+    label : String <- name().concat(":").concat(line.substr(0, 3));
+    shouty : String <- self@Config.name().substr(0, 3);
+    ok : Bool <- fib(10) = 55;
+    loops : Int <- 0;
+    getWidth() : Int { width };
+    getBig() : Int { big };
+    getLine() : String { line };
+    getLabel() : String { label };
+    getShouty() : String { shouty };
+    getOk() : Bool { ok };
+};
+
+class Sub inherits Config {
+    name() : String { "sub" };
+};
+
+class Main inherits IO {
+    c : Config <- new Config;
+    s : Config <- new Sub;
+    n : Int <- c.fib(15);
+    x : Int <- 1 + 2;
+    main() : Object {
+        {
+            out_int(c.getWidth()).out_string(" ").out_int(n).out_string("\n");
+            out_string(c.getLine()).out_string(" ").out_string(c.getLabel()).out_string(" ").out_string(s.getLabel()).out_string("\n");
+            out_string(c.getShouty()).out_string(" ").out_string(s.getShouty()).out_string("\n");
+            if c.getOk() = true then out_string("ok\n") else out_string("no\n") fi;
+            out_int(c.getBig()).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,14 @@
+class Main inherits IO {
+    io : IO <- new IO;
+    main() : Object {
+        let i : Int <- 0 in {
+            while i < 200 loop {
+                out_string("row ").out_int(i).out_string(": ").out_string("value = ").out_int(i * i - 5000).out_string("\n");
+                io.out_string("via attr ").out_int(i).out_string("\n");
+                i <- i + 1;
+            } pool;
+            out_string("done").out_string("\n");
+            out_int(~2147483647 - 1).out_string(" ").out_int(0).out_string(" ").out_int(2147483647).out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,30 @@
+-- Buffered prints must come out before an instruction that traps, as
+-- unbuffered ones do. SPIM reports the overflow and goes on, leaving the
+-- result register as it was, so results that overflow are kept but not
+-- printed.
+class Main inherits IO {
+    result : Int;
+    add(x : Int, y : Int) : Int {
+        let r : Int in { out_string("add "); r <- x + y; out_int(y).out_string(": "); r; }
+    };
+    sub(x : Int, y : Int) : Int {
+        let r : Int in { out_string("sub "); r <- x - y; out_int(y).out_string(": "); r; }
+    };
+    neg(x : Int) : Int {
+        let r : Int in { out_string("neg "); r <- ~x; out_int(x).out_string(": "); r; }
+    };
+    main() : Object {
+        let big : Int <- 2147483647 in {
+            out_int(add(big, ~1)).out_string("\n");
+            result <- add(big, 1);
+            out_string("overflow\n");
+            out_int(sub(~big, 1)).out_string("\n");
+            result <- sub(~big, 2);
+            out_string("overflow\n");
+            out_int(neg(5)).out_string("\n");
+            result <- neg(~big - 1);
+            out_string("overflow\n");
+            out_string("done\n");
+        }
+    };
+};
@@ -0,0 +1,48 @@
+class Stats {
+    count : Int;
+    sum : Int;
+    max : Int;
+    odd : Bool;
+    last : Object;
+
+    add(x : Int) : Stats {
+        {
+            count <- count + 1;
+            sum <- sum + x;
+            if max < x then max <- x else 0 fi;
+            odd <- odd = false;
+            self;
+        }
+    };
+
+    keep(o : Object) : Object { last <- o };
+    getCount() : Int { count };
+    getSum() : Int { sum };
+    getMax() : Int { max };
+    isOdd() : Bool { odd };
+};
+
+class Main inherits IO {
+    s : Stats <- new Stats;
+    total : Int <- 5;
+
+    main() : Object {
+        let i : Int <- 0, c : Stats in {
+            while i < 3000 loop {
+                s.add(i - (i / 7) * 5);
+                total <- total + 1;
+                i <- i + 1;
+            } pool;
+            s.keep(s.getMax());
+            c <- s.copy();
+            c.add(100000);
+            out_int(s.getCount()); out_string(" ");
+            out_int(s.getSum()); out_string(" ");
+            out_int(s.getMax()); out_string(" ");
+            out_int(c.getMax()); out_string(" ");
+            out_int(total); out_string(" ");
+            if s.isOdd() = true then out_string("odd") else out_string("even") fi;
+            if s = c then out_string(" same\n") else out_string(" different\n") fi;
+        }
+    };
+};
@@ -0,0 +1,32 @@
+class Main inherits IO {
+    build(n : Int, piece : String) : String {
+        let s : String <- "", i : Int <- 0 in {
+            while i < n loop {
+                s <- s.concat(piece);
+                i <- i + 1;
+            } pool;
+            s;
+        }
+    };
+
+    main() : Object {
+        let a : String <- build(1500, "abc"),
+            b : String <- build(500, "abcabcabc"),
+            c : String <- "start:".concat(build(20, "xy")).concat(":end"),
+            r : String <- build(40, "0123456789"),
+            o : Object <- r,
+            rc : String <- r.copy() in {
+            out_int(a.length()); out_string("\n");
+            if a = b then out_string("equal\n") else out_string("different\n") fi;
+            out_string(a.substr(2990, 10)); out_string("\n");
+            out_string(c); out_string("\n");
+            out_string(c.concat(c).substr(40, 20).concat("|")); out_string("\n");
+            out_string(o.type_name()); out_string("\n");
+            case o of x : String => out_string(x.substr(395, 5)); y : Object => out_string("?"); esac;
+            out_string("\n");
+            out_string(rc.concat(r).substr(790, 10)); out_string("\n");
+            if build(3, "ab") = "ababab" then out_string("short ok\n") else out_string("short bad\n") fi;
+            out_string(b.substr(0, 12).concat(build(8, "z"))); out_string("\n");
+        }
+    };
+};
@@ -0,0 +1,27 @@
+-- Loads and stores close together, through self, another object and a copy
+class Cell {
+    a : Int <- 1;
+    b : Int <- 2;
+    c : Int <- 3;
+    next : Cell;
+    rotate() : Cell { let t : Int <- a in { a <- b; b <- c; c <- t; self; } };
+    link(n : Cell) : Cell { { next <- n; self; } };
+    pull() : Int { { a <- next.get() + a; b <- a + b; c <- b + c; a + b + c; } };
+    get() : Int { a * 100 + b * 10 + c };
+};
+
+class Main inherits IO {
+    main() : Object {
+        let x : Cell <- new Cell, y : Cell, i : Int <- 0, s : Int <- 0 in {
+            y <- x.copy();
+            x.link(y);
+            y.link(x);
+            while i < 10 loop {
+                s <- s + x.rotate().get() - y.get();
+                s <- s + x.pull();
+                i <- i + 1;
+            } pool;
+            out_int(s).out_string(" ").out_int(x.get()).out_string(" ").out_int(y.get()).out_string("\n");
+        }
+    };
+};
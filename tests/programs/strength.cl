@@ -0,0 +1,35 @@
+class Main inherits IO {
+    show(x : Int) : SELF_TYPE { out_int(x).out_string(" ") };
+    products(x : Int) : SELF_TYPE {
+        {
+            show(x * 0).show(x * 1).show(x * ~1).show(x * 2).show(x * 3).show(x * 7);
+            show(x * 8).show(x * 9).show(x * ~8).show(12 * x).show(x * 1000);
+            out_string("\n");
+        }
+    };
+    quotients(x : Int) : SELF_TYPE {
+        {
+            show(x / 1).show(x / ~1).show(x / 2).show(x / ~2).show(x / 4).show(x / 8);
+            show(x / ~8).show(x / 1024).show(x / 3).show(x / ~7);
+            out_string("\n");
+        }
+    };
+    -- i * c with i stepping by 3 becomes an induction variable
+    stepped(n : Int) : Int {
+        let i : Int <- 0 - n, acc : Int <- 0 in {
+            while i < n loop {
+                acc <- acc + i * 5 - i * 16 + (i * ~6) / 4;
+                i <- i + 3;
+            } pool;
+            acc;
+        }
+    };
+    main() : Object {
+        {
+            products(0).products(13).products(~13).products(2147483647).products(~2147483647 - 1);
+            quotients(0).quotients(1).quotients(~1).quotients(1023).quotients(~1023).quotients(~1025);
+            quotients(2147483647).quotients(~2147483647);
+            out_int(stepped(100)).out_string(" ").out_int(stepped(0)).out_string("\n");
+        }
+    };
+};
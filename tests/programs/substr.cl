@@ -0,0 +1,17 @@
+-- substr checks its bounds inline and copies in range; out of range it
+-- aborts through String.substr. In the last call start + length overflows.
+class Main inherits IO {
+    s : String <- "abcdef";
+    show(start : Int, length : Int) : SELF_TYPE {
+        out_string("[").out_string(s.substr(start, length)).out_string("]\n")
+    };
+    main() : Object {
+        {
+            show(0, 6).show(0, 0).show(6, 0).show(2, 3).show(5, 1).show(0, 1);
+            out_string("".substr(0, 0)).out_string("|\n");
+            out_string(s.substr(1, 2).concat(s.substr(4, 2))).out_string("\n");
+            show(1, 2147483647);
+            out_string("not reached\n");
+        }
+    };
+};
@@ -0,0 +1,10 @@
+-- A substr ending one past the end of its String aborts
+class Main inherits IO {
+    s : String <- "abcdef";
+    show(start : Int, length : Int) : SELF_TYPE {
+        out_string("[").out_string(s.substr(start, length)).out_string("]\n")
+    };
+    main() : Object {
+        show(3, 3).show(4, 3).out_string("not reached\n")
+    };
+};
@@ -0,0 +1,10 @@
+-- A substr with a negative start aborts
+class Main inherits IO {
+    s : String <- "abcdef";
+    show(start : Int, length : Int) : SELF_TYPE {
+        out_string("[").out_string(s.substr(start, length)).out_string("]\n")
+    };
+    main() : Object {
+        show(0, 2).show(~1, 2).out_string("not reached\n")
+    };
+};
@@ -0,0 +1,39 @@
+-- Int trees over constants, locals, formals and attributes
+class Main inherits IO {
+    a : Int <- 7;
+    b : Int <- ~3;
+    -- Results of sums that overflow: SPIM leaves them unspecified
+    sink : Int;
+    show(x : Int) : SELF_TYPE { out_int(x).out_string(" ") };
+    yes(c : Bool) : String { if c = true then "t " else "f " fi };
+    trees(x : Int, y : Int) : SELF_TYPE {
+        let z : Int <- x - y in {
+            show(x + 1).show(x + 32767).show(x + 32768).show(x - 32768).show(x - 32769);
+            show(1 + x).show(~x + y).show(x * 4).show(8 * x).show(x * 3).show(x * ~2);
+            show(x / 4).show(x / y).show((x + y) * (x - y) + z / 2);
+            show(a * x + b * y - (a - b) * (z + 1)).show(((x + 1) + (y + 2)) + ((z + 3) + (a + 4)));
+            out_string(yes(x < 0)).out_string(yes(x < 32767)).out_string(yes(x <= 32767)).out_string(yes(x <= ~32768));
+            out_string(yes(x < y)).out_string(yes(x <= y)).out_string(yes(x = y)).out_string(yes(x + 1 = z + y + 1));
+            out_string(yes(a < x * 2)).out_string(yes(1 < 2)).out_string("\n");
+        }
+    };
+    -- Sums with an immediate operand trap as the others do
+    overflow(max : Int, min : Int) : SELF_TYPE {
+        {
+            out_string("max + 1: "); sink <- max + 1;
+            out_string("1 + max: "); sink <- 1 + max;
+            out_string("min - 1: "); sink <- min - 1;
+            out_string("min + ~1: "); sink <- min + ~1;
+            out_string("max - 1: ").show(max - 1).out_string("\n");
+        }
+    };
+    main() : Object {
+        {
+            overflow(2147483647, ~2147483647 - 1);
+            trees(0, 1).trees(5, 5).trees(~6, 3).trees(40000, ~40000).trees(32767, 32766).trees(~32768, 2);
+            a <- a * 3 + 1;
+            b <- b - a;
+            trees(9, 4);
+        }
+    };
+};
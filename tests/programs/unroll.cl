@@ -0,0 +1,69 @@
+class Main inherits IO {
+    sum(lo : Int, n : Int, c : Int) : Int {
+        let i : Int <- lo, acc : Int <- 0 in {
+            while i < n loop {
+                acc <- acc + i * 3;
+                i <- i + 2;
+            } pool;
+            acc;
+        }
+    };
+    steps(lo : Int, n : Int) : Int {
+        let i : Int <- lo, k : Int <- 0 in {
+            while i < n loop { k <- k + 1; i <- i + 2; } pool;
+            k;
+        }
+    };
+    small() : Int {
+        let i : Int <- 0, acc : Int <- 1 in {
+            while i < 5 loop {
+                acc <- acc * 2 + i;
+                i <- i + 1;
+            } pool;
+            acc;
+        }
+    };
+    none() : Int {
+        let i : Int <- 7, acc : Int <- 1 in {
+            while i < 5 loop { acc <- acc + 1; i <- i + 1; } pool;
+            acc;
+        }
+    };
+    count(n : Int) : Int {
+        let i : Int <- 0, k : Int <- 0 in {
+            while i < n loop {
+                out_int(i).out_string(" ");
+                k <- k + 1;
+                i <- 1 + i;
+            } pool;
+            k;
+        }
+    };
+    neg() : Int {
+        let i : Int <- ~2147483647 - 1, k : Int <- 0, n : Int <- ~2147483647 + 2 in {
+            while i < n loop { k <- k + 1; i <- i + 1; } pool;
+            k;
+        }
+    };
+    top(n : Int) : Int {
+        let i : Int <- 2147483600, k : Int <- 0 in {
+            while i < n loop { k <- k + 1; i <- i + 2; } pool;
+            k;
+        }
+    };
+    main() : Object {
+        {
+            out_int(sum(0, 1000, 0)).out_string("\n");
+            out_int(sum(3, 10, 0)).out_string("\n");
+            out_int(sum(5, 5, 0)).out_string("\n");
+            out_int(sum(~7, 4, 0)).out_string("\n");
+            out_int(small()).out_string("\n");
+            out_int(none()).out_string("\n");
+            out_int(count(7)).out_string("\n");
+            out_int(count(0)).out_string("\n");
+            out_int(neg()).out_string("\n");
+            out_int(steps(~2147483647 - 1, ~2147483647 + 20)).out_string("\n");
+            out_int(top(2147483646)).out_string(" ").out_int(top(~5)).out_string(" ").out_int(top(2147483610)).out_string("\n");
+        }
+    };
+};
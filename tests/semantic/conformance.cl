@@ -0,0 +1,18 @@
+-- Conformance and joins that must fail
+class A {
+    f(a : A) : A { a };
+};
+class B inherits A {};
+class C inherits B {};
+class E inherits A {};
+class Main inherits IO {
+    b : B <- new A;
+    c : C <- new B;
+    e : E <- if true then new C else new E fi;
+    j : B <- case 1 of x : Int => new C; y : Object => new B; esac;
+    k : C <- case 1 of x : Int => new C; y : Object => new E; esac;
+    g : A <- (new C)@E.f(new A);
+    h : B <- (new B).f(new C);
+    m : Int <- new Object;
+    main() : Object { 0 };
+};
@@ -0,0 +1,15 @@
+-- Only the illegal parent is an error
+class A inherits Int {
+    get() : Int { 1 };
+};
+class D inherits A {};
+class B {};
+class C inherits B {};
+class Main inherits IO {
+    x : Object <- 5;
+    y : B <- new C;
+    z : A <- new D;
+    o : Object <- if true then new A else new C fi;
+    j : B <- if true then new B else new C fi;
+    main() : Object { 0 };
+};
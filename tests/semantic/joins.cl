@@ -0,0 +1,7 @@
+class A { f() : A { new B }; };
+class B inherits A { g(x : A) : B { x }; h() : A { if true then new B else new C fi }; };
+class C inherits A { k() : B { if true then new B else new C fi }; };
+class D inherits B { m() : Object { case 1 of x : Int => new D; y : String => new C; z : Object => new B; esac }; n() : D { case 1 of x : Int => new D; y : String => new B; esac }; };
+class E inherits F { };
+class F inherits E { };
+class Main inherits IO { main() : Object { { (new A).f(); (new D)@B.g(new C); (new A)@B.g(new A); let v : B <- new A in v; let s : SELF_TYPE <- self in s.copy(); } }; x : Int <- if true then 1 else "a" fi; };